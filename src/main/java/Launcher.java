@@ -1,4 +1,5 @@
 import agents.*;
+import graph.GraphRepository;
 import graph.GraphUtils;
 import graph.vertex.Point;
 import jade.core.Profile;
@@ -37,6 +38,8 @@ public class Launcher {
 
             Launcher.launchCars(container, 5, 1);
             generateMultipleRandomAgents(container, 10);
+
+            GraphRepository.getAllStats().values().forEach(System.out::println);
             //generateTwoAgents(container);
 
             /*AgentController results = container.createNewAgent(
@@ -63,7 +66,8 @@ public class Launcher {
     }
 
     private static void generateMultipleRandomAgents(ContainerController container, int numberAgents) throws FileNotFoundException, StaleProxyException {
-        List<Point> points = new ArrayList<>(GraphUtils.importGraph("citygraph.dot").vertexSet().stream().toList());
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.getDefault();
+        List<Point> points = new ArrayList<>(graph.vertexSet().stream().toList());
 
         Random random = new Random();
         List<AgentController> agentControllers = new ArrayList<>();
@@ -75,7 +79,6 @@ public class Launcher {
             String p1 = points.get(0).getName();
             String p2 = points.get(1).getName();
 
-            Graph<Point, DefaultWeightedEdge> graph = GraphUtils.importGraph("citygraph.dot");
             var path = GraphUtils.getPathFromAtoB(graph, p1, p2);
             if (path.getVertexList().size() <= 5) {
                 i--;
@@ -1,11 +1,14 @@
 package agents;
 
 import behaviours.car.CarFSMBehaviour;
+import graph.GraphRepository;
 import graph.GraphUtils;
 import graph.exceptions.CannotMoveException;
 import graph.vertex.Point;
 import graph.vertex.Semaphore;
+import jade.domain.DFService;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAException;
 import lombok.Getter;
 import lombok.Setter;
 import org.jgrapht.Graph;
@@ -40,9 +43,9 @@ public class CarAgent extends SubscribableAgent {
         // register the DF
         this.agentDescription = ServiceUtils.registerDF(this);
 
-        // gets the graph
+        // gets the graph, shared by every car since cars never change weights
         try {
-            this.graph = GraphUtils.importDefaultGraph();
+            this.graph = GraphRepository.getDefault();
         } catch (FileNotFoundException e) {
             e.printStackTrace();
             return;
@@ -58,8 +61,14 @@ public class CarAgent extends SubscribableAgent {
         this.addBehaviour(new CarFSMBehaviour(this));
     }
 
+    /**
+     * Moves the car to an adjacent point. The movement behaviours call it once the virtual time of the edge elapsed
+     * on the {@link utils.SimulationClock}, see {@link utils.TravelTimer}.
+     *
+     * @param point adjacent point
+     * @throws CannotMoveException if the point is not adjacent to the current location
+     */
     public void moveTo(Point point) throws CannotMoveException {
-        // TODO take time to move according to the weight in the graph
         if (GraphUtils.isAdjacent(this.graph, this.currentLocation, point)) {
             System.out.printf("%s: moving from [%s] to [%s]%n", this.getLocalName(), this.currentLocation.getName(), point.getName());
             this.currentLocation = point;
@@ -67,4 +76,16 @@ public class CarAgent extends SubscribableAgent {
             throw new CannotMoveException("Cannot move from " + this.currentLocation.getName() + " to " + point.getName());
         }
     }
+
+    /**
+     * Leaves the DF, so that humans stop asking a car that is gone for rides
+     */
+    @Override
+    protected void takeDown() {
+        try {
+            DFService.deregister(this);
+        } catch (FIPAException e) {
+            e.printStackTrace();
+        }
+    }
 }
@@ -3,7 +3,8 @@ package agents;
 import behaviours.BroadcastBehaviour;
 import behaviours.human.FSMHumanBehaviour;
 import com.opencsv.CSVWriter;
-import graph.GraphUtils;
+import graph.GraphRepository;
+import graph.WeightOverlay;
 import graph.vertex.Point;
 import jade.core.behaviours.OneShotBehaviour;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
@@ -55,9 +56,9 @@ public class HumanAgent extends SubscribableAgent {
 
 
         try {
-            // for each agent we need to import a new graph since weights vary from agent to agent
-            Graph<Point, DefaultWeightedEdge> graph = GraphUtils.importGraph("citygraph.dot", settings.streetWeight, settings.roadWeight, settings.subwayWeight);
-            Graph<Point, DefaultWeightedEdge> original = GraphUtils.importGraph("citygraph.dot", settings.streetWeight, settings.roadWeight, settings.subwayWeight);
+            // humans with the same preferences share the weighted view, fares are only recorded in the agent overlay
+            Graph<Point, DefaultWeightedEdge> original = GraphRepository.weightedView(GraphRepository.getDefault(), settings.getProfile());
+            Graph<Point, DefaultWeightedEdge> graph = new WeightOverlay(original);
 
             // add Finite State Machine Behaviour
             addBehaviour(new FSMHumanBehaviour(this, graph, original, srcPoint, dstPoint, settings));
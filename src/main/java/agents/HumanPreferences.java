@@ -1,18 +1,19 @@
 package agents;
 
+import graph.edge.EdgeKind;
+import graph.routing.WeightProfile;
+
 public class HumanPreferences {
-    protected double roadWeight = 0;
-    protected double streetWeight = 0;
-    protected double subwayWeight = 0;
+    protected WeightProfile profile = WeightProfile.DEFAULT;
     protected boolean carShareInitiator = false;
 
     public HumanPreferences noRoads() {
-        this.roadWeight = Double.MAX_VALUE;
+        this.profile = this.profile.without(EdgeKind.ROAD);
         return this;
     }
 
     public HumanPreferences noStreets() {
-        this.streetWeight = Double.MAX_VALUE;
+        this.profile = this.profile.without(EdgeKind.STREET);
         return this;
     }
 
@@ -27,20 +28,32 @@ public class HumanPreferences {
     }
 
     public HumanPreferences noSubway() {
-        this.subwayWeight = Double.MAX_VALUE;
+        this.profile = this.profile.without(EdgeKind.SUBWAY);
         return this;
     }
 
-    public double getRoadWeight() {
-        return roadWeight;
+    /**
+     * @param kind   edge kind
+     * @param weight weight of every edge of that kind, non-positive to keep the graph weights
+     * @return these preferences
+     */
+    public HumanPreferences weight(EdgeKind kind, double weight) {
+        this.profile = this.profile.withOverride(kind, weight);
+        return this;
     }
 
-    public double getStreetWeight() {
-        return streetWeight;
+    /**
+     * @param kind       edge kind
+     * @param multiplier factor applied to the weights of that kind
+     * @return these preferences
+     */
+    public HumanPreferences multiplier(EdgeKind kind, double multiplier) {
+        this.profile = this.profile.withMultiplier(kind, multiplier);
+        return this;
     }
 
-    public double getSubwayWeight() {
-        return subwayWeight;
+    public WeightProfile getProfile() {
+        return profile;
     }
 
     public boolean isCarShareInitiator() {
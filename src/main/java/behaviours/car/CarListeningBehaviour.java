@@ -30,8 +30,14 @@ public class CarListeningBehaviour extends Behaviour {
         this.myAgent.addBehaviour(new CarRideContractNetResponderBehaviour(this, this.fsm));
     }
 
+    /**
+     * Waits until the contract net responder restarts this behaviour, when a proposal is accepted or rejected
+     */
     @Override
     public void action() {
+        if (!this.done) {
+            this.block();
+        }
     }
 
     @Override
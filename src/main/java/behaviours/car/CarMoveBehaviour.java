@@ -10,6 +10,7 @@ import messages.StringMessages;
 import org.jgrapht.GraphPath;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import utils.ServiceUtils;
+import utils.TravelTimer;
 
 public class CarMoveBehaviour extends Behaviour {
 
@@ -21,6 +22,8 @@ public class CarMoveBehaviour extends Behaviour {
 
     private int currentPathIndex;
 
+    private final TravelTimer timer;
+
     private boolean done;
 
     public CarMoveBehaviour(CarFSMBehaviour fsm) {
@@ -30,6 +33,7 @@ public class CarMoveBehaviour extends Behaviour {
 
         this.currentPathIndex = 0;
         this.carAgent = (CarAgent) fsm.getAgent();
+        this.timer = new TravelTimer(this.carAgent);
         this.done = false;
     }
 
@@ -50,6 +54,15 @@ public class CarMoveBehaviour extends Behaviour {
     @Override
     public void action() {
         if (this.currentPathIndex < this.path.getVertexList().size() - 1) {
+            // each edge takes the time of its weight on the simulation clock
+            if (!this.timer.isTravelling()) {
+                this.timer.depart(this.carAgent.getGraph().getEdgeWeight(this.path.getEdgeList().get(this.currentPathIndex)));
+            }
+            if (!this.timer.arrived()) {
+                this.block();
+                return;
+            }
+
             this.currentPathIndex++;
             try {
                 this.carAgent.moveTo(this.path.getVertexList().get(this.currentPathIndex));
@@ -74,5 +87,6 @@ public class CarMoveBehaviour extends Behaviour {
         super.reset();
         this.done = false;
         this.currentPathIndex = 0;
+        this.timer.reset();
     }
 }
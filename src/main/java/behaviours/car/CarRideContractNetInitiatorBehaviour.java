@@ -2,6 +2,7 @@ package behaviours.car;
 
 import behaviours.human.AskCarRideBehaviour;
 import graph.vertex.Point;
+import jade.core.AID;
 import jade.core.Agent;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
 import jade.lang.acl.ACLMessage;
@@ -12,6 +13,7 @@ import messages.CarRideCFPRequestMessage;
 import messages.CarRideProposeMessage;
 import utils.HumanCognitive;
 import utils.ServiceUtils;
+import utils.SimulationClock;
 
 import java.io.IOException;
 import java.util.*;
@@ -82,20 +84,29 @@ public class CarRideContractNetInitiatorBehaviour extends ContractNetInitiator {
         // get available cars in service
         Set<DFAgentDescription> cars = ServiceUtils.search(this.myAgent, ServiceUtils.CAR_RIDE);
         var totalCars = new ArrayList<String>();
+        var askedCars = new HashSet<AID>();
         cars.forEach(car -> {
             if (this.exceptCarNameOptional.isEmpty() || !this.exceptCarNameOptional.get().equals(car.getName().getName())) {
                 // if there is no car to except or the car is not the one to except
                 cfp.addReceiver(car.getName());
                 totalCars.add(car.getName().getLocalName());
+                askedCars.add(car.getName());
             }
         });
+        this.askCarRideBehaviour.setAskedCars(askedCars);
         System.out.printf("%s: sending to %d cars\n", this.myAgent.getLocalName(), totalCars.size());
-        if (totalCars.isEmpty() && this.askCarRideBehaviour.getBestCar() != null) {
-            this.askCarRideBehaviour.confirmBestProposal();
+        if (totalCars.isEmpty()) {
+            // the contract net ends without any response to handle
+            if (this.askCarRideBehaviour.getBestCar() != null) {
+                this.askCarRideBehaviour.confirmBestProposal();
+            } else {
+                this.askCarRideBehaviour.foundNoCars();
+            }
             return v;
         }
 
-        cfp.setReplyByDate(new Date(System.currentTimeMillis() + 20000)); // waits 20 seconds for cars to respond
+        cfp.setReplyByDate(SimulationClock.shared().replyBy(20000)); // waits 20 seconds of simulation time for cars to respond
+        this.askCarRideBehaviour.countMessages(totalCars.size());
         v.addElement(cfp);
         return v;
     }
@@ -103,6 +114,7 @@ public class CarRideContractNetInitiatorBehaviour extends ContractNetInitiator {
     @Override
     protected void handleAllResponses(Vector responses, Vector acceptances) {
         System.out.printf("%s: got %d responses\n", this.myAgent.getLocalName(), responses.size());
+        this.askCarRideBehaviour.countMessages(responses.size());
 
         try {
             // gets the proposal inside the messages
@@ -143,6 +155,7 @@ public class CarRideContractNetInitiatorBehaviour extends ContractNetInitiator {
                 acceptances.addElement(reply);
             }
 
+            this.askCarRideBehaviour.countMessages(acceptances.size());
             this.askCarRideBehaviour.setBestProposal(bestProposal);
         } catch (UnreadableException e) {
             System.out.printf("%s: could not read propose message, aborting.\n", this.myAgent.getLocalName());
@@ -154,6 +167,7 @@ public class CarRideContractNetInitiatorBehaviour extends ContractNetInitiator {
     protected void handleAllResultNotifications(Vector notifications) {
         // TODO
         System.out.printf("%s: got %d notifications\n", this.myAgent.getLocalName(), notifications.size());
+        this.askCarRideBehaviour.countMessages(notifications.size());
     }
 
     private Set<ACLMessage> getRealResponses(Vector responses) throws UnreadableException {
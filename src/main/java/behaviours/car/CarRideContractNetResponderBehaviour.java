@@ -9,9 +9,8 @@ import jade.lang.acl.UnreadableException;
 import jade.proto.ContractNetResponder;
 import messages.CarRideCFPBlindRequestMessage;
 import messages.CarRideCFPRequestMessage;
+import messages.CarRideCFPSealedBidRequestMessage;
 import messages.CarRideProposeMessage;
-import org.jgrapht.GraphPath;
-import org.jgrapht.graph.DefaultWeightedEdge;
 import utils.CarCognitive;
 
 import java.io.IOException;
@@ -24,7 +23,12 @@ public class CarRideContractNetResponderBehaviour extends ContractNetResponder {
 
     private final CarListeningBehaviour carListeningBehaviour;
 
-    private GraphPath<Point, DefaultWeightedEdge> path;
+    /**
+     * Start and end of the ride being negotiated, the path itself is only computed once the proposal is accepted
+     */
+    private Point start;
+
+    private Point end;
 
     public CarRideContractNetResponderBehaviour(CarListeningBehaviour carListeningBehaviour, CarFSMBehaviour fsm) {
         super(carListeningBehaviour.getAgent(), MessageTemplate.MatchPerformative(ACLMessage.CFP));
@@ -56,6 +60,10 @@ public class CarRideContractNetResponderBehaviour extends ContractNetResponder {
             // if the content is a request message with price
             else if (cfp.getContentObject() instanceof CarRideCFPRequestMessage message) {
                 return this.handlePriceRequest(cfp, message);
+            }
+            // if the content is a request for a sealed bid
+            else if (cfp.getContentObject() instanceof CarRideCFPSealedBidRequestMessage message) {
+                return this.handleSealedBidRequest(cfp, message);
             } else {
                 System.out.printf("%s: Unknown message type.\n", myAgent.getLocalName());
                 throw new IllegalArgumentException("Unknown message type");
@@ -83,7 +91,7 @@ public class CarRideContractNetResponderBehaviour extends ContractNetResponder {
 
     @Override
     protected ACLMessage handleAcceptProposal(ACLMessage cfp, ACLMessage propose, ACLMessage accept) {
-        this.fsm.setCurrentPath(this.path);
+        this.fsm.setCurrentPath(GraphUtils.getRoadPathFromAtoB(this.carAgent.getGraph(), this.start.getName(), this.end.getName()));
 
         ACLMessage reply = accept.createReply();
         reply.setPerformative(ACLMessage.INFORM);
@@ -91,15 +99,17 @@ public class CarRideContractNetResponderBehaviour extends ContractNetResponder {
 
         this.carListeningBehaviour.setOnHold(true);
         this.carListeningBehaviour.setDone(true);
+        this.carListeningBehaviour.restart();
         return reply;
     }
 
     private ACLMessage handleBlindRequest(ACLMessage cfp, CarRideCFPBlindRequestMessage message) throws IOException {
         this.fsm.setCurrentHuman(cfp.getSender());
 
-        this.path = GraphUtils.getRoadPathFromAtoB(((CarAgent) this.carListeningBehaviour.getAgent()).getGraph(), message.getStart().getName(), message.getEnd().getName());
+        this.start = message.getStart();
+        this.end = message.getEnd();
 
-        double totalCost = this.getTotalCost(message.getStart());
+        double totalCost = this.getTotalCost();
 
         float price = CarCognitive.getRidePrice(totalCost);
 
@@ -116,9 +126,10 @@ public class CarRideContractNetResponderBehaviour extends ContractNetResponder {
     private ACLMessage handlePriceRequest(ACLMessage cfp, CarRideCFPRequestMessage message) throws IOException {
         this.fsm.setCurrentHuman(cfp.getSender());
 
-        this.path = GraphUtils.getRoadPathFromAtoB(((CarAgent) this.carListeningBehaviour.getAgent()).getGraph(), message.getStart().getName(), message.getEnd().getName());
+        this.start = message.getStart();
+        this.end = message.getEnd();
 
-        double totalCost = this.getTotalCost(message.getStart());
+        double totalCost = this.getTotalCost();
 
         boolean accept = CarCognitive.shouldAcceptRide(totalCost, message.getPrice());
 
@@ -139,13 +150,29 @@ public class CarRideContractNetResponderBehaviour extends ContractNetResponder {
         return reply;
     }
 
+    private ACLMessage handleSealedBidRequest(ACLMessage cfp, CarRideCFPSealedBidRequestMessage message) throws IOException {
+        this.fsm.setCurrentHuman(cfp.getSender());
+
+        this.start = message.getStart();
+        this.end = message.getEnd();
+
+        double totalCost = this.getTotalCost();
+
+        float bid = CarCognitive.getSealedBid(totalCost, message.getBidders(), message.isSecondPrice());
+
+        ACLMessage reply = cfp.createReply();
+        reply.setPerformative(ACLMessage.PROPOSE);
+
+        System.out.printf("%s: Sending sealed bid %f for cost %f.\n", myAgent.getLocalName(), bid, totalCost);
+        reply.setContentObject(new CarRideProposeMessage(bid, this.carAgent.getCarCapacity(), this.myAgent.getAID()));
+
+        return reply;
+    }
 
-    private double getTotalCost(Point start) {
-        // gets the path from current location to the start of the ride
-        CarAgent carAgent = (CarAgent) this.myAgent;
-        var pathToStart = GraphUtils.getRoadPathFromAtoB(carAgent.getGraph(), carAgent.getCurrentLocation().getName(), start.getName());
-        double pathToStartCost = pathToStart.getWeight();
-        double travelCost = this.path.getWeight();
+    private double getTotalCost() {
+        // gets the distance from current location to the start of the ride, and of the ride itself
+        double pathToStartCost = GraphUtils.getRoadDistance(this.carAgent.getGraph(), this.carAgent.getCurrentLocation().getName(), this.start.getName());
+        double travelCost = GraphUtils.getRoadDistance(this.carAgent.getGraph(), this.start.getName(), this.end.getName());
         return pathToStartCost + travelCost;
     }
 }
@@ -0,0 +1,161 @@
+package behaviours.car;
+
+import behaviours.human.AskCarRideBehaviour;
+import graph.vertex.Point;
+import jade.core.AID;
+import jade.core.Agent;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.UnreadableException;
+import jade.proto.ContractNetInitiator;
+import messages.CarRideCFPSealedBidRequestMessage;
+import messages.CarRideProposeMessage;
+import utils.ServiceUtils;
+import utils.SimulationClock;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Asks the cars for a ride in a single round of sealed bids, instead of the iterated reverse auction of
+ * {@link CarRideContractNetInitiatorBehaviour}. Every car bids once without seeing the other bids, the lowest bid is
+ * accepted and the others rejected, and the ride is confirmed as soon as the winner informs it holds it.
+ * <p>
+ * In a first-price auction the winner is paid its own bid. In a Vickrey auction it is paid the second lowest bid, or
+ * its own if it is the only bidder, so that bidding the cost of the ride is the best a car can do.
+ */
+public class CarRideSealedBidInitiatorBehaviour extends ContractNetInitiator {
+
+    private final Point start;
+
+    private final Point end;
+
+    private final AskCarRideBehaviour askCarRideBehaviour;
+
+    private final boolean secondPrice;
+
+    /**
+     * Proposal of the winner at the price it is paid, confirmed when the car informs it holds the ride
+     */
+    private CarRideProposeMessage winner;
+
+    /**
+     * @param secondPrice if the winner is paid the second lowest bid, a Vickrey auction, rather than its own
+     */
+    public CarRideSealedBidInitiatorBehaviour(AskCarRideBehaviour askCarRideBehaviour, Agent a, ACLMessage cfp, Point start, Point end, boolean secondPrice) {
+        super(a, cfp);
+
+        this.askCarRideBehaviour = askCarRideBehaviour;
+        this.start = start;
+        this.end = end;
+        this.secondPrice = secondPrice;
+    }
+
+    @Override
+    public int onEnd() {
+        this.winner = null;
+        this.reset();
+        return super.onEnd();
+    }
+
+    @Override
+    protected Vector<ACLMessage> prepareCfps(ACLMessage cfp) {
+        Vector<ACLMessage> v = new Vector<>();
+
+        // get available cars in service
+        Set<DFAgentDescription> cars = ServiceUtils.search(this.myAgent, ServiceUtils.CAR_RIDE);
+        var askedCars = new HashSet<AID>();
+        cars.forEach(car -> {
+            cfp.addReceiver(car.getName());
+            askedCars.add(car.getName());
+        });
+        this.askCarRideBehaviour.setAskedCars(askedCars);
+        System.out.printf("%s: asking %d cars for sealed bids\n", this.myAgent.getLocalName(), askedCars.size());
+        if (askedCars.isEmpty()) {
+            // the contract net ends without any response to handle
+            this.askCarRideBehaviour.foundNoCars();
+            return v;
+        }
+
+        try {
+            cfp.setContentObject(new CarRideCFPSealedBidRequestMessage(this.start, this.end, askedCars.size(), this.secondPrice));
+        } catch (IOException e) {
+            // won't happen
+            e.printStackTrace();
+            return v;
+        }
+
+        cfp.setReplyByDate(SimulationClock.shared().replyBy(20000)); // waits 20 seconds of simulation time for cars to respond
+        this.askCarRideBehaviour.countMessages(askedCars.size());
+        v.addElement(cfp);
+        return v;
+    }
+
+    @Override
+    protected void handleAllResponses(Vector responses, Vector acceptances) {
+        System.out.printf("%s: got %d sealed bids\n", this.myAgent.getLocalName(), responses.size());
+        this.askCarRideBehaviour.countMessages(responses.size());
+
+        // gets the bids, lowest first
+        List<ACLMessage> bids = new ArrayList<>();
+        Map<ACLMessage, CarRideProposeMessage> proposals = new HashMap<>();
+        for (Object response : responses) {
+            ACLMessage message = (ACLMessage) response;
+            if (message.getPerformative() == ACLMessage.PROPOSE) {
+                try {
+                    proposals.put(message, (CarRideProposeMessage) message.getContentObject());
+                    bids.add(message);
+                } catch (UnreadableException e) {
+                    System.out.printf("%s: could not read propose message, aborting.\n", this.myAgent.getLocalName());
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        bids.sort(Comparator.comparing(message -> proposals.get(message).getPrice()));
+
+        if (bids.isEmpty()) {
+            this.askCarRideBehaviour.foundNoCars();
+            return;
+        }
+
+        CarRideProposeMessage lowest = proposals.get(bids.get(0));
+        float price = this.secondPrice && bids.size() > 1 ? proposals.get(bids.get(1)).getPrice() : lowest.getPrice();
+        this.winner = new CarRideProposeMessage(price, lowest.getCapacity(), lowest.getCarName());
+
+        for (ACLMessage bid : bids) {
+            ACLMessage reply = bid.createReply();
+            if (bid == bids.get(0)) {
+                reply.setPerformative(ACLMessage.ACCEPT_PROPOSAL);
+                reply.setReplyByDate(SimulationClock.shared().replyBy(20000));
+            } else {
+                reply.setPerformative(ACLMessage.REJECT_PROPOSAL);
+            }
+            acceptances.addElement(reply);
+        }
+        this.askCarRideBehaviour.countMessages(acceptances.size());
+
+        System.out.printf("%s: sealed bid of %s won at %.2f, paid %.2f\n", this.myAgent.getLocalName(), lowest.getCarName().getLocalName(), lowest.getPrice(), price);
+    }
+
+    @Override
+    protected void handleAllResultNotifications(Vector notifications) {
+        if (this.winner == null) {
+            // no bid was accepted
+            return;
+        }
+        this.askCarRideBehaviour.countMessages(notifications.size());
+
+        for (Object notification : notifications) {
+            ACLMessage message = (ACLMessage) notification;
+            if (message.getPerformative() == ACLMessage.INFORM && message.getSender().equals(this.winner.getCarName())) {
+                // the car holds the ride, confirms it
+                this.askCarRideBehaviour.confirmProposal(this.winner);
+                return;
+            }
+        }
+
+        // the winner failed or did not answer in time
+        System.out.printf("%s: winner of the sealed bids did not hold the ride\n", this.myAgent.getLocalName());
+        this.askCarRideBehaviour.foundNoCars();
+    }
+}
@@ -0,0 +1,48 @@
+package behaviours.car;
+
+/**
+ * Switches between the protocols humans use to get a car ride, so that they can be compared on the same simulation.
+ * <p>
+ * The default can be given as a system property, for instance {@code -Dcarride.auction=VICKREY}.
+ */
+public class CarRideSettings {
+
+    /**
+     * Auctions a human runs among the available cars, the lowest price wins
+     */
+    public enum Auction {
+        /**
+         * Reverse auction over several contract nets: the human asks the other cars to beat the best price until none
+         * does, see {@link CarRideContractNetInitiatorBehaviour}
+         */
+        ITERATED,
+        /**
+         * A single contract net of sealed bids, the winner is paid its own bid, see
+         * {@link CarRideSealedBidInitiatorBehaviour}
+         */
+        FIRST_PRICE,
+        /**
+         * A single contract net of sealed bids, the winner is paid the second lowest bid, see
+         * {@link CarRideSealedBidInitiatorBehaviour}
+         */
+        VICKREY
+    }
+
+    private static volatile Auction auction = Auction.valueOf(System.getProperty("carride.auction", Auction.ITERATED.name()));
+
+    private CarRideSettings() {
+    }
+
+    public static Auction getAuction() {
+        return auction;
+    }
+
+    /**
+     * Selects the auction of the next car rides, auctions already running are not changed.
+     *
+     * @param selected auction
+     */
+    public static void setAuction(Auction selected) {
+        auction = selected;
+    }
+}
@@ -0,0 +1,94 @@
+package behaviours.car;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numbers about the car rides confirmed in the JVM, to compare the auctions of {@link CarRideSettings}: how many
+ * contract nets and messages it took to confirm a ride, how long it took, and the fare the human paid over the cost
+ * of the road leg.
+ * <p>
+ * Messages are the ones of the negotiation, both ways: calls for proposals, proposals and refusals, acceptances and
+ * rejections, result notifications, and the confirmations and rejections sent to the cars after them. Counters are
+ * updated from agent threads, so they are atomic.
+ */
+public final class CarRideStats {
+
+    private static final CarRideStats shared = new CarRideStats();
+
+    private final AtomicLong rides = new AtomicLong();
+
+    private final AtomicLong rounds = new AtomicLong();
+
+    private final AtomicLong messages = new AtomicLong();
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Sum of the fares, in thousandths
+     */
+    private final AtomicLong fares = new AtomicLong();
+
+    /**
+     * @return the statistics of every human of the JVM
+     */
+    public static CarRideStats shared() {
+        return shared;
+    }
+
+    /**
+     * @param rounds       contract nets the human ran, retries included
+     * @param messages     messages of the negotiation
+     * @param elapsedNanos wall time from the first call for proposals to the confirmation
+     * @param fare         price paid over the cost of the road leg
+     */
+    public void record(int rounds, int messages, long elapsedNanos, double fare) {
+        this.rides.incrementAndGet();
+        this.rounds.addAndGet(rounds);
+        this.messages.addAndGet(messages);
+        this.nanos.addAndGet(elapsedNanos);
+        this.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        this.fares.addAndGet(Math.round(fare * 1000));
+    }
+
+    public long getRides() {
+        return rides.get();
+    }
+
+    public long getRounds() {
+        return rounds.get();
+    }
+
+    public long getMessages() {
+        return messages.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getFares() {
+        return fares.get() / 1000.0;
+    }
+
+    public void clear() {
+        this.rides.set(0);
+        this.rounds.set(0);
+        this.messages.set(0);
+        this.nanos.set(0);
+        this.maxNanos.set(0);
+        this.fares.set(0);
+    }
+
+    @Override
+    public String toString() {
+        long count = Math.max(1, getRides());
+        return String.format("%d rides, %.02f rounds, %.01f messages, %.01f ms (max %.01f ms) and %.02f fare per ride",
+                getRides(), getRounds() / (double) count, getMessages() / (double) count, getNanos() / 1e6 / count, getMaxNanos() / 1e6, getFares() / count);
+    }
+}
@@ -7,7 +7,9 @@ import jade.core.behaviours.Behaviour;
 import jade.lang.acl.ACLMessage;
 import messages.OnArrivalMessage;
 import messages.OnPlaceInformMessage;
+import org.jgrapht.graph.DefaultWeightedEdge;
 import utils.ServiceUtils;
+import utils.TravelTimer;
 
 import java.io.IOException;
 
@@ -19,6 +21,8 @@ public class CarTransportBehaviour extends Behaviour {
 
     private int currentPathIndex;
 
+    private final TravelTimer timer;
+
     private boolean done;
 
     public CarTransportBehaviour(CarFSMBehaviour carFSMBehaviour) {
@@ -28,6 +32,7 @@ public class CarTransportBehaviour extends Behaviour {
 
         this.carFSMBehaviour = carFSMBehaviour;
         this.currentPathIndex = 0;
+        this.timer = new TravelTimer(this.carAgent);
         this.done = false;
     }
 
@@ -50,12 +55,21 @@ public class CarTransportBehaviour extends Behaviour {
         try {
             // if still in the path
             if (this.currentPathIndex < this.carFSMBehaviour.getCurrentPath().getVertexList().size() - 1) {
+                // each edge takes the time of its weight on the simulation clock
+                if (!this.timer.isTravelling()) {
+                    DefaultWeightedEdge edge = this.carFSMBehaviour.getCurrentPath().getEdgeList().get(this.currentPathIndex);
+                    this.timer.depart(this.carAgent.getGraph().getEdgeWeight(edge));
+                }
+                if (!this.timer.arrived()) {
+                    this.block();
+                    return;
+                }
+
                 // move to the next vertex
                 this.currentPathIndex++;
                 Point nextPoint = this.carFSMBehaviour.getCurrentPath().getVertexList().get(this.currentPathIndex);
                 this.carAgent.moveTo(nextPoint);
                 // inform humans that the car arrived to the next point
-                // TODO if car takes time to move (and it will) this won't be sent right away
                 ServiceUtils.sendMessageToService(this.myAgent, ServiceUtils.buildRideName(this.carFSMBehaviour.getCurrentHuman().getLocalName()), new OnPlaceInformMessage(nextPoint), ACLMessage.INFORM);
             }
             // if arrived at the destination
@@ -83,5 +97,6 @@ public class CarTransportBehaviour extends Behaviour {
         super.reset();
         this.done = false;
         this.currentPathIndex = 0;
+        this.timer.reset();
     }
 }
@@ -4,18 +4,27 @@ import agents.CarServiceFare;
 import agents.HumanAgent;
 import agents.SharedSegment;
 import behaviours.car.CarRideContractNetInitiatorBehaviour;
+import behaviours.car.CarRideSealedBidInitiatorBehaviour;
+import behaviours.car.CarRideSettings;
+import behaviours.car.CarRideStats;
 import graph.GraphUtils;
 import graph.exceptions.NoRoadsException;
+import graph.routing.Itinerary;
 import graph.vertex.Point;
 import jade.core.AID;
 import jade.core.behaviours.Behaviour;
 import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
 import lombok.Getter;
 import lombok.Setter;
 import messages.CarRideProposeMessage;
 import messages.StringMessages;
 import messages.results.CarService;
 import org.jgrapht.graph.DefaultWeightedEdge;
+import utils.ServiceUtils;
+import utils.SimulationClock;
+
+import java.util.Set;
 
 /**
  * This behaviour is used to ask a car to ride.
@@ -25,15 +34,31 @@ import org.jgrapht.graph.DefaultWeightedEdge;
  * 2. The cars reply with prices;
  * 3. The human proposes the minimum price to the other cars;
  * 4. Go to step 2 and 3, until there are no more proposals.
+ * <p>
+ * Or, depending on {@link CarRideSettings#getAuction()}, in a single round of sealed bids, see
+ * {@link CarRideSealedBidInitiatorBehaviour}.
+ * <p>
+ * If no car proposes, the human waits until a car it did not ask joins the ride service, or until a retry delay if some
+ * cars were asked, and asks again.
  */
 public class AskCarRideBehaviour extends Behaviour {
 
+    /**
+     * Virtual milliseconds before asking again when no car proposed
+     */
+    private static final long RETRY_DELAY = 30000;
+
     private final FSMHumanBehaviour fsm;
 
     private Point start;
 
     private Point end;
 
+    /**
+     * Road leg the car is asked for
+     */
+    private Itinerary.Leg leg;
+
     @Setter
     private boolean done;
 
@@ -56,6 +81,39 @@ public class AskCarRideBehaviour extends Behaviour {
     @Setter
     private boolean foundCar = false;
 
+    /**
+     * Cars asked in the last round, set by the contract net
+     */
+    @Setter
+    private Set<AID> askedCars = Set.of();
+
+    /**
+     * Subscription to the ride service while waiting for a car after no car proposed
+     */
+    private ACLMessage carSubscription;
+
+    /**
+     * Clock message that tells to ask again while waiting for a car, null to wait only for a new car
+     */
+    private MessageTemplate retryTemplate;
+
+    /**
+     * Clock event posting the retry message
+     */
+    private SimulationClock.Event retry;
+
+    private int retries;
+
+    /**
+     * Contract nets, messages and wall time spent on the ride, since the first call for proposals, see
+     * {@link CarRideStats}
+     */
+    private int rounds;
+
+    private int messages;
+
+    private long askedSince;
+
     public AskCarRideBehaviour(FSMHumanBehaviour fsmHumanBehaviour) {
         super(fsmHumanBehaviour.getAgent());
         this.fsm = fsmHumanBehaviour;
@@ -69,16 +127,22 @@ public class AskCarRideBehaviour extends Behaviour {
     @Override
     public void onStart() {
         try {
-            this.start = fsm.path.getVertexList().get(fsm.currentLocationIndex);
-            this.end = GraphUtils.roadStop(fsm.graph, fsm.path, fsm.currentLocationIndex);
-            // set value as the length of the shortest path
-            var path = GraphUtils.getPathFromAtoB(fsm.graph, this.start.getName(), this.end.getName());
-            this.bestValue = (float) GraphUtils.calculateCost(this.fsm.graph, path);
+            this.leg = fsm.itinerary.roadLegFrom(fsm.currentLocationIndex);
+            this.start = this.leg.start();
+            this.end = this.leg.end();
+            // set value as the length of the shortest path, the road leg of the path
+            this.bestValue = (float) this.leg.cost();
 
             System.out.printf("%s: starting car ride auction from %s to %s\n", fsm.getAgent().getLocalName(), this.start, this.end);
 
             // sends the initial request
-            this.myAgent.addBehaviour(new CarRideContractNetInitiatorBehaviour(this, this.myAgent, new ACLMessage(ACLMessage.CFP), this.start, this.end));
+            this.startRound();
+            CarRideSettings.Auction auction = CarRideSettings.getAuction();
+            if (auction == CarRideSettings.Auction.ITERATED) {
+                this.myAgent.addBehaviour(new CarRideContractNetInitiatorBehaviour(this, this.myAgent, new ACLMessage(ACLMessage.CFP), this.start, this.end));
+            } else {
+                this.myAgent.addBehaviour(new CarRideSealedBidInitiatorBehaviour(this, this.myAgent, new ACLMessage(ACLMessage.CFP), this.start, this.end, auction == CarRideSettings.Auction.VICKREY));
+            }
             this.isDiscussing = true;
         } catch (NoRoadsException e) {
             throw new RuntimeException(e);
@@ -92,6 +156,7 @@ public class AskCarRideBehaviour extends Behaviour {
         this.isDiscussing = false;
         this.done = false;
         this.foundCar = false;
+        this.askedCars = Set.of();
         super.reset();
     }
 
@@ -107,8 +172,19 @@ public class AskCarRideBehaviour extends Behaviour {
 
     @Override
     public void action() {
+        if (this.carSubscription != null) {
+            if (this.carAvailable()) {
+                // ends the state, which is entered again with a new auction
+                ServiceUtils.unsubscribe(this.myAgent, this.carSubscription);
+                this.carSubscription = null;
+                this.done = true;
+            }
+            return;
+        }
+
         if (this.isDiscussing) {
-            // if a discussion is happening, do nothing
+            // if a discussion is happening, wait for the contract net to restart this behaviour
+            this.block();
             return;
         }
 
@@ -117,6 +193,7 @@ public class AskCarRideBehaviour extends Behaviour {
 
         // sends a request to the cars with the current value
         System.out.printf("%s: asking other cars to ride from %s to %s with value %f\n", fsm.getAgent().getLocalName(), this.start, this.end, this.bestValue);
+        this.startRound();
         this.myAgent.addBehaviour(new CarRideContractNetInitiatorBehaviour(this, this.myAgent, new ACLMessage(ACLMessage.CFP), this.start, this.end, this.bestValue, this.bestCar.getName()));
     }
 
@@ -130,6 +207,18 @@ public class AskCarRideBehaviour extends Behaviour {
         this.bestCar = proposal.getCarName();
 
         this.isDiscussing = false;
+        this.restart();
+    }
+
+    /**
+     * Confirms a ride that was not negotiated through {@link #setBestProposal}, for a single round auction
+     *
+     * @param proposal the car and the price it is paid
+     */
+    public void confirmProposal(CarRideProposeMessage proposal) {
+        this.bestValue = proposal.getPrice();
+        this.bestCar = proposal.getCarName();
+        this.confirmBestProposal();
     }
 
     public void confirmBestProposal() {
@@ -138,36 +227,114 @@ public class AskCarRideBehaviour extends Behaviour {
         message.addReceiver(this.bestCar);
         message.setContent(StringMessages.CAR_RIDE_CONFIRMED);
         this.myAgent.send(message);
+        this.countMessages(1);
 
         /*
          * Update first edge to include the difference between the best value and the initial cost
          * if the best value > initial cost, then the edge weight will be higher.
          */
-        var path = GraphUtils.getPathFromAtoB(fsm.graph, this.start.getName(), this.end.getName());
-        float initialCost = (float) GraphUtils.calculateCost(this.fsm.graph, path);
+        var path = this.leg.path();
+        float initialCost = (float) this.leg.cost();
         float expected = (float) GraphUtils.calculateCostForHuman(this.fsm.original, path, (HumanAgent) myAgent);
         for (int i = 0; i < path.getEdgeList().size(); i++) {
             DefaultWeightedEdge e = path.getEdgeList().get(i);
             double weight = fsm.graph.getEdgeWeight(e);
             fsm.graph.setEdgeWeight(e, weight + this.bestValue / path.getEdgeList().size());
         }
+        fsm.repairPath(path.getEdgeList());
 
         System.out.printf("%s: Car Service Fare: %.02f\n", myAgent.getLocalName(), (this.bestValue - initialCost));
+        CarRideStats.shared().record(this.rounds, this.messages, System.nanoTime() - this.askedSince, this.bestValue - initialCost);
+        this.rounds = 0;
+        this.messages = 0;
+        this.askedSince = 0;
         ((HumanAgent) myAgent).getResults().addCarServiceFare(new CarServiceFare(path.getVertexList().toString(), (this.bestValue - initialCost), expected));
         // ((HumanAgent) myAgent).informResults(new CarService(myAgent.getLocalName(), path.getVertexList().toString(), (this.bestValue - initialCost), expected));
 
         this.foundCar = true;
         this.done = true;
+        this.restart();
     }
 
+    /**
+     * No car proposed, waits for one to become available before asking again
+     */
     public void foundNoCars() {
-        this.done = true;
+        System.out.printf("%s: no car available, waiting for one\n", fsm.getAgent().getLocalName());
+        this.carSubscription = ServiceUtils.subscribe(this.myAgent, ServiceUtils.CAR_RIDE, ServiceUtils.CAR_RIDE + "-" + this.myAgent.getLocalName());
+        // cars that were asked and did not propose stay in the service without notifying, they are asked again later
+        this.retryTemplate = null;
+        if (!this.askedCars.isEmpty()) {
+            String conversationId = String.format("car-ride-retry-%s-%d", this.myAgent.getLocalName(), ++this.retries);
+            this.retryTemplate = SimulationClock.template(conversationId);
+            this.retry = SimulationClock.shared().wakeAfter(this.myAgent, RETRY_DELAY, conversationId);
+        }
+        this.restart();
+    }
+
+    /**
+     * Reads the notifications of the ride service subscription, blocking until the next one or the retry message of
+     * the clock if no car it did not ask joined.
+     *
+     * @return true if it is time to ask again
+     */
+    private boolean carAvailable() {
+        MessageTemplate template = MessageTemplate.and(
+                MessageTemplate.MatchConversationId(this.carSubscription.getConversationId()),
+                MessageTemplate.MatchPerformative(ACLMessage.INFORM));
+
+        boolean available = false;
+        ACLMessage notification;
+        while ((notification = this.myAgent.receive(template)) != null) {
+            available |= ServiceUtils.joined(notification, ServiceUtils.CAR_RIDE).stream().anyMatch(car -> !this.askedCars.contains(car.getName()));
+        }
+
+        if (this.retryTemplate == null) {
+            if (!available) {
+                this.block();
+            }
+            return available;
+        }
+        if (this.myAgent.receive(this.retryTemplate) != null) {
+            this.retryTemplate = null;
+            this.retry = null;
+            return true;
+        }
+        if (available) {
+            if (!this.retry.cancel()) {
+                // the retry message was posted since
+                this.myAgent.receive(this.retryTemplate);
+            }
+            this.retryTemplate = null;
+            this.retry = null;
+            return true;
+        }
+        this.block();
+        return false;
     }
 
     public void rejectBestProposal() {
+        if (this.bestCar == null) {
+            // first round, no car to reject
+            return;
+        }
         ACLMessage message = new ACLMessage(ACLMessage.INFORM);
         message.addReceiver(this.bestCar);
         message.setContent(StringMessages.CAR_RIDE_REJECTED);
         this.myAgent.send(message);
+        this.countMessages(1);
+    }
+
+    /**
+     * @param count messages of the negotiation sent or received by the contract nets
+     */
+    public void countMessages(int count) {
+        this.messages += count;
+    }
+
+    private void startRound() {
+        if (this.rounds++ == 0) {
+            this.askedSince = System.nanoTime();
+        }
     }
 }
@@ -1,26 +1,24 @@
 package behaviours.human;
 
 import agents.HumanAgent;
-import graph.GraphUtils;
 import graph.exceptions.NoRoadsException;
-import graph.vertex.Point;
+import graph.routing.Itinerary;
+import jade.core.AID;
 import jade.core.behaviours.Behaviour;
-import jade.domain.FIPAAgentManagement.DFAgentDescription;
 import jade.domain.FIPANames;
 import jade.lang.acl.ACLMessage;
 import messages.CarShareFullProposalMessage;
-import org.jgrapht.GraphPath;
 import org.jgrapht.alg.util.Pair;
-import org.jgrapht.graph.DefaultWeightedEdge;
 import utils.ServiceUtils;
+import utils.SimulationClock;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.Set;
 
 class CNIHelperBehaviour extends Behaviour {
     private final FSMHumanBehaviour fsmHumanBehaviour;
-    private String service;
+    private String offer;
+    private ShareRendezvous rendezvous;
     private final Pair<String, Boolean> done = Pair.of("done", false);
     private boolean busy = false;
 
@@ -41,12 +39,14 @@ class CNIHelperBehaviour extends Behaviour {
             this.fsmHumanBehaviour.setCurrentCarService(ServiceUtils.buildRideName(myAgent.getLocalName()));
             ServiceUtils.joinService((HumanAgent) this.myAgent, this.fsmHumanBehaviour.getCurrentCarService());
 
-            Point p1 = fsmHumanBehaviour.path.getVertexList().get(fsmHumanBehaviour.currentLocationIndex);
-            Point p2 = GraphUtils.roadStop(fsmHumanBehaviour.graph, fsmHumanBehaviour.path, fsmHumanBehaviour.currentLocationIndex);
+            Itinerary.Leg leg = fsmHumanBehaviour.itinerary.roadLegFrom(fsmHumanBehaviour.currentLocationIndex);
 
-            this.service = ServiceUtils.buildShareName(p1.getName(), p2.getName());
+            // offers the segment, and looks for the humans asking for it
+            this.offer = ServiceUtils.buildShareOfferName(leg.start().getName(), leg.end().getName());
+            ServiceUtils.joinService((HumanAgent) this.myAgent, this.offer);
+            this.rendezvous = new ShareRendezvous(this.myAgent, ServiceUtils.buildShareName(leg.start().getName(), leg.end().getName()));
 
-            System.out.printf("%s: Announcing Car Share from %s to %s\n", myAgent.getLocalName(), p1, p2);
+            System.out.printf("%s: Announcing Car Share from %s to %s\n", myAgent.getLocalName(), leg.start(), leg.end());
         } catch (NoRoadsException e) {
             throw new RuntimeException(e);
         }
@@ -61,6 +61,8 @@ class CNIHelperBehaviour extends Behaviour {
 
     @Override
     public int onEnd() {
+        this.rendezvous.close();
+        ServiceUtils.leaveService((HumanAgent) this.myAgent, this.offer);
         this.reset();
         return super.onEnd();
     }
@@ -73,39 +75,46 @@ class CNIHelperBehaviour extends Behaviour {
     }
 
     /**
-     * This behaviour is busy waiting until the contract net initiator behavior ends
+     * Waits for the humans asking for a share of the segment, then starts the contract net initiator with the ones
+     * that are there, and waits blocked until it ends and restarts this behaviour
      */
     @Override
     public void action() {
         if (!busy) {
+            Set<AID> responders = this.rendezvous.update();
+            if (responders.isEmpty()) {
+                if (this.rendezvous.isHopeless()) {
+                    System.out.printf("%s: No one to share the ride with\n", myAgent.getLocalName());
+                    done.setSecond(Boolean.TRUE);
+                } else {
+                    this.rendezvous.block(this);
+                }
+                return;
+            }
+
             ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
             cfp.setProtocol(FIPANames.InteractionProtocol.FIPA_CONTRACT_NET);
-            // Deadline is 10s after message is sent
-            cfp.setReplyByDate(new Date(System.currentTimeMillis() + 10000));
+            // Deadline is 10s of simulation time after message is sent
+            cfp.setReplyByDate(SimulationClock.shared().replyBy(10000));
             cfp.setContent("dummy-action");
 
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-            Set<DFAgentDescription> agents = ServiceUtils.search(myAgent, service);
-
-            agents.forEach(agent -> cfp.addReceiver(agent.getName()));
+            responders.forEach(cfp::addReceiver);
 
             try {
-                Point p1 = fsmHumanBehaviour.path.getVertexList().get(fsmHumanBehaviour.currentLocationIndex);
-                Point p2 = GraphUtils.roadStop(fsmHumanBehaviour.graph, fsmHumanBehaviour.path, fsmHumanBehaviour.currentLocationIndex);
-                GraphPath<Point, DefaultWeightedEdge> roadPath = GraphUtils.getPathFromAtoB(fsmHumanBehaviour.graph, p1.getName(), p2.getName());
+                Itinerary.Leg leg = fsmHumanBehaviour.itinerary.roadLegFrom(fsmHumanBehaviour.currentLocationIndex);
 
-                cfp.setContentObject(new CarShareFullProposalMessage(p1.getName(), p2.getName(), 0.95)); // TODO constant
+                cfp.setContentObject(new CarShareFullProposalMessage(leg.start().getName(), leg.end().getName(), 0.95)); // TODO constant
 
-                Behaviour behaviour = new CarShareContractNetInitiator(myAgent, cfp, agents.size(), done, roadPath, fsmHumanBehaviour.graph, p1.getName(), p2.getName());
+                Behaviour behaviour = new CarShareContractNetInitiator(this, cfp, responders.size(), done, leg.path(), fsmHumanBehaviour.graph, leg.start().getName(), leg.end().getName());
                 busy = true;
                 myAgent.addBehaviour(behaviour);
             } catch (NoRoadsException | IOException e) {
                 done.setSecond(Boolean.TRUE);
             }
         }
+
+        if (busy && !done.getSecond()) {
+            this.block();
+        }
     }
 }
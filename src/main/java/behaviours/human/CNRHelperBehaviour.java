@@ -1,17 +1,14 @@
 package behaviours.human;
 
 import agents.HumanAgent;
-import graph.GraphUtils;
 import graph.exceptions.NoRoadsException;
-import graph.vertex.Point;
+import graph.routing.Itinerary;
 import jade.core.behaviours.Behaviour;
 import jade.domain.FIPANames;
 import jade.lang.acl.ACLMessage;
 import jade.lang.acl.MessageTemplate;
 import lombok.Setter;
-import org.jgrapht.GraphPath;
 import org.jgrapht.alg.util.Pair;
-import org.jgrapht.graph.DefaultWeightedEdge;
 import utils.ServiceUtils;
 
 
@@ -20,7 +17,8 @@ class CNRHelperBehaviour extends Behaviour {
     private final MessageTemplate messageTemplate;
     private final Pair<String, Boolean> done = Pair.of("done", false);
     private boolean busy = false;
-    private int attempts = 0;
+    private String share;
+    private ShareRendezvous rendezvous;
     /**
      * If a share was agreed
      */
@@ -43,12 +41,13 @@ class CNRHelperBehaviour extends Behaviour {
     @Override
     public void onStart() {
         try {
-            Point p1 = fsmHumanBehaviour.path.getVertexList().get(fsmHumanBehaviour.currentLocationIndex);
-            Point p2 = GraphUtils.roadStop(fsmHumanBehaviour.graph, fsmHumanBehaviour.path, fsmHumanBehaviour.currentLocationIndex);
+            Itinerary.Leg leg = fsmHumanBehaviour.itinerary.roadLegFrom(fsmHumanBehaviour.currentLocationIndex);
             // Humans either init car share or respond to car sharing when they start a new road travel
-            ServiceUtils.joinService((HumanAgent) this.myAgent, ServiceUtils.buildShareName(p1.getName(), p2.getName()));
+            this.share = ServiceUtils.buildShareName(leg.start().getName(), leg.end().getName());
+            ServiceUtils.joinService((HumanAgent) this.myAgent, this.share);
+            this.rendezvous = new ShareRendezvous(this.myAgent, ServiceUtils.buildShareOfferName(leg.start().getName(), leg.end().getName()));
 
-            System.out.printf("%s: Requesting Car Share from %s to %s\n", myAgent.getLocalName(), p1, p2);
+            System.out.printf("%s: Requesting Car Share from %s to %s\n", myAgent.getLocalName(), leg.start(), leg.end());
         } catch (NoRoadsException e) {
             throw new RuntimeException(e);
         }
@@ -63,6 +62,8 @@ class CNRHelperBehaviour extends Behaviour {
 
     @Override
     public int onEnd() {
+        this.rendezvous.close();
+        ServiceUtils.leaveService((HumanAgent) this.myAgent, this.share);
         var result =  this.agreed ? FSMHumanBehaviour.EVENT_FOUND_SHARE : this.nothingFound();
         this.reset();
         return result;
@@ -72,7 +73,6 @@ class CNRHelperBehaviour extends Behaviour {
     public void reset() {
         this.busy = false;
         this.done.setSecond(false);
-        this.attempts = 0;
         this.agreed = false;
         super.reset();
     }
@@ -85,34 +85,34 @@ class CNRHelperBehaviour extends Behaviour {
     }
 
     /**
-     * Busy waiting until a Call For Proposal is received or it timeouts. After receiving a CFP it
-     * starts a new Contract Net Responder behaviour
+     * Waiting until a Call For Proposal is received, or no human offers the segment anymore. After receiving a CFP it
+     * starts a new Contract Net Responder behaviour, and waits blocked until it ends and restarts this behaviour
      */
     @Override
     public void action() {
         if (!busy) {
-            block(1000);
             ACLMessage cfp = myAgent.receive(messageTemplate);
             if (cfp != null) {
                 try {
-                    Point p1 = fsmHumanBehaviour.path.getVertexList().get(fsmHumanBehaviour.currentLocationIndex);
-                    Point p2 = GraphUtils.roadStop(fsmHumanBehaviour.graph, fsmHumanBehaviour.path, fsmHumanBehaviour.currentLocationIndex);
+                    Itinerary.Leg leg = fsmHumanBehaviour.itinerary.roadLegFrom(fsmHumanBehaviour.currentLocationIndex);
 
-                    GraphPath<Point, DefaultWeightedEdge> roadPath = GraphUtils.getPathFromAtoB(fsmHumanBehaviour.graph, p1.getName(), p2.getName());
-
-                    Behaviour behaviour = new CarShareContractNetResponder(this.fsmHumanBehaviour, this, cfp, done, roadPath, fsmHumanBehaviour.graph);
+                    Behaviour behaviour = new CarShareContractNetResponder(this.fsmHumanBehaviour, this, cfp, done, leg.path(), fsmHumanBehaviour.graph);
                     busy = true;
                     myAgent.addBehaviour(behaviour);
                 } catch (NoRoadsException e) {
                     done.setSecond(Boolean.TRUE);
                 }
             } else {
-                attempts++;
-                if (attempts >= 10) {
-                    System.out.printf("%s: Max Attempts Reached!\n", myAgent.getLocalName());
+                this.rendezvous.update();
+                if (this.rendezvous.isHopeless()) {
+                    System.out.printf("%s: No Car Share offered!\n", myAgent.getLocalName());
                     done.setSecond(Boolean.TRUE);
+                } else {
+                    this.rendezvous.block(this);
                 }
             }
+        } else if (!done.getSecond()) {
+            block();
         }
     }
 }
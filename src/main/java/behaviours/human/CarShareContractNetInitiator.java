@@ -3,7 +3,7 @@ package behaviours.human;
 import agents.HumanAgent;
 import agents.SharedSegment;
 import graph.vertex.Point;
-import jade.core.Agent;
+import jade.core.behaviours.Behaviour;
 import jade.lang.acl.ACLMessage;
 import jade.lang.acl.UnreadableException;
 import jade.proto.ContractNetInitiator;
@@ -18,6 +18,10 @@ import java.io.IOException;
 import java.util.Vector;
 
 public class CarShareContractNetInitiator extends ContractNetInitiator {
+    /**
+     * Behaviour waiting for the end of the contract net, restarted when it ends
+     */
+    private final Behaviour waiting;
     private final Pair<String, Boolean> done;
     private final Graph<Point, DefaultWeightedEdge> graph;
     private int nResponders;
@@ -28,8 +32,9 @@ public class CarShareContractNetInitiator extends ContractNetInitiator {
     private double myPercentage = 0.95;
     private double theirPercentage = 0.05;
 
-    public CarShareContractNetInitiator(Agent a, ACLMessage cfp, int nResponders, Pair<String, Boolean> done, GraphPath<Point, DefaultWeightedEdge> roadPath, Graph<Point, DefaultWeightedEdge> graph, String p1, String p2) {
-        super(a, cfp);
+    public CarShareContractNetInitiator(Behaviour waiting, ACLMessage cfp, int nResponders, Pair<String, Boolean> done, GraphPath<Point, DefaultWeightedEdge> roadPath, Graph<Point, DefaultWeightedEdge> graph, String p1, String p2) {
+        super(waiting.getAgent(), cfp);
+        this.waiting = waiting;
         this.nResponders = nResponders;
         this.done = done;
         this.roadPath = roadPath;
@@ -145,6 +150,7 @@ public class CarShareContractNetInitiator extends ContractNetInitiator {
     public int onEnd() {
         reset();
         this.done.setSecond(Boolean.TRUE);
+        this.waiting.restart();
         return 0;
     }
 }
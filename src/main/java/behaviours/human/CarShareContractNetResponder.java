@@ -105,6 +105,7 @@ public class CarShareContractNetResponder extends SSIteratedContractNetResponder
             contributions[i] = aux;
             afterShare += aux;
         }
+        this.fsmHumanBehaviour.repairPath(roadPath.getEdgeList());
 
         ((HumanAgent) myAgent).getResults().addSharedSegment(new SharedSegment(roadPath.getVertexList().toString(), false));
         // ((HumanAgent) myAgent).informResults(new ShareRide(myAgent.getLocalName(), roadPath.getVertexList().toString(), false));
@@ -134,6 +135,7 @@ public class CarShareContractNetResponder extends SSIteratedContractNetResponder
 
     public int onEnd() {
         this.done.setSecond(Boolean.TRUE);
+        this.cnrHelperBehaviour.restart();
         reset();
         return super.onEnd();
     }
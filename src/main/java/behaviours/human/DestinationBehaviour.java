@@ -1,9 +1,9 @@
 package behaviours.human;
 
 import agents.HumanAgent;
-import graph.GraphUtils;
 import jade.core.behaviours.OneShotBehaviour;
 import messages.results.PathEnd;
+import utils.SimulationClock;
 
 class DestinationBehaviour extends OneShotBehaviour {
     private final FSMHumanBehaviour fsmHumanBehaviour;
@@ -18,9 +18,12 @@ class DestinationBehaviour extends OneShotBehaviour {
 
     @Override
     public void action() {
-        double actualCost = GraphUtils.calculateCost(fsmHumanBehaviour.graph, fsmHumanBehaviour.path);
+        double actualCost = fsmHumanBehaviour.itinerary.getCost();
         ((HumanAgent) myAgent).getResults().setFinalCost(actualCost);
         ((HumanAgent) myAgent).informResults();
-        System.out.printf("%s: Completed Path! Cost: %.02f\n", myAgent.getLocalName(), actualCost);
+        System.out.printf("%s: Completed Path! Cost: %.02f at %.01f s of simulation time\n", myAgent.getLocalName(), actualCost, SimulationClock.shared().now() / 1000.0);
+        if (fsmHumanBehaviour.route != null) {
+            System.out.printf("%s: Path repairs: %s\n", myAgent.getLocalName(), fsmHumanBehaviour.route.getStats());
+        }
     }
 }
@@ -1,8 +1,7 @@
 package behaviours.human;
 
-import graph.edge.RoadEdge;
+import graph.edge.EdgeKind;
 import jade.core.behaviours.OneShotBehaviour;
-import org.jgrapht.graph.DefaultWeightedEdge;
 
 class EvaluatePathBehaviour extends OneShotBehaviour {
     private final FSMHumanBehaviour fsmHumanBehaviour;
@@ -19,16 +18,14 @@ class EvaluatePathBehaviour extends OneShotBehaviour {
 
     @Override
     public void action() {
-        if (fsmHumanBehaviour.currentLocationIndex == fsmHumanBehaviour.path.getLength()) {
+        if (fsmHumanBehaviour.currentLocationIndex == fsmHumanBehaviour.itinerary.getLength()) {
             exitValue = FSMHumanBehaviour.EVENT_DST;
             return;
         }
 
-        System.out.printf("%s: path size: %d current index: %d\n", this.myAgent.getLocalName(), fsmHumanBehaviour.path.getLength(), fsmHumanBehaviour.currentLocationIndex);
+        System.out.printf("%s: path size: %d current index: %d\n", this.myAgent.getLocalName(), fsmHumanBehaviour.itinerary.getLength(), fsmHumanBehaviour.currentLocationIndex);
 
-        DefaultWeightedEdge edge = fsmHumanBehaviour.path.getEdgeList().get(fsmHumanBehaviour.currentLocationIndex);
-
-        if (edge instanceof RoadEdge) {
+        if (fsmHumanBehaviour.itinerary.legAt(fsmHumanBehaviour.currentLocationIndex).kind() == EdgeKind.ROAD) {
             exitValue = FSMHumanBehaviour.EVENT_CAR;
         } else {
             exitValue = FSMHumanBehaviour.EVENT_DEF;
@@ -5,6 +5,10 @@ import agents.HumanAgent;
 import agents.HumanPreferences;
 import graph.GraphUtils;
 import graph.edge.Edge;
+import graph.edge.EdgeKind;
+import graph.exceptions.NoRoadsException;
+import graph.routing.DynamicRoute;
+import graph.routing.Itinerary;
 import graph.vertex.Point;
 import jade.core.behaviours.FSMBehaviour;
 import lombok.Getter;
@@ -13,6 +17,8 @@ import org.jgrapht.Graph;
 import org.jgrapht.GraphPath;
 import org.jgrapht.graph.DefaultWeightedEdge;
 
+import java.util.Collection;
+
 public class FSMHumanBehaviour extends FSMBehaviour {
     static String STATE_EVAL = "EVAL";
     static String STATE_CAR = "CAR";
@@ -38,9 +44,18 @@ public class FSMHumanBehaviour extends FSMBehaviour {
     protected int currentLocationIndex = 0;
     protected Graph<Point, DefaultWeightedEdge> graph;
     protected Graph<Point, DefaultWeightedEdge> original;
-    protected GraphPath<Point, DefaultWeightedEdge> path;
     protected HumanPreferences preferences;
 
+    /**
+     * The path of this human split into legs, rebuilt whenever the path or the weights of the graph change
+     */
+    protected Itinerary itinerary;
+
+    /**
+     * Shortest path tree towards the destination, repaired when the weights of the graph change
+     */
+    protected DynamicRoute route;
+
     /**
      * The name of the service associated with the car that is being used by this human.
      * <p>
@@ -54,8 +69,13 @@ public class FSMHumanBehaviour extends FSMBehaviour {
         super(agent);
         this.graph = graph;
         this.original = original;
-        this.path = GraphUtils.getPathFromAtoB(graph, src, dst);
         this.preferences = preferences;
+        GraphPath<Point, DefaultWeightedEdge> path = this.findPath(src, dst);
+        this.itinerary = Itinerary.of(graph, path);
+        int allowed = preferences.getProfile().getModeMask();
+        // the path may need a forbidden mode, see GraphUtils.getPathFromAtoB
+        boolean forbidden = path.getEdgeList().stream().anyMatch(edge -> (EdgeKind.of(edge).mask() & allowed) == 0);
+        this.route = DynamicRoute.of(graph, dst, forbidden ? EdgeKind.ALL : allowed);
 
         double cost = GraphUtils.calculateCostForHuman(graph, path, (HumanAgent) myAgent);
         System.out.printf("%s: Path: %s with edges %s (Cost: %.02f)\n", myAgent.getLocalName(), path.getVertexList(), path, path.getWeight());
@@ -90,21 +110,59 @@ public class FSMHumanBehaviour extends FSMBehaviour {
         this.registerTransition(STATE_WAI, STATE_EVAL, EVENT_FAIL); // if there is a problem with the car ride, go back to eval
         this.registerDefaultTransition(STATE_WAI, STATE_TRC);
 
-        this.registerTransition(STATE_TRC, STATE_TRC, EVENT_CAR);
         this.registerTransition(STATE_TRC, STATE_LEC, EVENT_CAR_END);
         this.registerTransition(STATE_LEC, STATE_EVAL, EVENT_DEF);
         this.registerTransition(STATE_LEC, STATE_DST, EVENT_DST);
     }
 
+    /**
+     * Shortest path for this human, over its own graph and with the modes its preferences allow.
+     *
+     * @param a source point
+     * @param b destination point
+     * @return the shortest path from A to B
+     */
+    protected GraphPath<Point, DefaultWeightedEdge> findPath(String a, String b) {
+        return GraphUtils.getPathFromAtoB(this.graph, a, b, this.preferences.getProfile());
+    }
+
+    /**
+     * Updates the rest of the path after the weights of some edges changed. The road segment starting at the
+     * current location is kept, since a car ride or share was already agreed for it, and only the part after it is
+     * rerouted, reusing the previous search. The itinerary is rebuilt even if the path is kept, since its costs
+     * changed.
+     *
+     * @param changedEdges edges whose weight changed in {@link #graph}
+     */
+    protected void repairPath(Collection<DefaultWeightedEdge> changedEdges) {
+        GraphPath<Point, DefaultWeightedEdge> path = this.itinerary.getPath();
+        if (this.route != null) {
+            int from;
+            try {
+                from = this.itinerary.roadLegFrom(this.currentLocationIndex).endIndex();
+            } catch (NoRoadsException e) {
+                from = this.currentLocationIndex;
+            }
+
+            GraphPath<Point, DefaultWeightedEdge> repaired = this.route.repair(path, from, changedEdges);
+            if (repaired != path) {
+                System.out.printf("%s: Path repaired: %s with edges %s (Cost: %.02f)\n", myAgent.getLocalName(), repaired.getVertexList(), repaired, repaired.getWeight());
+                path = repaired;
+            }
+        }
+
+        this.itinerary = Itinerary.of(this.graph, path);
+    }
+
     /**
      * Method to get string about traveling operations
      *
      * @return travel information
      */
     public String informTravel() {
-        Point pt1 = this.path.getVertexList().get(this.currentLocationIndex);
-        Point pt2 = this.path.getVertexList().get(this.currentLocationIndex + 1);
-        Edge edge = (Edge) this.path.getEdgeList().get(this.currentLocationIndex);
+        Point pt1 = this.itinerary.vertex(this.currentLocationIndex);
+        Point pt2 = this.itinerary.vertex(this.currentLocationIndex + 1);
+        Edge edge = (Edge) this.itinerary.edge(this.currentLocationIndex);
 
         return String.format("%s: Moving from [%s] to [%s] by %s", this.myAgent.getLocalName(), pt1, pt2, edge);
     }
@@ -26,7 +26,7 @@ public class LeaveCarBehaviour extends OneShotBehaviour {
         this.fsmHumanBehaviour.setCurrentCarService(null);
 
         // updates the state of the machine
-        if (fsmHumanBehaviour.currentLocationIndex == fsmHumanBehaviour.path.getLength()) {
+        if (fsmHumanBehaviour.currentLocationIndex == fsmHumanBehaviour.itinerary.getLength()) {
             this.exitValue = FSMHumanBehaviour.EVENT_DST;
         } else {
             this.exitValue = FSMHumanBehaviour.EVENT_DEF;
@@ -0,0 +1,135 @@
+package behaviours.human;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.Behaviour;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+import utils.ServiceUtils;
+import utils.SimulationClock;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matchmaking of the humans that can share a road segment, through the DF.
+ * <p>
+ * Initiators offer the segment in {@link ServiceUtils#buildShareOfferName} and responders ask for it in
+ * {@link ServiceUtils#buildShareName}. Each side subscribes to the service of the other side, so the one that arrives
+ * second finds its counterparts at once, and the one that arrives first is notified the moment a counterpart
+ * registers. Humans start in any order, so a side without counterparts waits for one during a match window of
+ * {@code share.match.window} virtual milliseconds, see {@link SimulationClock#wakeAfter}, and gives up right away once
+ * every counterpart it knew left.
+ */
+class ShareRendezvous {
+
+    /**
+     * Virtual milliseconds to wait for a first counterpart
+     */
+    private static final long MATCH_WINDOW = Long.getLong("share.match.window", 2000);
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final Agent agent;
+
+    private final String counterpartService;
+
+    private final ACLMessage subscription;
+
+    private final MessageTemplate template;
+
+    private final Set<AID> present = new HashSet<>();
+
+    /**
+     * Template of the message the clock posts when the match window ends
+     */
+    private final MessageTemplate windowTemplate;
+
+    /**
+     * Clock event posting the end of the match window
+     */
+    private final SimulationClock.Event window;
+
+    /**
+     * If the match window ended
+     */
+    private boolean windowOver = false;
+
+    /**
+     * If a counterpart was ever present
+     */
+    private boolean met = false;
+
+    /**
+     * Subscribes to the counterparts of the agent on a segment
+     *
+     * @param agent              the agent looking for counterparts
+     * @param counterpartService the service of the counterparts
+     */
+    ShareRendezvous(Agent agent, String counterpartService) {
+        this.agent = agent;
+        this.counterpartService = counterpartService;
+        this.subscription = ServiceUtils.subscribe(agent, counterpartService, counterpartService + "-" + agent.getLocalName());
+        this.template = MessageTemplate.and(
+                MessageTemplate.MatchConversationId(this.subscription.getConversationId()),
+                MessageTemplate.MatchPerformative(ACLMessage.INFORM));
+        String windowId = String.format("share-window-%s-%d", agent.getLocalName(), ids.incrementAndGet());
+        this.windowTemplate = SimulationClock.template(windowId);
+        this.window = SimulationClock.shared().wakeAfter(agent, MATCH_WINDOW, windowId);
+    }
+
+    /**
+     * Reads the notifications received since the last call
+     *
+     * @return the counterparts in the service
+     */
+    Set<AID> update() {
+        ACLMessage notification;
+        while ((notification = this.agent.receive(this.template)) != null) {
+            for (DFAgentDescription dfd : ServiceUtils.joined(notification, this.counterpartService)) {
+                this.present.add(dfd.getName());
+            }
+            for (DFAgentDescription dfd : ServiceUtils.left(notification, this.counterpartService)) {
+                this.present.remove(dfd.getName());
+            }
+        }
+        this.met |= !this.present.isEmpty();
+        if (!this.windowOver && this.agent.receive(this.windowTemplate) != null) {
+            this.windowOver = true;
+        }
+        return this.present;
+    }
+
+    /**
+     * @return true if there is no counterpart and none can be expected anymore: every counterpart that registered
+     * left, or none registered during the match window
+     */
+    boolean isHopeless() {
+        return this.present.isEmpty() && (this.met || this.windowOver);
+    }
+
+    /**
+     * Blocks a behaviour until the next message, the clock posting the end of the match window among them
+     *
+     * @param behaviour the behaviour waiting for counterparts
+     */
+    void block(Behaviour behaviour) {
+        behaviour.block();
+    }
+
+    /**
+     * Cancels the subscription, and drops the notifications still queued. The end of the match window is cancelled,
+     * or dropped if it was already posted.
+     */
+    void close() {
+        ServiceUtils.unsubscribe(this.agent, this.subscription);
+        while (this.agent.receive(this.template) != null) {
+            // nothing to do
+        }
+        if (!this.windowOver && !this.window.cancel()) {
+            this.agent.receive(this.windowTemplate);
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package behaviours.human;
 
-import jade.core.behaviours.OneShotBehaviour;
+import jade.core.behaviours.Behaviour;
 import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
 import jade.lang.acl.UnreadableException;
 import messages.OnArrivalMessage;
 import messages.OnPlaceInformMessage;
 
 import java.io.Serializable;
 
-class TravelCarBehaviour extends OneShotBehaviour {
+class TravelCarBehaviour extends Behaviour {
     private final FSMHumanBehaviour fsmHumanBehaviour;
-    private int exitValue;
+    private boolean done = false;
 
     /**
      * Travel by car, similar to TravelDefaultBehaviour but while there is road it keeps traveling,
@@ -19,12 +20,13 @@ class TravelCarBehaviour extends OneShotBehaviour {
      * @param fsmHumanBehaviour parent behaviour
      */
     public TravelCarBehaviour(FSMHumanBehaviour fsmHumanBehaviour) {
+        super(fsmHumanBehaviour.getAgent());
         this.fsmHumanBehaviour = fsmHumanBehaviour;
     }
 
     /**
      * The car will send a message anytime it arrives to a new point in the graph.
-     * This waits for said messages,
+     * This waits for said messages, blocked until one arrives,
      * and anytime a message arrives, it moves to the next point in the graph
      * // TODO this is assuming that the path of the car and the path of the human is the same
      *
@@ -32,38 +34,45 @@ class TravelCarBehaviour extends OneShotBehaviour {
      */
     @Override
     public void action() {
-        ACLMessage msg = this.myAgent.receive();
+        // skips late notifications of the ride service subscription, see AskCarRideBehaviour
+        ACLMessage msg = this.myAgent.receive(MessageTemplate.not(MessageTemplate.MatchSender(this.myAgent.getDefaultDF())));
 
-        if (msg != null) {
-            // get object content of message
-            try {
-                Serializable object = msg.getContentObject();
-                if (object instanceof OnPlaceInformMessage onPlaceInformMessage) {
-                    // then the car moved to a new point
-                    System.out.printf("%s to %s: moved to %s\n", msg.getSender().getLocalName(), this.myAgent.getLocalName(), onPlaceInformMessage.getPlace());
-                    // TODO this is assuming that the path of the car and the path of the human is the same
-                    this.move();
-                    this.exitValue = FSMHumanBehaviour.EVENT_CAR;
-                } else if (object instanceof OnArrivalMessage) {
-                    System.out.printf("%s to %s: arrived\n", msg.getSender().getLocalName(), this.myAgent.getLocalName());
-                    // then the car arrived to the destination
-                    this.exitValue = FSMHumanBehaviour.EVENT_CAR_END;
-                } else {
-                    // TODO
-                    System.out.println("Unknown message");
-                }
-            } catch (UnreadableException e) {
+        if (msg == null) {
+            this.block();
+            return;
+        }
+
+        // get object content of message
+        try {
+            Serializable object = msg.getContentObject();
+            if (object instanceof OnPlaceInformMessage onPlaceInformMessage) {
+                // then the car moved to a new point
+                System.out.printf("%s to %s: moved to %s\n", msg.getSender().getLocalName(), this.myAgent.getLocalName(), onPlaceInformMessage.getPlace());
+                // TODO this is assuming that the path of the car and the path of the human is the same
+                this.move();
+            } else if (object instanceof OnArrivalMessage) {
+                System.out.printf("%s to %s: arrived\n", msg.getSender().getLocalName(), this.myAgent.getLocalName());
+                // then the car arrived to the destination
+                this.done = true;
+            } else {
                 // TODO
-                throw new RuntimeException(e);
+                System.out.println("Unknown message");
             }
-        } else {
-            this.exitValue = FSMHumanBehaviour.EVENT_CAR;
+        } catch (UnreadableException e) {
+            // TODO
+            throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public boolean done() {
+        return this.done;
+    }
+
     @Override
     public int onEnd() {
-        return this.exitValue;
+        this.done = false;
+        return FSMHumanBehaviour.EVENT_CAR_END;
     }
 
     private void move() {
@@ -1,24 +1,60 @@
 package behaviours.human;
 
-import jade.core.behaviours.OneShotBehaviour;
+import graph.GraphRepository;
+import graph.edge.EdgeKind;
+import jade.core.behaviours.Behaviour;
+import utils.TravelTimer;
 
-class TravelDefaultBehaviour extends OneShotBehaviour {
+class TravelDefaultBehaviour extends Behaviour {
     private final FSMHumanBehaviour fsmHumanBehaviour;
+    private final TravelTimer timer;
+    private boolean done = false;
 
     /**
-     * Simple behaviour to perform a traveling operation (by foot or subway)
+     * Simple behaviour to perform a traveling operation (by foot or subway), taking the time of the edge weight on the
+     * simulation clock
      * @param fsmHumanBehaviour parent behaviour
      */
     public TravelDefaultBehaviour(FSMHumanBehaviour fsmHumanBehaviour) {
+        super(fsmHumanBehaviour.getAgent());
         this.fsmHumanBehaviour = fsmHumanBehaviour;
+        this.timer = new TravelTimer(fsmHumanBehaviour.getAgent());
     }
 
     @Override
     public void action() {
+        if (!this.timer.isTravelling()) {
+            // physical length of the edge, not the preferences or fares of the human
+            double weight = GraphRepository.getBase(fsmHumanBehaviour.graph).getEdgeWeight(fsmHumanBehaviour.itinerary.edge(fsmHumanBehaviour.currentLocationIndex));
+            this.timer.depart(weight);
+        }
+        if (!this.timer.arrived()) {
+            this.block();
+            return;
+        }
+
         String message = fsmHumanBehaviour.informTravel();
         System.out.println(message);
         // ((HumanAgent) myAgent).informMovement(msg);
 
         fsmHumanBehaviour.currentLocationIndex++;
+        this.done = true;
+
+        // walks and subway rides are chained until the human waits for a car or arrives
+        int index = fsmHumanBehaviour.currentLocationIndex;
+        if (index == fsmHumanBehaviour.itinerary.getLength() || fsmHumanBehaviour.itinerary.legAt(index).kind() == EdgeKind.ROAD) {
+            this.timer.reset();
+        }
+    }
+
+    @Override
+    public boolean done() {
+        return this.done;
+    }
+
+    @Override
+    public int onEnd() {
+        this.done = false;
+        return super.onEnd();
     }
 }
@@ -0,0 +1,39 @@
+package benchmarks;
+
+/**
+ * Small helpers shared by the benchmark programs.
+ */
+public interface BenchmarkUtils {
+
+    /**
+     * Used heap after asking the JVM to collect garbage, so that retained sizes can be compared.
+     *
+     * @return used heap in bytes
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs a task several times and returns the average time of one run.
+     *
+     * @param warmup     runs to discard
+     * @param iterations measured runs
+     * @param task       task to run
+     * @return average nanoseconds per run
+     */
+    static double averageNanos(int warmup, int iterations, Runnable task) {
+        for (int i = 0; i < warmup; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import agents.CarAgent;
+import agents.EnvironmentPreferences;
+import agents.HumanAgent;
+import agents.HumanPreferences;
+import behaviours.car.CarRideSettings;
+import behaviours.car.CarRideStats;
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.vertex.Point;
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentController;
+import jade.wrapper.ContainerController;
+import jade.wrapper.StaleProxyException;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the auctions of {@link CarRideSettings} on the same simulation: for every auction, starts cars and humans
+ * that can only travel by road, all at once so that they compete for the cars, and waits until every human confirmed
+ * a ride. Prints the contract nets, the negotiation messages and the wall time it took to confirm a ride, and the fare
+ * paid over the cost of the road leg, see {@link CarRideStats}.
+ * <p>
+ * Humans get the same trips for every auction, cars start at random semaphores.
+ * <p>
+ * Usage: CarRideAuctionBenchmark [cars] [humans] [timeout seconds], run from a directory holding citygraph.dot
+ */
+public class CarRideAuctionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int cars = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int humans = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int timeout = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+
+        Profile profile = new ProfileImpl();
+        profile.setParameter(Profile.LOCAL_PORT, "1199");
+        Runtime runtime = Runtime.instance();
+        runtime.setCloseVM(true);
+        ContainerController container = runtime.createMainContainer(profile);
+
+        List<String[]> trips = CarRideAuctionBenchmark.trips(humans);
+
+        List<String> results = new ArrayList<>();
+        for (CarRideSettings.Auction auction : CarRideSettings.Auction.values()) {
+            CarRideSettings.setAuction(auction);
+            CarRideStats stats = CarRideStats.shared();
+            stats.clear();
+
+            List<AgentController> agents = new ArrayList<>();
+            for (int i = 1; i <= cars; i++) {
+                agents.add(container.createNewAgent(auction + "-Car" + i, CarAgent.class.getName(), new Object[]{1}));
+            }
+            EnvironmentPreferences environment = new EnvironmentPreferences(3.5);
+            for (int i = 0; i < humans; i++) {
+                HumanPreferences preferences = new HumanPreferences().noStreets().noSubway().carShareInitiator(true);
+                agents.add(container.createNewAgent(auction + "-Human" + (i + 1), HumanAgent.class.getName(), new Object[]{trips.get(i)[0], trips.get(i)[1], preferences, environment}));
+            }
+            for (AgentController agent : agents) {
+                agent.start();
+            }
+
+            long deadline = System.currentTimeMillis() + timeout * 1000L;
+            while (stats.getRides() < humans && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            results.add(String.format("%-11s: %s", auction, stats));
+
+            for (AgentController agent : agents) {
+                try {
+                    agent.kill();
+                } catch (StaleProxyException e) {
+                    // the agent already ended
+                }
+            }
+            // lets the DF forget the killed cars
+            Thread.sleep(1000);
+        }
+
+        System.out.printf("%d cars, %d humans%n", cars, humans);
+        results.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    /**
+     * @return trips with a road path, the same on every run
+     */
+    private static List<String[]> trips(int count) throws Exception {
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.getDefault();
+        List<Point> points = GraphRepository.getRoutingGraph(graph).vertices();
+
+        Random random = new Random(42);
+        List<String[]> trips = new ArrayList<>();
+        while (trips.size() < count) {
+            String from = points.get(random.nextInt(points.size())).getName();
+            String to = points.get(random.nextInt(points.size())).getName();
+            GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getRoadPathFromAtoB(graph, from, to);
+            if (path != null && path.getLength() > 0) {
+                trips.add(new String[]{from, to});
+            }
+        }
+        return trips;
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import graph.edge.EdgeKind;
+import graph.io.CityGenerator;
+import graph.io.GraphSnapshot;
+import graph.routing.CompressedRoadNetwork;
+import graph.routing.CsrDijkstra;
+import graph.routing.CsrGraph;
+import graph.routing.RoutingSettings;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares the heap used by a {@link CompressedRoadNetwork} with the heap used by the jgrapht graph and the CSR
+ * snapshot the routing code builds from it, on a generated random geometric city, and checks that both give the
+ * same road distances.
+ * <p>
+ * Usage: CompressedRoadNetworkBenchmark [vertices] [queries]
+ */
+public class CompressedRoadNetworkBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        File directory = Files.createTempDirectory("roads").toFile();
+        String snapshotFile = new File(directory, "city" + GraphSnapshot.EXTENSION).getPath();
+        String basename = new File(directory, "city").getPath();
+        try {
+            long start = System.nanoTime();
+            new CityGenerator(CityGenerator.Layout.RANDOM_GEOMETRIC, vertices * 8 / 10, vertices / 10, vertices / 10, 42).writeSnapshot(snapshotFile);
+            GraphSnapshot snapshot = GraphSnapshot.open(snapshotFile);
+            System.out.printf("city: %d vertices, %d edges, generated in %.02f ms%n", snapshot.vertexCount(), snapshot.edgeCount(), (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            CompressedRoadNetwork.build(snapshot, basename);
+            System.out.printf("compressed network built in %.02f ms%n", (System.nanoTime() - start) / 1e6);
+
+            long heapBefore = BenchmarkUtils.usedHeap();
+            CompressedRoadNetwork network = CompressedRoadNetwork.load(basename);
+            long compressedHeap = BenchmarkUtils.usedHeap() - heapBefore;
+            long graphBytes = new File(basename + ".graph").length();
+            System.out.printf("compressed: %d road arcs, %.02f bits per arc on disk, %d KB heap%n",
+                    network.arcCount(), graphBytes * 8.0 / network.arcCount(), compressedHeap / 1024);
+
+            heapBefore = BenchmarkUtils.usedHeap();
+            Graph<Point, DefaultWeightedEdge> graph = snapshot.toGraph();
+            long graphHeap = BenchmarkUtils.usedHeap() - heapBefore;
+            CsrGraph roads = CsrGraph.of(graph).restrictedTo(EdgeKind.ROAD.mask());
+            long csrHeap = BenchmarkUtils.usedHeap() - heapBefore - graphHeap;
+            System.out.printf("jgrapht graph: %d KB heap, CSR snapshot and road view: %d KB heap%n", graphHeap / 1024, csrHeap / 1024);
+
+            Random random = new Random(42);
+            int mismatches = 0;
+            long compressedNanos = 0;
+            long csrNanos = 0;
+            CsrDijkstra search = roads.newSearch(RoutingSettings.getQueueKind());
+            for (int query = 0; query < queries; query++) {
+                String a = snapshot.name(random.nextInt(snapshot.vertexCount()));
+                String b = snapshot.name(random.nextInt(snapshot.vertexCount()));
+
+                start = System.nanoTime();
+                double expected = search.run(roads.indexOf(a), roads.indexOf(b), EdgeKind.ALL, null);
+                csrNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                double actual = network.distance(a, b);
+                compressedNanos += System.nanoTime() - start;
+
+                // weights are stored as floats
+                if (Math.abs(expected - actual) > 1e-6 * Math.max(1, expected) && !(Double.isInfinite(expected) && Double.isInfinite(actual))) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("%d queries: compressed %.02f ms, CSR %.02f ms per query, %d mismatches%n",
+                    queries, compressedNanos / 1e6 / queries, csrNanos / 1e6 / queries, mismatches);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.routing.RoadContractionHierarchy;
+import graph.routing.RoutingSettings;
+import graph.vertex.Point;
+import graph.vertex.Semaphore;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the road engines on point-to-point road paths between random semaphores: Dijkstra over the cached road
+ * view against the contraction hierarchy, whose preprocessing time is reported too. Every path is checked to have
+ * the same length with both engines.
+ * <p>
+ * Usage: ContractionHierarchyBenchmark [queries] [graph file]
+ */
+public class ContractionHierarchyBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String filename = args.length > 1 ? args[1] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        RoutingSettings.setRoadEngine(RoutingSettings.RoadEngine.DIJKSTRA);
+        // measure the searches themselves, not the shared route cache
+        RoutingSettings.setRouteCache(false);
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        List<Point> semaphores = graph.vertexSet().stream().filter(point -> point instanceof Semaphore).toList();
+
+        Random random = new Random(42);
+        String[][] pairs = new String[queries][2];
+        for (String[] pair : pairs) {
+            pair[0] = semaphores.get(random.nextInt(semaphores.size())).getName();
+            pair[1] = semaphores.get(random.nextInt(semaphores.size())).getName();
+        }
+
+        double dijkstra = BenchmarkUtils.averageNanos(queries / 10, queries, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                String[] pair = pairs[i++ % pairs.length];
+                GraphUtils.getRoadPathFromAtoB(graph, pair[0], pair[1]);
+            }
+        });
+
+        RoadContractionHierarchy hierarchy = GraphRepository.getRoadHierarchy(graph);
+        RoutingSettings.setRoadEngine(RoutingSettings.RoadEngine.CONTRACTION_HIERARCHIES);
+
+        double contracted = BenchmarkUtils.averageNanos(queries / 10, queries, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                String[] pair = pairs[i++ % pairs.length];
+                GraphUtils.getRoadPathFromAtoB(graph, pair[0], pair[1]);
+            }
+        });
+
+        int mismatches = 0;
+        for (String[] pair : pairs) {
+            GraphPath<Point, DefaultWeightedEdge> expected = ContractionHierarchyBenchmark.dijkstraPath(graph, pair[0], pair[1]);
+            GraphPath<Point, DefaultWeightedEdge> actual = GraphUtils.getRoadPathFromAtoB(graph, pair[0], pair[1]);
+            double expectedWeight = expected == null ? Double.POSITIVE_INFINITY : expected.getWeight();
+            double actualWeight = actual == null ? Double.POSITIVE_INFINITY : actual.getWeight();
+            if (Math.abs(expectedWeight - actualWeight) > 1e-9) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("%d road queries on %s (%d vertices, %d edges)%n", queries, filename, graph.vertexSet().size(), graph.edgeSet().size());
+        System.out.printf("preprocessing: %10.02f ms%n", hierarchy.getPreprocessingNanos() / 1e6);
+        System.out.printf("dijkstra     : %10.02f us per query%n", dijkstra / 1e3);
+        System.out.printf("hierarchy    : %10.02f us per query (%.01fx)%n", contracted / 1e3, dijkstra / contracted);
+        if (contracted < dijkstra) {
+            System.out.printf("break-even   : %10.0f queries%n", hierarchy.getPreprocessingNanos() / (dijkstra - contracted));
+        } else {
+            System.out.println("break-even   : never, the hierarchy is not faster on this graph");
+        }
+        System.out.printf("mismatches   : %d%n", mismatches);
+    }
+
+    private static GraphPath<Point, DefaultWeightedEdge> dijkstraPath(Graph<Point, DefaultWeightedEdge> graph, String a, String b) {
+        RoutingSettings.RoadEngine engine = RoutingSettings.getRoadEngine();
+        RoutingSettings.setRoadEngine(RoutingSettings.RoadEngine.DIJKSTRA);
+        try {
+            return GraphUtils.getRoadPathFromAtoB(graph, a, b);
+        } finally {
+            RoutingSettings.setRoadEngine(engine);
+        }
+    }
+}
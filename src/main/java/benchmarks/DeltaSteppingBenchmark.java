@@ -0,0 +1,81 @@
+package benchmarks;
+
+import graph.edge.EdgeKind;
+import graph.io.CityGenerator;
+import graph.io.GraphSnapshot;
+import graph.routing.CsrDijkstra;
+import graph.routing.CsrGraph;
+import graph.routing.DeltaStepping;
+import graph.routing.RoutingSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares full single-source searches with sequential {@link CsrDijkstra} and with {@link DeltaStepping} on pools
+ * of 1, 2, 4, ... workers up to the available cores (or a given count), on a generated random geometric city, over
+ * every edge kind and over roads only, and checks that both give the same distances.
+ * <p>
+ * Usage: DeltaSteppingBenchmark [vertices] [sources] [max workers]
+ */
+public class DeltaSteppingBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int sources = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        File file = File.createTempFile("city", GraphSnapshot.EXTENSION);
+        file.deleteOnExit();
+        new CityGenerator(CityGenerator.Layout.RANDOM_GEOMETRIC, vertices * 8 / 10, vertices / 10, vertices / 10, 42).writeSnapshot(file.getPath());
+        CsrGraph csr = CsrGraph.of(GraphSnapshot.open(file.getPath()).toGraph());
+
+        System.out.printf("city: %d vertices, %d arcs, %d sources, %d cores%n", csr.vertexCount(), csr.arcCount(), sources, Runtime.getRuntime().availableProcessors());
+        DeltaSteppingBenchmark.run("all kinds", csr, EdgeKind.ALL, sources, cores);
+        DeltaSteppingBenchmark.run("roads", csr.restrictedTo(EdgeKind.ROAD.mask()), EdgeKind.ROAD.mask(), sources, cores);
+    }
+
+    private static void run(String name, CsrGraph csr, int modeMask, int sources, int cores) {
+        Random random = new Random(42);
+        int[] sourceIds = random.ints(sources, 0, csr.vertexCount()).toArray();
+        int n = csr.vertexCount();
+
+        double[][] expected = new double[sources][n];
+        CsrDijkstra search = csr.newSearch(RoutingSettings.QueueKind.BINARY);
+        double dijkstra = BenchmarkUtils.averageNanos(1, 2, () -> {
+            for (int i = 0; i < sources; i++) {
+                search.run(sourceIds[i], -1, modeMask, null);
+                for (int v = 0; v < n; v++) {
+                    expected[i][v] = search.distance(v);
+                }
+            }
+        }) / sources;
+        System.out.printf("%s, delta %.02f%n", name, DeltaStepping.defaultDelta(csr, modeMask));
+        System.out.printf("  %-16s %10.02f ms per source%n", "dijkstra", dijkstra / 1e6);
+
+        for (int parallelism = 1; parallelism <= cores; parallelism = parallelism == cores ? cores + 1 : Math.min(parallelism * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            DeltaStepping deltaStepping = new DeltaStepping(csr, pool, modeMask);
+            double[][] actual = new double[sources][];
+            double nanos = BenchmarkUtils.averageNanos(1, 2, () -> {
+                for (int i = 0; i < sources; i++) {
+                    actual[i] = deltaStepping.run(sourceIds[i], null);
+                }
+            }) / sources;
+            pool.shutdown();
+
+            int mismatches = 0;
+            for (int i = 0; i < sources; i++) {
+                for (int v = 0; v < n; v++) {
+                    if (Math.abs(expected[i][v] - actual[i][v]) > 1e-9 && !(Double.isInfinite(expected[i][v]) && Double.isInfinite(actual[i][v]))) {
+                        mismatches++;
+                    }
+                }
+            }
+            System.out.printf("  %-16s %10.02f ms per source (%.02fx), %d mismatches%n",
+                    "delta, " + parallelism + " workers", nanos / 1e6, dijkstra / nanos, mismatches);
+        }
+    }
+}
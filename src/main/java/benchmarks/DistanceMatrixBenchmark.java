@@ -0,0 +1,66 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.edge.EdgeKind;
+import graph.routing.RoutingSettings;
+import graph.vertex.Point;
+import graph.vertex.Semaphore;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Prices every (car, pickup) pair of a batch by road, one path query per pair against one
+ * {@link GraphUtils#distanceMatrix} call, and checks that both give the same distances.
+ * <p>
+ * Usage: DistanceMatrixBenchmark [cars] [pickups] [graph file]
+ */
+public class DistanceMatrixBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int cars = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int pickups = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        String filename = args.length > 2 ? args[2] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        // measure the searches themselves, not the shared route cache
+        RoutingSettings.setRouteCache(false);
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        List<Point> semaphores = graph.vertexSet().stream().filter(point -> point instanceof Semaphore).toList();
+
+        Random random = new Random(42);
+        List<String> sources = random.ints(cars, 0, semaphores.size()).mapToObj(i -> semaphores.get(i).getName()).toList();
+        List<String> targets = random.ints(pickups, 0, semaphores.size()).mapToObj(i -> semaphores.get(i).getName()).toList();
+
+        double pairwise = BenchmarkUtils.averageNanos(3, 10, () -> {
+            for (String source : sources) {
+                for (String target : targets) {
+                    GraphUtils.getRoadPathFromAtoB(graph, source, target);
+                }
+            }
+        });
+        double matrix = BenchmarkUtils.averageNanos(3, 10, () -> GraphUtils.distanceMatrix(graph, sources, targets, EdgeKind.ROAD.mask()));
+
+        double[][] distances = GraphUtils.distanceMatrix(graph, sources, targets, EdgeKind.ROAD.mask());
+        int mismatches = 0;
+        for (int i = 0; i < cars; i++) {
+            for (int j = 0; j < pickups; j++) {
+                GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getRoadPathFromAtoB(graph, sources.get(i), targets.get(j));
+                double expected = path == null ? Double.POSITIVE_INFINITY : path.getWeight();
+                if (Math.abs(expected - distances[i][j]) > 1e-9) {
+                    mismatches++;
+                }
+            }
+        }
+
+        System.out.printf("%d x %d road matrix on %s (%d vertices, %d edges), %d cores%n", cars, pickups, filename,
+                graph.vertexSet().size(), graph.edgeSet().size(), Runtime.getRuntime().availableProcessors());
+        System.out.printf("pairwise: %10.02f ms per batch%n", pairwise / 1e6);
+        System.out.printf("matrix  : %10.02f ms per batch (%.01fx)%n", matrix / 1e6, pairwise / matrix);
+        System.out.printf("mismatches: %d%n", mismatches);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import graph.GraphUtils;
+import graph.io.CityGenerator;
+import graph.io.DotGraphReader;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the jgrapht DOT importer with {@link DotGraphReader} on a large city: parse time, bytes allocated by the
+ * parsing thread, and whether both build the same graph.
+ * <p>
+ * Without a file, a grid city of the given side is generated to a temporary file first.
+ * <p>
+ * Usage: DotImportBenchmark [grid side | graph file]
+ */
+public class DotImportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File file;
+        if (args.length > 0 && new File(args[0]).isFile()) {
+            file = new File(args[0]);
+        } else {
+            int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+            file = File.createTempFile("grid", ".dot");
+            file.deleteOnExit();
+            try (OutputStream output = new FileOutputStream(file)) {
+                new CityGenerator(CityGenerator.Layout.GRID, side * side, 0, 0, 42).writeDOT(output);
+            }
+        }
+
+        Graph<Point, DefaultWeightedEdge> expected = DotImportBenchmark.measure("importer", file, GraphUtils::getFromDOTWithImporter);
+        Graph<Point, DefaultWeightedEdge> actual = DotImportBenchmark.measure("reader  ", file, DotGraphReader::read);
+
+        double expectedWeight = expected.edgeSet().stream().mapToDouble(expected::getEdgeWeight).sum();
+        double actualWeight = actual.edgeSet().stream().mapToDouble(actual::getEdgeWeight).sum();
+        Map<Point, Point> actualPoints = actual.vertexSet().stream().collect(Collectors.toMap(point -> point, point -> point));
+        boolean sameVertices = expected.vertexSet().size() == actualPoints.size()
+                && expected.vertexSet().stream().allMatch(point -> actualPoints.containsKey(point) && actualPoints.get(point).getClass() == point.getClass());
+        System.out.printf("%s: %.01f MB, %d vertices, %d edges%n", file, file.length() / 1e6, actual.vertexSet().size(), actual.edgeSet().size());
+        System.out.printf("same graph: %b%n", sameVertices && expected.edgeSet().size() == actual.edgeSet().size() && expectedWeight == actualWeight);
+    }
+
+    private static Graph<Point, DefaultWeightedEdge> measure(String name, File file, Function<InputStream, Graph<Point, DefaultWeightedEdge>> parser) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Graph<Point, DefaultWeightedEdge> graph = null;
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int run = 0; run < 5; run++) {
+            try (InputStream input = new FileInputStream(file)) {
+                long bytesBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long start = System.nanoTime();
+                graph = parser.apply(input);
+                best = Math.min(best, System.nanoTime() - start);
+                allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytesBefore;
+            }
+        }
+        System.out.printf("%s: %10.02f ms, %10d KB allocated%n", name, best / 1e6, allocated / 1024);
+        return graph;
+    }
+}
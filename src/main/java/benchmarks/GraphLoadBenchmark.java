@@ -0,0 +1,53 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the startup cost of every agent parsing the city graph against sharing it through the
+ * {@link GraphRepository}.
+ * <p>
+ * Usage: GraphLoadBenchmark [agents] [graph file]
+ */
+public class GraphLoadBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String filename = args.length > 1 ? args[1] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        // warm up the parser
+        for (int i = 0; i < 20; i++) {
+            GraphUtils.importGraph(filename);
+        }
+
+        List<Graph<Point, DefaultWeightedEdge>> held = new ArrayList<>(agents);
+        long heapBefore = BenchmarkUtils.usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < agents; i++) {
+            held.add(GraphUtils.importGraph(filename));
+        }
+        long parseNanos = System.nanoTime() - start;
+        long parseHeap = BenchmarkUtils.usedHeap() - heapBefore;
+
+        held.clear();
+        heapBefore = BenchmarkUtils.usedHeap();
+        start = System.nanoTime();
+        for (int i = 0; i < agents; i++) {
+            held.add(GraphRepository.get(filename));
+        }
+        long sharedNanos = System.nanoTime() - start;
+        long sharedHeap = BenchmarkUtils.usedHeap() - heapBefore;
+
+        System.out.printf("%d agents on %s%n", agents, filename);
+        System.out.printf("parse per agent: %10.02f ms, ~%8d KB retained%n", parseNanos / 1e6, parseHeap / 1024);
+        System.out.printf("shared graph   : %10.02f ms, ~%8d KB retained%n", sharedNanos / 1e6, sharedHeap / 1024);
+        System.out.println(GraphRepository.getStats(filename));
+    }
+}
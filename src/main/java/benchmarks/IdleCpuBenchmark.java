@@ -0,0 +1,142 @@
+package benchmarks;
+
+import agents.CarAgent;
+import agents.EnvironmentPreferences;
+import agents.HumanAgent;
+import agents.HumanPreferences;
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.vertex.Point;
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentController;
+import jade.wrapper.ContainerController;
+import jade.wrapper.StaleProxyException;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Starts a main container with agents that have nothing to do, and measures the CPU they burn while idle: the CPU
+ * time of every agent thread, and of the whole process, over a window once they are settled.
+ * <p>
+ * With {@code cars}, cars wait in their listening state for a ride request. With {@code riders}, humans that can only
+ * travel by road ask for a ride while no car exists, and wait in the ride request state for one to register.
+ * <p>
+ * Usage: IdleCpuBenchmark [cars|riders] [agents] [seconds], run from a directory holding citygraph.dot
+ */
+public class IdleCpuBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String kind = args.length > 0 ? args[0] : "cars";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Profile profile = new ProfileImpl();
+        profile.setParameter(Profile.LOCAL_PORT, "1199");
+        Runtime runtime = Runtime.instance();
+        runtime.setCloseVM(true);
+        ContainerController container = runtime.createMainContainer(profile);
+
+        Set<String> names = kind.equals("riders") ? IdleCpuBenchmark.startRiders(container, count) : IdleCpuBenchmark.startCars(container, count);
+
+        // lets the agents register and reach their waiting state
+        Thread.sleep(5000);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.OperatingSystemMXBean system = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        Map<Long, Long> before = IdleCpuBenchmark.agentCpu(threads, names);
+        long processBefore = system.getProcessCpuTime();
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long wall = System.nanoTime() - start;
+        long process = system.getProcessCpuTime() - processBefore;
+        Map<Long, Long> after = IdleCpuBenchmark.agentCpu(threads, names);
+
+        long agents = 0;
+        long busiest = 0;
+        for (Map.Entry<Long, Long> entry : after.entrySet()) {
+            long cpu = entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            agents += cpu;
+            busiest = Math.max(busiest, cpu);
+        }
+
+        System.out.printf("%d idle %s (%d agent threads) over %.01f s%n", count, kind, after.size(), wall / 1e9);
+        System.out.printf("agent threads: %8.03f ms CPU per agent per second, busiest %.03f ms/s, %.02f cores in total%n",
+                agents / 1e6 / after.size() / (wall / 1e9), busiest / 1e6 / (wall / 1e9), agents / (double) wall);
+        System.out.printf("process:       %8.03f ms CPU per agent per second, %.02f cores in total%n",
+                process / 1e6 / count / (wall / 1e9), process / (double) wall);
+
+        System.exit(0);
+    }
+
+    private static Set<String> startCars(ContainerController container, int count) throws StaleProxyException {
+        List<AgentController> controllers = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            controllers.add(container.createNewAgent("Car" + i, CarAgent.class.getName(), new Object[]{1}));
+        }
+        return IdleCpuBenchmark.start(controllers);
+    }
+
+    private static Set<String> startRiders(ContainerController container, int count) throws FileNotFoundException, StaleProxyException {
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.getDefault();
+        List<Point> points = GraphRepository.getRoutingGraph(graph).vertices();
+        EnvironmentPreferences environment = new EnvironmentPreferences(3.5);
+
+        Random random = new Random(42);
+        List<AgentController> controllers = new ArrayList<>();
+        while (controllers.size() < count) {
+            String from = points.get(random.nextInt(points.size())).getName();
+            String to = points.get(random.nextInt(points.size())).getName();
+            GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getRoadPathFromAtoB(graph, from, to);
+            if (path == null || path.getLength() == 0) {
+                continue;
+            }
+
+            HumanPreferences preferences = new HumanPreferences().noStreets().noSubway().carShareInitiator(true);
+            controllers.add(container.createNewAgent("Rider" + (controllers.size() + 1), HumanAgent.class.getName(), new Object[]{from, to, preferences, environment}));
+        }
+        return IdleCpuBenchmark.start(controllers);
+    }
+
+    private static Set<String> start(List<AgentController> controllers) throws StaleProxyException {
+        for (AgentController controller : controllers) {
+            controller.start();
+        }
+        return controllers.stream().map(controller -> {
+            try {
+                return controller.getName().split("@")[0];
+            } catch (StaleProxyException e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.toSet());
+    }
+
+    /**
+     * JADE runs every agent on a thread named after its local name
+     *
+     * @return the CPU time of every live agent thread, by thread id
+     */
+    private static Map<Long, Long> agentCpu(ThreadMXBean threads, Set<String> names) {
+        Map<Long, Long> cpu = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (names.contains(thread.getName())) {
+                cpu.put(thread.getId(), threads.getThreadCpuTime(thread.getId()));
+            }
+        }
+        return cpu;
+    }
+}
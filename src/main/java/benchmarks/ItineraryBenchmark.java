@@ -0,0 +1,121 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.edge.EdgeKind;
+import graph.exceptions.NoRoadsException;
+import graph.routing.Itinerary;
+import graph.routing.RoutingSettings;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares how the states of a human find the road segment they are at and its cost: scanning the path with
+ * {@link GraphUtils#roadStop} and searching the segment again, as the contract net and car ride states did, against
+ * reading the leg of a prebuilt {@link Itinerary}. The cost of building the itinerary is timed on its own, since it is
+ * paid once per path and after every repair.
+ * <p>
+ * Usage: ItineraryBenchmark [paths] [graph file]
+ */
+public class ItineraryBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String filename = args.length > 1 ? args[1] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        List<Point> points = GraphRepository.getRoutingGraph(graph).vertices();
+
+        Random random = new Random(42);
+        List<GraphPath<Point, DefaultWeightedEdge>> paths = new ArrayList<>();
+        // every road segment, as the path and itinerary it belongs to and its start index
+        List<Integer> segmentPaths = new ArrayList<>();
+        List<Integer> segmentStarts = new ArrayList<>();
+        List<Itinerary> itineraries = new ArrayList<>();
+        while (paths.size() < count) {
+            GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getPathFromAtoB(graph, points.get(random.nextInt(points.size())).getName(), points.get(random.nextInt(points.size())).getName());
+            if (path == null) {
+                continue;
+            }
+            Itinerary itinerary = Itinerary.of(graph, path);
+            for (Itinerary.Leg leg : itinerary.getLegs()) {
+                if (leg.kind() == EdgeKind.ROAD) {
+                    segmentPaths.add(paths.size());
+                    segmentStarts.add(leg.startIndex());
+                }
+            }
+            paths.add(path);
+            itineraries.add(itinerary);
+        }
+        int segments = segmentStarts.size();
+        if (segments == 0) {
+            System.out.println("no road segments in the paths");
+            return;
+        }
+
+        double build = BenchmarkUtils.averageNanos(count / 10, count, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                int index = i++ % paths.size();
+                Itinerary.of(graph, paths.get(index));
+            }
+        });
+
+        System.out.printf("%d paths on %s (%d vertices, %d edges), %d road segments%n", count, filename, graph.vertexSet().size(), graph.edgeSet().size(), segments);
+        System.out.printf("itinerary build: %10.02f us per path%n", build / 1e3);
+
+        boolean previous = RoutingSettings.isRouteCache();
+        for (boolean cache : new boolean[]{false, true}) {
+            RoutingSettings.setRouteCache(cache);
+            double search = BenchmarkUtils.averageNanos(segments / 10, segments, new Runnable() {
+                private int i = 0;
+
+                @Override
+                public void run() {
+                    int segment = i++ % segments;
+                    ItineraryBenchmark.search(graph, paths.get(segmentPaths.get(segment)), segmentStarts.get(segment));
+                }
+            });
+            System.out.printf("roadStop + search (cache %-5s): %10.02f us per segment%n", cache, search / 1e3);
+        }
+        RoutingSettings.setRouteCache(previous);
+
+        double read = BenchmarkUtils.averageNanos(segments / 10, segments, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                int segment = i++ % segments;
+                ItineraryBenchmark.read(itineraries.get(segmentPaths.get(segment)), segmentStarts.get(segment));
+            }
+        });
+        System.out.printf("itinerary leg:                    %10.02f us per segment%n", read / 1e3);
+    }
+
+    private static double search(Graph<Point, DefaultWeightedEdge> graph, GraphPath<Point, DefaultWeightedEdge> path, int index) {
+        try {
+            Point start = path.getVertexList().get(index);
+            Point end = GraphUtils.roadStop(graph, path, index);
+            return GraphUtils.calculateCost(graph, GraphUtils.getPathFromAtoB(graph, start.getName(), end.getName()));
+        } catch (NoRoadsException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double read(Itinerary itinerary, int index) {
+        try {
+            return itinerary.roadLegFrom(index).cost();
+        } catch (NoRoadsException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.edge.EdgeKind;
+import graph.routing.CsrBidirectionalDijkstra;
+import graph.routing.CsrDijkstra;
+import graph.routing.CsrGraph;
+import graph.routing.Landmarks;
+import graph.routing.RoutingSettings;
+import graph.routing.SubwayRaptor;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the point-to-point engines on multimodal paths between random points, as the humans ask for them: the
+ * latency of {@link GraphUtils#getPathFromAtoB} with each {@link RoutingSettings.PathEngine}, and how many vertices
+ * each engine settles per query. Every engine is checked to find paths as short as a plain Dijkstra.
+ * <p>
+ * Usage: PathEngineBenchmark [queries] [graph file]
+ */
+public class PathEngineBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String filename = args.length > 1 ? args[1] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        // measure the searches themselves, not the shared route cache
+        RoutingSettings.setRouteCache(false);
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        CsrGraph csr = GraphRepository.getRoutingGraph(graph);
+        List<Point> points = csr.vertices();
+
+        Random random = new Random(42);
+        String[][] pairs = new String[queries][2];
+        for (String[] pair : pairs) {
+            pair[0] = points.get(random.nextInt(points.size())).getName();
+            pair[1] = points.get(random.nextInt(points.size())).getName();
+        }
+
+        System.out.printf("%d queries on %s (%d vertices, %d edges)%n", queries, filename, graph.vertexSet().size(), graph.edgeSet().size());
+        System.out.printf("landmarks: %d, computed in %.02f ms%n", Landmarks.of(csr).getVertices().length, Landmarks.of(csr).getPreprocessingNanos() / 1e6);
+        SubwayRaptor raptor = csr.raptor();
+        System.out.printf("raptor: %d stations, %d lines, %d transfers, computed in %.02f ms%n",
+                raptor.getStationCount(), raptor.getLineCount(), raptor.getTransferCount(), raptor.getPreprocessingNanos() / 1e6);
+
+        double[] expected = new double[queries];
+        CsrDijkstra reference = csr.newSearch(RoutingSettings.QueueKind.BINARY);
+        for (int i = 0; i < queries; i++) {
+            expected[i] = reference.run(csr.indexOf(pairs[i][0]), csr.indexOf(pairs[i][1]), EdgeKind.ALL, null);
+        }
+
+        RoutingSettings.PathEngine previous = RoutingSettings.getPathEngine();
+        for (RoutingSettings.PathEngine engine : RoutingSettings.PathEngine.values()) {
+            RoutingSettings.setPathEngine(engine);
+            int mismatches = 0;
+            for (int i = 0; i < queries; i++) {
+                GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getPathFromAtoB(graph, pairs[i][0], pairs[i][1]);
+                double weight = path == null ? Double.POSITIVE_INFINITY : path.getEdgeList().stream().mapToDouble(graph::getEdgeWeight).sum();
+                if (weight != expected[i] && Math.abs(weight - expected[i]) > 1e-6) {
+                    mismatches++;
+                }
+            }
+
+            double latency = BenchmarkUtils.averageNanos(queries / 10, queries, new Runnable() {
+                private int i = 0;
+
+                @Override
+                public void run() {
+                    String[] pair = pairs[i++ % pairs.length];
+                    GraphUtils.getPathFromAtoB(graph, pair[0], pair[1]);
+                }
+            });
+
+            long settled = 0;
+            for (String[] pair : pairs) {
+                settled += PathEngineBenchmark.settled(graph, csr, engine, csr.indexOf(pair[0]), csr.indexOf(pair[1]));
+            }
+
+            System.out.printf("%-13s: %8.02f us per query, %8.01f vertices settled per query, %d mismatches%n", engine, latency / 1e3, settled / (double) queries, mismatches);
+        }
+        RoutingSettings.setPathEngine(previous);
+    }
+
+    private static int settled(Graph<Point, DefaultWeightedEdge> graph, CsrGraph csr, RoutingSettings.PathEngine engine, int source, int target) {
+        if (engine == RoutingSettings.PathEngine.RAPTOR) {
+            csr.raptor().path(graph, source, target);
+            return csr.raptor().getSettled();
+        }
+        if (engine == RoutingSettings.PathEngine.BIDIRECTIONAL) {
+            CsrBidirectionalDijkstra search = csr.borrowBidirectionalSearch();
+            try {
+                search.run(source, target, EdgeKind.ALL, null);
+                return search.getSettled();
+            } finally {
+                csr.returnBidirectionalSearch(search);
+            }
+        }
+
+        CsrDijkstra search = csr.borrowSearch();
+        try {
+            search.run(source, target, EdgeKind.ALL, null, engine == RoutingSettings.PathEngine.ALT ? Landmarks.of(csr) : null);
+            return search.getSettled();
+        } finally {
+            csr.returnSearch(search);
+        }
+    }
+}
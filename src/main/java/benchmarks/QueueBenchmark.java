@@ -0,0 +1,98 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.edge.EdgeKind;
+import graph.io.CityGenerator;
+import graph.io.GraphSnapshot;
+import graph.routing.CsrDijkstra;
+import graph.routing.CsrGraph;
+import graph.routing.Landmarks;
+import graph.routing.RoutingSettings;
+import graph.vertex.Point;
+import graph.vertex.Semaphore;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Compares the priority queues of {@link CsrDijkstra} on road queries between semaphores and on multimodal queries
+ * between any two points, with plain Dijkstra and with ALT, on the bundled city and on generated ones.
+ * <p>
+ * Usage: QueueBenchmark [generated city vertices] [queries]
+ */
+public class QueueBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        QueueBenchmark.run(GraphRepository.DEFAULT_GRAPH_FILENAME, GraphRepository.get(GraphRepository.DEFAULT_GRAPH_FILENAME), queries * 100);
+        for (CityGenerator.Layout layout : new CityGenerator.Layout[]{CityGenerator.Layout.GRID, CityGenerator.Layout.RANDOM_GEOMETRIC}) {
+            File file = File.createTempFile("city", GraphSnapshot.EXTENSION);
+            file.deleteOnExit();
+            new CityGenerator(layout, vertices * 8 / 10, vertices / 10, vertices / 10, 42).writeSnapshot(file.getPath());
+            QueueBenchmark.run(layout + " city", GraphSnapshot.open(file.getPath()).toGraph(), queries);
+        }
+    }
+
+    private static void run(String name, Graph<Point, DefaultWeightedEdge> graph, int queries) {
+        CsrGraph csr = CsrGraph.of(graph);
+        CsrGraph roads = csr.restrictedTo(EdgeKind.ROAD.mask());
+        Landmarks landmarks = Landmarks.of(csr);
+
+        List<Point> points = new ArrayList<>(graph.vertexSet());
+        List<Point> semaphores = points.stream().filter(point -> point instanceof Semaphore).toList();
+        Random random = new Random(42);
+        int[][] roadQueries = new int[queries][];
+        int[][] multimodalQueries = new int[queries][];
+        for (int i = 0; i < queries; i++) {
+            roadQueries[i] = new int[]{csr.indexOf(semaphores.get(random.nextInt(semaphores.size()))), csr.indexOf(semaphores.get(random.nextInt(semaphores.size())))};
+            multimodalQueries[i] = new int[]{csr.indexOf(points.get(random.nextInt(points.size()))), csr.indexOf(points.get(random.nextInt(points.size())))};
+        }
+
+        System.out.printf("%s: %d vertices, %d arcs, %d queries%n", name, csr.vertexCount(), csr.arcCount(), queries);
+        System.out.printf("  %-8s %18s %18s %18s%n", "queue", "road", "multimodal", "multimodal ALT");
+        double[] expected = null;
+        for (RoutingSettings.QueueKind kind : RoutingSettings.QueueKind.values()) {
+            CsrDijkstra roadSearch = roads.newSearch(kind);
+            CsrDijkstra search = csr.newSearch(kind);
+            double[] distances = new double[3 * queries];
+
+            double road = QueueBenchmark.measure(queries, i -> distances[i] = roadSearch.run(roadQueries[i][0], roadQueries[i][1], EdgeKind.ALL, null));
+            double multimodal = QueueBenchmark.measure(queries, i -> distances[queries + i] = search.run(multimodalQueries[i][0], multimodalQueries[i][1], EdgeKind.ALL, null));
+            double alt = QueueBenchmark.measure(queries, i -> distances[2 * queries + i] = search.run(multimodalQueries[i][0], multimodalQueries[i][1], EdgeKind.ALL, null, landmarks));
+
+            int mismatches = 0;
+            if (expected == null) {
+                expected = distances;
+            } else {
+                for (int i = 0; i < distances.length; i++) {
+                    if (Math.abs(distances[i] - expected[i]) > 1e-9) {
+                        mismatches++;
+                    }
+                }
+            }
+            System.out.printf("  %-8s %15.02f us %15.02f us %15.02f us   %d mismatches%n", kind, road / 1e3, multimodal / 1e3, alt / 1e3, mismatches);
+        }
+    }
+
+    /**
+     * @return average nanoseconds per query, after a warmup round
+     */
+    private static double measure(int queries, IntConsumer query) {
+        for (int i = 0; i < queries; i++) {
+            query.accept(i);
+        }
+        return BenchmarkUtils.averageNanos(0, 3, () -> {
+            for (int i = 0; i < queries; i++) {
+                query.accept(i);
+            }
+        }) / queries;
+    }
+}
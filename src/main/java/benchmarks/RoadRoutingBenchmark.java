@@ -0,0 +1,101 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.edge.RoadEdge;
+import graph.routing.RoadDistanceOracle;
+import graph.routing.RoutingSettings;
+import graph.vertex.Point;
+import graph.vertex.Semaphore;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.WeightedMultigraph;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the road routing done for one car ride CFP: the ride path plus the path from the car to the pickup.
+ * <p>
+ * "before" rebuilds the road network on every query, as getRoadPathFromAtoB used to, "after" goes through
+ * {@link GraphUtils#getRoadPathFromAtoB}, which reuses the cached road view, and "oracle" prices the ride with
+ * {@link GraphUtils#getRoadDistance} as cars do.
+ * <p>
+ * Usage: RoadRoutingBenchmark [CFPs] [graph file]
+ */
+public class RoadRoutingBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int cfps = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String filename = args.length > 1 ? args[1] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        // measure the searches themselves, not the shared route cache
+        RoutingSettings.setRouteCache(false);
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        List<Point> semaphores = graph.vertexSet().stream().filter(point -> point instanceof Semaphore).toList();
+
+        Random random = new Random(42);
+        String[][] rides = new String[cfps][3];
+        for (String[] ride : rides) {
+            for (int i = 0; i < ride.length; i++) {
+                ride[i] = semaphores.get(random.nextInt(semaphores.size())).getName();
+            }
+        }
+
+        double before = BenchmarkUtils.averageNanos(cfps / 10, cfps, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                String[] ride = rides[i++ % rides.length];
+                RoadRoutingBenchmark.filteredRoadPath(graph, ride[1], ride[2]);
+                RoadRoutingBenchmark.filteredRoadPath(graph, ride[0], ride[1]);
+            }
+        });
+
+        double after = BenchmarkUtils.averageNanos(cfps / 10, cfps, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                String[] ride = rides[i++ % rides.length];
+                GraphUtils.getRoadPathFromAtoB(graph, ride[1], ride[2]);
+                GraphUtils.getRoadPathFromAtoB(graph, ride[0], ride[1]);
+            }
+        });
+
+        double oracle = BenchmarkUtils.averageNanos(cfps / 10, cfps, new Runnable() {
+            private int i = 0;
+
+            @Override
+            public void run() {
+                String[] ride = rides[i++ % rides.length];
+                GraphUtils.getRoadDistance(graph, ride[1], ride[2]);
+                GraphUtils.getRoadDistance(graph, ride[0], ride[1]);
+            }
+        });
+
+        System.out.printf("%d CFPs on %s (%d vertices, %d edges)%n", cfps, filename, graph.vertexSet().size(), graph.edgeSet().size());
+        System.out.printf("before: %10.02f us per CFP%n", before / 1e3);
+        System.out.printf("after : %10.02f us per CFP (%.01fx)%n", after / 1e3, before / after);
+        System.out.printf("oracle: %10.02f us per CFP (%.01fx)%n", oracle / 1e3, before / oracle);
+        System.out.println(RoadDistanceOracle.of(GraphRepository.getRoutingGraph(graph)));
+    }
+
+    /**
+     * The road routing as it was: copy the road edges into a new graph and run Dijkstra on it.
+     */
+    private static GraphPath<Point, DefaultWeightedEdge> filteredRoadPath(Graph<Point, DefaultWeightedEdge> graph, String a, String b) {
+        Graph<Point, DefaultWeightedEdge> roadGraph = new WeightedMultigraph<>(DefaultWeightedEdge.class);
+        graph.edgeSet().stream().filter(edge -> edge instanceof RoadEdge).forEach(edge -> {
+            roadGraph.addVertex(graph.getEdgeSource(edge));
+            roadGraph.addVertex(graph.getEdgeTarget(edge));
+            roadGraph.addEdge(graph.getEdgeSource(edge), graph.getEdgeTarget(edge), edge);
+        });
+
+        return new DijkstraShortestPath<>(roadGraph).getPath(Point.instance(a), Point.instance(b));
+    }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import com.google.common.cache.CacheStats;
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.WeightOverlay;
+import graph.edge.EdgeKind;
+import graph.edge.RoadEdge;
+import graph.routing.RouteCache;
+import graph.routing.RoutingSettings;
+import graph.routing.WeightProfile;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays the routing that the humans launched by {@code Launcher} do when they start: groups of one initiator and
+ * up to five waiters share an origin, a destination and a profile, and each of them searches its path and then the
+ * road segments along it. The run is timed without and with the shared {@link RouteCache}, and the paths of both
+ * runs are checked to cost the same.
+ * <p>
+ * Usage: RouteCacheBenchmark [groups] [graph file]
+ */
+public class RouteCacheBenchmark {
+
+    private static final WeightProfile[] PROFILES = {
+            WeightProfile.DEFAULT,
+            WeightProfile.DEFAULT.without(EdgeKind.SUBWAY),
+            WeightProfile.DEFAULT.without(EdgeKind.STREET),
+            WeightProfile.DEFAULT.withMultiplier(EdgeKind.ROAD, 2),
+    };
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int groups = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String filename = args.length > 1 ? args[1] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        List<Point> points = GraphRepository.getRoutingGraph(graph).vertices();
+
+        Random random = new Random(42);
+        String[][] trips = new String[groups][];
+        int[] humans = new int[groups];
+        WeightProfile[] profiles = new WeightProfile[groups];
+        for (int i = 0; i < groups; i++) {
+            trips[i] = new String[]{points.get(random.nextInt(points.size())).getName(), points.get(random.nextInt(points.size())).getName()};
+            humans[i] = 1 + (random.nextDouble() > 0.8 ? 1 + random.nextInt(5) : 0);
+            profiles[i] = PROFILES[random.nextInt(PROFILES.length)];
+        }
+
+        // warm up both ways, then start from an empty cache
+        double[] expected = new double[groups];
+        double[] actual = new double[groups];
+        for (boolean enabled : new boolean[]{false, true}) {
+            RoutingSettings.setRouteCache(enabled);
+            RouteCacheBenchmark.run(graph, trips, humans, profiles, actual);
+        }
+        RouteCache.shared().clear();
+        CacheStats before = RouteCache.shared().getStats();
+
+        RoutingSettings.setRouteCache(false);
+        long uncached = RouteCacheBenchmark.run(graph, trips, humans, profiles, expected);
+
+        RoutingSettings.setRouteCache(true);
+        long cached = RouteCacheBenchmark.run(graph, trips, humans, profiles, actual);
+        CacheStats stats = RouteCache.shared().getStats().minus(before);
+
+        int mismatches = 0;
+        for (int i = 0; i < groups; i++) {
+            if (Math.abs(expected[i] - actual[i]) > 1e-6) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("%d groups on %s (%d vertices, %d edges)%n", groups, filename, graph.vertexSet().size(), graph.edgeSet().size());
+        System.out.printf("uncached: %8.02f ms%n", uncached / 1e6);
+        System.out.printf("cached:   %8.02f ms (%.02fx), %d hits, %d misses (%.01f%%), %d evictions%n",
+                cached / 1e6, uncached / (double) cached, stats.hitCount(), stats.missCount(), stats.hitRate() * 100, stats.evictionCount());
+        System.out.printf("mismatches: %d%n", mismatches);
+    }
+
+    /**
+     * @param costs filled with the cost of the path of each group
+     * @return nanoseconds spent routing
+     */
+    private static long run(Graph<Point, DefaultWeightedEdge> graph, String[][] trips, int[] humans, WeightProfile[] profiles, double[] costs) {
+        long start = System.nanoTime();
+        for (int i = 0; i < trips.length; i++) {
+            for (int human = 0; human < humans[i]; human++) {
+                // as HumanAgent does, every human has its own overlay on the view of its profile
+                Graph<Point, DefaultWeightedEdge> own = new WeightOverlay(GraphRepository.weightedView(graph, profiles[i]));
+                GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getPathFromAtoB(own, trips[i][0], trips[i][1], profiles[i]);
+                costs[i] = path.getWeight();
+
+                List<DefaultWeightedEdge> edges = path.getEdgeList();
+                for (int from = 0; from < edges.size(); from++) {
+                    if (!(edges.get(from) instanceof RoadEdge)) {
+                        continue;
+                    }
+                    int to = from;
+                    while (to < edges.size() && edges.get(to) instanceof RoadEdge) {
+                        to++;
+                    }
+                    GraphUtils.getPathFromAtoB(own, path.getVertexList().get(from).getName(), path.getVertexList().get(to).getName(), profiles[i]);
+                    from = to;
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.WeightOverlay;
+import graph.edge.EdgeKind;
+import graph.routing.DynamicRoute;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulates trips whose weights change on the way, as fares and shared rides do, and compares repairing the rest
+ * of the route with {@link DynamicRoute} against searching it again. Every repaired route is checked to cost the
+ * same as a fresh search.
+ * <p>
+ * Usage: RouteRepairBenchmark [trips] [changes per trip] [graph file]
+ */
+public class RouteRepairBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int trips = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String filename = args.length > 2 ? args[2] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        Graph<Point, DefaultWeightedEdge> base = GraphRepository.get(filename);
+        List<Point> points = new ArrayList<>(base.vertexSet());
+        List<DefaultWeightedEdge> edges = new ArrayList<>(base.edgeSet());
+        Random random = new Random(42);
+
+        long repairNanos = 0;
+        long searchNanos = 0;
+        int mismatches = 0;
+        for (int trip = 0; trip < trips; trip++) {
+            WeightOverlay graph = new WeightOverlay(base);
+            String dst = points.get(random.nextInt(points.size())).getName();
+            GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getPathFromAtoB(graph, points.get(random.nextInt(points.size())).getName(), dst);
+            DynamicRoute route = DynamicRoute.of(graph, dst, EdgeKind.ALL);
+            // builds the tree up front, so that only repairs are timed
+            route.reaches(dst);
+
+            for (int change = 0; change < changes && path.getLength() > 0; change++) {
+                // a fare or a share on the next edges of the route, and some noise elsewhere
+                int from = random.nextInt(path.getLength());
+                List<DefaultWeightedEdge> changed = new ArrayList<>(path.getEdgeList().subList(from, Math.min(path.getLength(), from + 3)));
+                changed.add(edges.get(random.nextInt(edges.size())));
+                for (DefaultWeightedEdge edge : changed) {
+                    graph.setEdgeWeight(edge, graph.getEdgeWeight(edge) * (random.nextBoolean() ? 0.5 : 3));
+                }
+
+                int index = Math.min(path.getLength(), from + 1);
+                long start = System.nanoTime();
+                path = route.repair(path, index, changed);
+                repairNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                GraphPath<Point, DefaultWeightedEdge> fresh = GraphUtils.getPathFromAtoB(graph, path.getVertexList().get(index).getName(), dst);
+                searchNanos += System.nanoTime() - start;
+
+                double suffix = 0;
+                for (DefaultWeightedEdge edge : path.getEdgeList().subList(index, path.getLength())) {
+                    suffix += graph.getEdgeWeight(edge);
+                }
+                if (Math.abs(suffix - fresh.getWeight()) > 1e-6) {
+                    mismatches++;
+                }
+            }
+        }
+
+        long repairs = DynamicRoute.getTotalStats().getRepairs();
+        System.out.printf("%d trips with %d weight changes each on %s%n", trips, changes, filename);
+        System.out.printf("repair: %8.02f us per change (%s)%n", repairNanos / 1e3 / repairs, DynamicRoute.getTotalStats());
+        System.out.printf("search: %8.02f us per change%n", searchNanos / 1e3 / repairs);
+        System.out.printf("mismatches: %d%n", mismatches);
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import graph.GraphRepository;
+import graph.GraphUtils;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import utils.SimulationClock;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives travellers along random road paths on a {@link SimulationClock}, each edge scheduled when the last one is
+ * reached as {@code utils.TravelTimer} does for the agents, at several speed-ups. Prints the wall time of the run and
+ * the virtual time it simulated, and checks that every traveller arrives at the virtual time of its path weight and
+ * that the events fired in the order of their virtual time. Events only fire out of order when they were scheduled
+ * late, before the last fired event, which does not happen here since every traveller departs in the same event.
+ * <p>
+ * Usage: SimulationClockBenchmark [travellers] [virtual millis per weight] [graph file]
+ */
+public class SimulationClockBenchmark {
+
+    public static void main(String[] args) throws FileNotFoundException, InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double millisPerWeight = args.length > 1 ? Double.parseDouble(args[1]) : 1000;
+        String filename = args.length > 2 ? args[2] : GraphRepository.DEFAULT_GRAPH_FILENAME;
+
+        Graph<Point, DefaultWeightedEdge> graph = GraphRepository.get(filename);
+        List<Point> points = GraphRepository.getRoutingGraph(graph).vertices();
+
+        Random random = new Random(42);
+        List<GraphPath<Point, DefaultWeightedEdge>> paths = new ArrayList<>();
+        long edges = 0;
+        while (paths.size() < count) {
+            GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getRoadPathFromAtoB(graph, points.get(random.nextInt(points.size())).getName(), points.get(random.nextInt(points.size())).getName());
+            if (path != null && path.getLength() > 0) {
+                paths.add(path);
+                edges += path.getLength();
+            }
+        }
+
+        System.out.printf("%d travellers, %d edges on %s (%d vertices, %d edges)%n", count, edges, filename, graph.vertexSet().size(), graph.edgeSet().size());
+        for (String speedUp : new String[]{"max", "100000", "10000"}) {
+            SimulationClock clock = new SimulationClock(SimulationClock.parseSpeedUp(speedUp), millisPerWeight, 0);
+            SimulationClockBenchmark.run(clock, graph, paths);
+        }
+    }
+
+    private static void run(SimulationClock clock, Graph<Point, DefaultWeightedEdge> graph, List<GraphPath<Point, DefaultWeightedEdge>> paths) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(paths.size());
+        AtomicInteger wrongArrivals = new AtomicInteger();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        AtomicLong lastFired = new AtomicLong(Long.MIN_VALUE);
+        AtomicLong end = new AtomicLong();
+
+        long start = System.nanoTime();
+        long departure = clock.now();
+        List<Runnable> travellers = new ArrayList<>();
+        for (GraphPath<Point, DefaultWeightedEdge> path : paths) {
+            long expected = departure + path.getEdgeList().stream().mapToLong(edge -> clock.travelTime(graph.getEdgeWeight(edge))).sum();
+            travellers.add(new Runnable() {
+                private int index = 0;
+
+                private long arrival = departure;
+
+                @Override
+                public void run() {
+                    if (lastFired.getAndAccumulate(this.arrival, Math::max) > this.arrival) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    if (this.index == path.getLength()) {
+                        if (this.arrival != expected) {
+                            wrongArrivals.incrementAndGet();
+                        }
+                        end.accumulateAndGet(this.arrival, Math::max);
+                        finished.countDown();
+                        return;
+                    }
+
+                    this.arrival += clock.travelTime(graph.getEdgeWeight(path.getEdgeList().get(this.index++)));
+                    clock.schedule(this.arrival, this);
+                }
+            });
+        }
+        // every traveller departs in the same event, as agents that are all ready when the clock starts
+        clock.schedule(departure, () -> travellers.forEach(Runnable::run));
+        finished.await();
+        long wall = System.nanoTime() - start;
+
+        System.out.printf("speed-up %-6s: %9.02f ms wall for %9.01f s simulated, %d wrong arrivals, %d events out of order, %d scheduled late%n",
+                clock.isAsFastAsPossible() ? "max" : String.valueOf((long) clock.getSpeedUp()),
+                wall / 1e6, (end.get() - departure) / 1e3, wrongArrivals.get(), outOfOrder.get(), clock.getLate());
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import graph.edge.EdgeKind;
+import graph.io.CityGenerator;
+import graph.io.DotGraphReader;
+import graph.io.GraphSnapshot;
+import graph.io.SnapshotGraph;
+import graph.routing.CsrGraph;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compares loading a city from DOT with loading it from a {@link GraphSnapshot}: mapping the snapshot alone,
+ * mapping it and building the jgrapht graph, and mapping it and building the routing snapshot the repository uses
+ * instead. Also checks that the snapshot gives back the graph it was written from.
+ * <p>
+ * Without a file, a grid city of the given side is generated to a temporary file first.
+ * <p>
+ * Usage: SnapshotLoadBenchmark [grid side | graph file]
+ */
+public class SnapshotLoadBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        File dot;
+        if (args.length > 0 && new File(args[0]).isFile()) {
+            dot = new File(args[0]);
+        } else {
+            int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+            dot = File.createTempFile("grid", ".dot");
+            dot.deleteOnExit();
+            try (OutputStream output = new FileOutputStream(dot)) {
+                new CityGenerator(CityGenerator.Layout.GRID, side * side, 0, 0, 42).writeDOT(output);
+            }
+        }
+        File snapshot = File.createTempFile("grid", GraphSnapshot.EXTENSION);
+        snapshot.deleteOnExit();
+
+        long start = System.nanoTime();
+        Graph<Point, DefaultWeightedEdge> expected = DotGraphReader.read(dot.getPath());
+        GraphSnapshot.write(expected, snapshot.getPath());
+        System.out.printf("%s: %.01f MB DOT, %.01f MB snapshot, converted in %.02f ms%n",
+                dot, dot.length() / 1e6, snapshot.length() / 1e6, (System.nanoTime() - start) / 1e6);
+
+        Graph<Point, DefaultWeightedEdge> actual = null;
+        long parse = Long.MAX_VALUE;
+        long map = Long.MAX_VALUE;
+        long load = Long.MAX_VALUE;
+        long routing = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            start = System.nanoTime();
+            DotGraphReader.read(dot.getPath());
+            parse = Math.min(parse, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            GraphSnapshot mapped = GraphSnapshot.open(snapshot.getPath());
+            map = Math.min(map, System.nanoTime() - start);
+            actual = mapped.toGraph();
+            load = Math.min(load, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            SnapshotGraph lazy = new SnapshotGraph(GraphSnapshot.open(snapshot.getPath()));
+            CsrGraph.of(lazy.getSnapshot(), lazy.points(), lazy.edges());
+            routing = Math.min(routing, System.nanoTime() - start);
+        }
+
+        System.out.printf("DOT reader     : %10.02f ms%n", parse / 1e6);
+        System.out.printf("snapshot map   : %10.02f ms%n", map / 1e6);
+        System.out.printf("snapshot graph : %10.02f ms%n", load / 1e6);
+        System.out.printf("snapshot csr   : %10.02f ms%n", routing / 1e6);
+
+        Map<Point, Point> actualPoints = actual.vertexSet().stream().collect(Collectors.toMap(point -> point, point -> point));
+        boolean sameVertices = expected.vertexSet().size() == actualPoints.size()
+                && expected.vertexSet().stream().allMatch(point -> actualPoints.containsKey(point) && actualPoints.get(point).getClass() == point.getClass());
+        boolean sameEdges = expected.edgeSet().size() == actual.edgeSet().size()
+                && SnapshotLoadBenchmark.edges(expected).equals(SnapshotLoadBenchmark.edges(actual));
+        System.out.printf("same graph: %b%n", sameVertices && sameEdges);
+    }
+
+    /**
+     * @return how many times every edge appears, by its endpoints, kind and weight
+     */
+    private static Map<String, Long> edges(Graph<Point, DefaultWeightedEdge> graph) {
+        return graph.edgeSet().stream().collect(Collectors.groupingBy(edge -> {
+            String source = graph.getEdgeSource(edge).getName();
+            String target = graph.getEdgeTarget(edge).getName();
+            // undirected, so the endpoints are ordered
+            String endpoints = source.compareTo(target) <= 0 ? source + " -- " + target : target + " -- " + source;
+            return endpoints + " " + EdgeKind.of(edge) + " " + graph.getEdgeWeight(edge);
+        }, Collectors.counting()));
+    }
+}
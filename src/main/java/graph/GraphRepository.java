@@ -0,0 +1,353 @@
+package graph;
+
+import com.google.common.base.Suppliers;
+import graph.edge.EdgeKind;
+import graph.io.DotGraphReader;
+import graph.io.GraphSnapshot;
+import graph.io.SnapshotGraph;
+import graph.routing.CsrGraph;
+import graph.routing.Landmarks;
+import graph.routing.RoadContractionHierarchy;
+import graph.routing.RouteCache;
+import graph.routing.RoutingSettings;
+import graph.routing.WeightProfile;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.AsUnmodifiableGraph;
+import org.jgrapht.graph.AsWeightedGraph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.FileNotFoundException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide repository of city graphs.
+ * <p>
+ * Every graph file is parsed at most once per JVM, and the resulting topology is handed out as an unmodifiable
+ * graph that every agent shares. Graphs loaded from a {@link GraphSnapshot} are routed over the mapped file, and
+ * their jgrapht graph is only built once an agent reads it. Agents that need different weights get a weighted view
+ * of the shared topology instead of parsing the DOT file again.
+ */
+public class GraphRepository {
+
+    public static final String DEFAULT_GRAPH_FILENAME = "citygraph.dot";
+
+    private static final Map<String, Graph<Point, DefaultWeightedEdge>> graphs = new ConcurrentHashMap<>();
+
+    private static final Map<String, LoadStats> stats = new ConcurrentHashMap<>();
+
+    private static final Map<GraphKey, Map<WeightProfile, Graph<Point, DefaultWeightedEdge>>> views = new ConcurrentHashMap<>();
+
+    /**
+     * Every graph handed out by the repository, mapped to the shared graph it was built from
+     */
+    private static final Map<GraphKey, Graph<Point, DefaultWeightedEdge>> bases = new ConcurrentHashMap<>();
+
+    /**
+     * Profile of every view built directly over a shared graph
+     */
+    private static final Map<GraphKey, WeightProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Routing graphs and hierarchies are built by the first thread that asks for them, outside of any lock shared
+     * with other graphs, while the other threads asking for the same one wait for it
+     */
+    private static final Map<GraphKey, Supplier<CsrGraph>> routingGraphs = new ConcurrentHashMap<>();
+
+    private static final Map<GraphKey, Supplier<RoadContractionHierarchy>> hierarchies = new ConcurrentHashMap<>();
+
+    private GraphRepository() {
+    }
+
+    /**
+     * Gets the shared graph for a file, parsing it the first time it is requested. An up to date
+     * {@link GraphSnapshot} of the file is loaded instead when there is one.
+     *
+     * @param filename file name containing a DOT format graph with required attributes
+     * @return shared, unmodifiable graph
+     * @throws FileNotFoundException when the file could not be found
+     */
+    public static Graph<Point, DefaultWeightedEdge> get(String filename) throws FileNotFoundException {
+        Graph<Point, DefaultWeightedEdge> graph = graphs.get(filename);
+        if (graph != null) {
+            stats.get(filename).requests.incrementAndGet();
+            return graph;
+        }
+        return GraphRepository.load(filename);
+    }
+
+    /**
+     * Loads a graph file, unless another thread did meanwhile. Only loads hold the lock of the repository.
+     */
+    private static synchronized Graph<Point, DefaultWeightedEdge> load(String filename) throws FileNotFoundException {
+        Graph<Point, DefaultWeightedEdge> graph = graphs.get(filename);
+        if (graph != null) {
+            stats.get(filename).requests.incrementAndGet();
+            return graph;
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        String snapshot = GraphSnapshot.findFor(filename);
+        int vertices;
+        int edges;
+        if (snapshot != null) {
+            // routes over the mapped file, the jgrapht graph is only built for the agents that use it
+            SnapshotGraph snapshotGraph = new SnapshotGraph(GraphSnapshot.open(snapshot));
+            graph = new AsUnmodifiableGraph<>(snapshotGraph);
+            CsrGraph csr = CsrGraph.of(snapshotGraph.getSnapshot(), snapshotGraph.points(), snapshotGraph.edges());
+            routingGraphs.put(new GraphKey(graph), () -> csr);
+            vertices = snapshotGraph.getSnapshot().vertexCount();
+            edges = snapshotGraph.getSnapshot().edgeCount();
+        } else {
+            graph = new AsUnmodifiableGraph<>(DotGraphReader.read(filename));
+            vertices = graph.vertexSet().size();
+            edges = graph.edgeSet().size();
+        }
+
+        long parseNanos = System.nanoTime() - start;
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        bases.put(new GraphKey(graph), graph);
+        stats.put(filename, new LoadStats(filename, vertices, edges, parseNanos, Math.max(0, heapAfter - heapBefore)));
+        // published last, a graph seen without locking has its base and stats
+        graphs.put(filename, graph);
+
+        if (RoutingSettings.getRoadEngine() == RoutingSettings.RoadEngine.CONTRACTION_HIERARCHIES) {
+            // built with the graph so that no agent waits for it, its build time is in getPreprocessingNanos
+            getRoadHierarchy(graph);
+        }
+
+        return graph;
+    }
+
+    /**
+     * Gets the shared default city graph.
+     *
+     * @return shared, unmodifiable graph
+     * @throws FileNotFoundException when the default graph file could not be found
+     */
+    public static Graph<Point, DefaultWeightedEdge> getDefault() throws FileNotFoundException {
+        return GraphRepository.get(DEFAULT_GRAPH_FILENAME);
+    }
+
+    /**
+     * Gets a read-only view of a shared graph with custom weights, without copying or parsing anything. Views are
+     * cached, so agents with the same weights share the same view. Weight semantics are the same as
+     * {@link GraphUtils#importGraph(String, double, double, double)}.
+     *
+     * @param graph        shared graph
+     * @param streetWeight weight for street edges (walking)
+     * @param roadWeight   weight for road edges (car/uber)
+     * @param subwayWeight weight for subway edges
+     * @return a shared, unmodifiable graph with custom weights
+     */
+    public static Graph<Point, DefaultWeightedEdge> weightedView(Graph<Point, DefaultWeightedEdge> graph, double streetWeight, double roadWeight, double subwayWeight) {
+        return GraphRepository.weightedView(graph, WeightProfile.of(streetWeight, roadWeight, subwayWeight));
+    }
+
+    /**
+     * Gets a read-only view of a shared graph with the weights of a profile. Views are cached by the weights of the
+     * profile only, the mode mask is applied when routing, so profiles that only forbid some modes share the graph
+     * itself.
+     *
+     * @param graph   shared graph
+     * @param profile weight profile
+     * @return a shared, unmodifiable graph with the profile weights
+     */
+    public static Graph<Point, DefaultWeightedEdge> weightedView(Graph<Point, DefaultWeightedEdge> graph, WeightProfile profile) {
+        if (!profile.hasCustomWeights()) {
+            return graph;
+        }
+
+        GraphKey key = new GraphKey(graph);
+        Map<WeightProfile, Graph<Point, DefaultWeightedEdge>> graphViews = views.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        return graphViews.computeIfAbsent(profile.weightsOnly(), weights -> {
+            Graph<Point, DefaultWeightedEdge> view = new AsWeightedGraph<>(graph, edge -> weights.weight(EdgeKind.of(edge), graph.getEdgeWeight(edge)), false, false);
+            Graph<Point, DefaultWeightedEdge> base = bases.getOrDefault(key, graph);
+            if (base == graph) {
+                profiles.put(new GraphKey(view), weights);
+            }
+            bases.put(new GraphKey(view), base);
+            return view;
+        });
+    }
+
+    /**
+     * Gets the shared graph below a view or an overlay, whose weights are the physical lengths of the edges rather
+     * than the preferences of a profile or the fares of an agent.
+     *
+     * @param graph a graph from the repository, a view of it or an overlay on top of one of those
+     * @return the shared graph, or the graph itself if it is not known to the repository
+     */
+    public static Graph<Point, DefaultWeightedEdge> getBase(Graph<Point, DefaultWeightedEdge> graph) {
+        if (graph instanceof WeightOverlay overlay) {
+            graph = overlay.getBase();
+        }
+        return bases.getOrDefault(new GraphKey(graph), graph);
+    }
+
+    /**
+     * Gets the CSR snapshot used to route over a graph handed out by the repository. Snapshots are built on first
+     * use, together with their landmarks when ALT routing is selected, and views share the topology arrays of their
+     * shared graph. For a {@link WeightOverlay} this is the snapshot of the graph below it, the overlay changes are
+     * applied by the search.
+     *
+     * @param graph a graph from the repository, a view of it or an overlay on top of one of those
+     * @return the CSR snapshot, or null if the graph is not known to be immutable
+     */
+    public static CsrGraph getRoutingGraph(Graph<Point, DefaultWeightedEdge> graph) {
+        Graph<Point, DefaultWeightedEdge> routed = graph instanceof WeightOverlay overlay ? overlay.getBase() : graph;
+        GraphKey key = new GraphKey(routed);
+
+        Supplier<CsrGraph> csr = routingGraphs.get(key);
+        if (csr == null) {
+            Graph<Point, DefaultWeightedEdge> base = bases.get(key);
+            if (base == null) {
+                return null;
+            }
+            csr = routingGraphs.computeIfAbsent(key, k -> Suppliers.memoize(() -> buildRoutingGraph(routed, base)));
+        }
+        return csr.get();
+    }
+
+    private static CsrGraph buildRoutingGraph(Graph<Point, DefaultWeightedEdge> graph, Graph<Point, DefaultWeightedEdge> base) {
+        WeightProfile profile = profiles.get(new GraphKey(graph));
+        CsrGraph csr;
+        if (base == graph) {
+            csr = CsrGraph.of(graph);
+        } else if (profile != null) {
+            // reweights the arcs without reading the view, which would build the graph of a snapshot
+            csr = getRoutingGraph(base).withWeights(profile);
+        } else {
+            csr = getRoutingGraph(base).withWeights(graph);
+        }
+        if (RoutingSettings.getPathEngine() == RoutingSettings.PathEngine.ALT) {
+            Landmarks.of(csr);
+        }
+        return csr;
+    }
+
+    /**
+     * Gets the contraction hierarchy of the road network of a shared graph, building it on first use. Hierarchies
+     * are only kept for the shared graphs themselves: views and overlays may have other road weights.
+     *
+     * @param graph a graph from the repository
+     * @return the road contraction hierarchy, or null if the graph is not a shared graph
+     */
+    public static RoadContractionHierarchy getRoadHierarchy(Graph<Point, DefaultWeightedEdge> graph) {
+        GraphKey key = new GraphKey(graph);
+        if (bases.get(key) != graph) {
+            return null;
+        }
+        return hierarchies.computeIfAbsent(key, k -> Suppliers.memoize(() -> RoadContractionHierarchy.build(graph))).get();
+    }
+
+    /**
+     * @param filename graph file name
+     * @return load statistics for the file, or null if it was never loaded
+     */
+    public static LoadStats getStats(String filename) {
+        return stats.get(filename);
+    }
+
+    public static Map<String, LoadStats> getAllStats() {
+        return Map.copyOf(stats);
+    }
+
+    /**
+     * Drops every cached graph, and the routes cached over them. Agents keep the graphs they already hold.
+     */
+    public static synchronized void clear() {
+        graphs.clear();
+        stats.clear();
+        views.clear();
+        bases.clear();
+        profiles.clear();
+        routingGraphs.clear();
+        hierarchies.clear();
+        RouteCache.shared().clear();
+    }
+
+    /**
+     * Key of a graph by identity, since jgrapht graphs compare by their vertices and edges
+     */
+    private record GraphKey(Graph<Point, DefaultWeightedEdge> graph) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GraphKey other && other.graph == this.graph;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.graph);
+        }
+    }
+
+    /**
+     * Numbers about a graph load.
+     * <p>
+     * The heap value is the difference in used heap before and after parsing, so it is only an approximation.
+     */
+    public static final class LoadStats {
+        private final String filename;
+        private final int vertices;
+        private final int edges;
+        private final long parseNanos;
+        private final long heapBytes;
+        private final AtomicLong requests = new AtomicLong(1);
+
+        private LoadStats(String filename, int vertices, int edges, long parseNanos, long heapBytes) {
+            this.filename = filename;
+            this.vertices = vertices;
+            this.edges = edges;
+            this.parseNanos = parseNanos;
+            this.heapBytes = heapBytes;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public int getVertices() {
+            return vertices;
+        }
+
+        public int getEdges() {
+            return edges;
+        }
+
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        /**
+         * @return how many times the graph was requested, the first load included
+         */
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * @return parse time that was avoided by sharing the graph, assuming every request would parse the file
+         */
+        public long getSavedNanos() {
+            return parseNanos * (getRequests() - 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d vertices, %d edges, parsed in %.02f ms, ~%d KB heap, %d requests (%.02f ms of parsing saved)",
+                    filename, vertices, edges, parseNanos / 1e6, heapBytes / 1024, getRequests(), getSavedNanos() / 1e6);
+        }
+    }
+}
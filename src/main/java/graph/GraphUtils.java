@@ -2,10 +2,24 @@ package graph;
 
 import agents.HumanAgent;
 import graph.edge.Edge;
+import graph.edge.EdgeKind;
 import graph.edge.RoadEdge;
 import graph.edge.StreetEdge;
 import graph.edge.SubwayEdge;
 import graph.exceptions.NoRoadsException;
+import graph.io.DotGraphReader;
+import graph.io.GraphSnapshot;
+import graph.io.SnapshotGraph;
+import graph.routing.CsrBidirectionalDijkstra;
+import graph.routing.CsrDijkstra;
+import graph.routing.CsrGraph;
+import graph.routing.DeltaStepping;
+import graph.routing.Landmarks;
+import graph.routing.RoadContractionHierarchy;
+import graph.routing.RoadDistanceOracle;
+import graph.routing.RouteCache;
+import graph.routing.RoutingSettings;
+import graph.routing.WeightProfile;
 import graph.vertex.Point;
 import graph.vertex.Semaphore;
 import graph.vertex.Station;
@@ -13,7 +27,10 @@ import org.jgrapht.Graph;
 import org.jgrapht.GraphPath;
 import org.jgrapht.alg.interfaces.ShortestPathAlgorithm;
 import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
+import org.jgrapht.graph.AsWeightedGraph;
 import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+import org.jgrapht.graph.MaskSubgraph;
 import org.jgrapht.graph.WeightedMultigraph;
 import org.jgrapht.nio.Attribute;
 import org.jgrapht.nio.DefaultAttribute;
@@ -22,11 +39,11 @@ import org.jgrapht.nio.dot.DOTImporter;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class GraphUtils {
 
-    private static final String DEFAULT_GRAPH_FILENAME = "citygraph.dot";
-
     private GraphUtils() {
     }
 
@@ -64,6 +81,17 @@ public class GraphUtils {
      * @return parsed graph
      */
     public static Graph<Point, DefaultWeightedEdge> getFromDOT(InputStream inputStream) {
+        return DotGraphReader.read(inputStream);
+    }
+
+    /**
+     * Import a graph from a DOT format with the jgrapht importer, which understands any DOT file but is much slower
+     * than {@link #getFromDOT(InputStream)} on large graphs
+     *
+     * @param inputStream input for the graph object
+     * @return parsed graph
+     */
+    public static Graph<Point, DefaultWeightedEdge> getFromDOTWithImporter(InputStream inputStream) {
         DOTImporter<Point, DefaultWeightedEdge> importer = new DOTImporter<>();
         Graph<Point, DefaultWeightedEdge> g = new WeightedMultigraph<>(DefaultWeightedEdge.class);
 
@@ -80,7 +108,7 @@ public class GraphUtils {
                 }
             }
 
-            return point;
+            return Point.intern(point);
         });
 
         importer.setEdgeWithAttributesFactory((map) -> {
@@ -115,22 +143,287 @@ public class GraphUtils {
      * @return the shortest path from A to B
      */
     public static GraphPath<Point, DefaultWeightedEdge> getPathFromAtoB(Graph<Point, DefaultWeightedEdge> graph, String a, String b) {
-        DijkstraShortestPath<Point, DefaultWeightedEdge> dijkstraAlg = new DijkstraShortestPath<>(graph);
-        ShortestPathAlgorithm.SingleSourcePaths<Point, DefaultWeightedEdge> iPaths = dijkstraAlg.getPaths(Point.instance(a));
+        return GraphUtils.route(graph, a, b, EdgeKind.ALL);
+    }
 
-        return iPaths.getPath(Point.instance(b));
+    /**
+     * Get the shortest path from A to B for a weight profile. The graph is expected to carry the profile weights,
+     * see {@link GraphRepository#weightedView(Graph, WeightProfile)}, and the edge kinds the profile forbids are
+     * skipped by the search. Forbidden kinds are only used when B cannot be reached without them, since the city
+     * is not connected on every mode, and then the path uses as few forbidden edges as it can, see
+     * {@link CsrGraph#penalizedOutside(int)}.
+     *
+     * @param graph   graph with the profile weights
+     * @param a       source point
+     * @param b       destination point
+     * @param profile weight profile of the agent
+     * @return the shortest path from A to B
+     */
+    public static GraphPath<Point, DefaultWeightedEdge> getPathFromAtoB(Graph<Point, DefaultWeightedEdge> graph, String a, String b, WeightProfile profile) {
+        GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.route(graph, a, b, profile.getModeMask());
+        if (path == null && profile.getModeMask() != EdgeKind.ALL) {
+            path = GraphUtils.routeAvoiding(graph, a, b, profile.getModeMask());
+        }
+        return path;
     }
 
+    /**
+     * Shortest path over every edge kind, where the kinds outside a mode mask cost {@link CsrGraph#FORBIDDEN_PENALTY}
+     * times their weight. The path is weighed with the weights of the graph.
+     */
+    private static GraphPath<Point, DefaultWeightedEdge> routeAvoiding(Graph<Point, DefaultWeightedEdge> graph, String a, String b, int modeMask) {
+        GraphPath<Point, DefaultWeightedEdge> path;
+        CsrGraph routingGraph = GraphRepository.getRoutingGraph(graph);
+        if (routingGraph == null) {
+            Graph<Point, DefaultWeightedEdge> penalized = new AsWeightedGraph<>(graph, edge -> {
+                double weight = graph.getEdgeWeight(edge);
+                return (EdgeKind.of(edge).mask() & modeMask) == 0 ? weight * CsrGraph.FORBIDDEN_PENALTY : weight;
+            }, false, false);
+            path = GraphUtils.routeWithJGraphT(penalized, a, b, EdgeKind.ALL);
+        } else {
+            CsrGraph csr = routingGraph.penalizedOutside(modeMask);
+            int source = csr.indexOf(a);
+            int target = csr.indexOf(b);
+            if (source < 0 || target < 0) {
+                throw new IllegalArgumentException("graph must contain the source and target vertices");
+            }
+
+            WeightOverlay overlay = graph instanceof WeightOverlay changes && changes.hasChanges() ? changes : null;
+            CsrDijkstra search = csr.borrowSearch();
+            try {
+                search.run(source, target, EdgeKind.ALL, overlay);
+                path = search.path(graph, target);
+            } finally {
+                csr.returnSearch(search);
+            }
+        }
+
+        if (path == null) {
+            return null;
+        }
+        double weight = path.getEdgeList().stream().mapToDouble(graph::getEdgeWeight).sum();
+        return new GraphWalk<>(graph, path.getStartVertex(), path.getEndVertex(), path.getVertexList(), path.getEdgeList(), weight);
+    }
+
+    /**
+     * Get the shortest path from A to B using only road edges. Shared graphs use the road contraction hierarchy when
+     * it is the selected {@link RoutingSettings.RoadEngine}.
+     *
+     * @param graph original graph
+     * @param a     source point
+     * @param b     destination point
+     * @return the shortest road path from A to B
+     */
     public static GraphPath<Point, DefaultWeightedEdge> getRoadPathFromAtoB(Graph<Point, DefaultWeightedEdge> graph, String a, String b) {
-        // create a new graph with only road edges
-        Graph<Point, DefaultWeightedEdge> roadGraph = new WeightedMultigraph<>(DefaultWeightedEdge.class);
-        graph.edgeSet().stream().filter(edge -> edge instanceof RoadEdge).forEach(edge -> {
-            roadGraph.addVertex(graph.getEdgeSource(edge));
-            roadGraph.addVertex(graph.getEdgeTarget(edge));
-            roadGraph.addEdge(graph.getEdgeSource(edge), graph.getEdgeTarget(edge), edge);
+        if (RoutingSettings.getRoadEngine() == RoutingSettings.RoadEngine.CONTRACTION_HIERARCHIES) {
+            RoadContractionHierarchy hierarchy = GraphRepository.getRoadHierarchy(graph);
+            if (hierarchy != null) {
+                GraphPath<Point, DefaultWeightedEdge> path = hierarchy.getPath(a, b);
+                return path == null ? null : new GraphWalk<>(graph, path.getStartVertex(), path.getEndVertex(), path.getVertexList(), path.getEdgeList(), path.getWeight());
+            }
+        }
+        return GraphUtils.route(graph, a, b, EdgeKind.ROAD.mask());
+    }
+
+    /**
+     * Get the length of the shortest road path from A to B, without building the path. Graphs from the
+     * {@link GraphRepository} are answered by their shared {@link RoadDistanceOracle}.
+     *
+     * @param graph original graph
+     * @param a     source point
+     * @param b     destination point
+     * @return the road distance from A to B, infinity if there is no road path
+     */
+    public static double getRoadDistance(Graph<Point, DefaultWeightedEdge> graph, String a, String b) {
+        boolean changed = graph instanceof WeightOverlay overlay && overlay.hasChanges();
+        CsrGraph csr = changed ? null : GraphRepository.getRoutingGraph(graph);
+        if (csr == null) {
+            GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.getRoadPathFromAtoB(graph, a, b);
+            return path == null ? Double.POSITIVE_INFINITY : path.getWeight();
+        }
+        return RoadDistanceOracle.of(csr).distance(a, b);
+    }
+
+    /**
+     * Get the shortest path lengths from every source to every target, restricted to some edge kinds. Every
+     * distinct source runs one search that stops once all targets are settled, and sources are spread over the
+     * available cores, so this is much cheaper than asking for each pair.
+     *
+     * @param graph    original graph
+     * @param sources  source point names
+     * @param targets  target point names
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @return distances indexed by source and target position, infinity for pairs that are not connected
+     */
+    public static double[][] distanceMatrix(Graph<Point, DefaultWeightedEdge> graph, List<String> sources, List<String> targets, int modeMask) {
+        double[][] matrix = new double[sources.size()][];
+        CsrGraph routingGraph = GraphRepository.getRoutingGraph(graph);
+        if (routingGraph == null) {
+            for (int i = 0; i < matrix.length; i++) {
+                matrix[i] = new double[targets.size()];
+                for (int j = 0; j < targets.size(); j++) {
+                    GraphPath<Point, DefaultWeightedEdge> path = GraphUtils.routeWithJGraphT(graph, sources.get(i), targets.get(j), modeMask);
+                    matrix[i][j] = path == null ? Double.POSITIVE_INFINITY : path.getWeight();
+                }
+            }
+            return matrix;
+        }
+
+        CsrGraph csr = routingGraph.restrictedTo(modeMask);
+        int[] targetIds = GraphUtils.indicesOf(csr, targets);
+        int[] sourceIds = GraphUtils.indicesOf(csr, sources);
+        WeightOverlay overlay = graph instanceof WeightOverlay changes ? changes : null;
+
+        // one search per distinct source, repeated sources get a copy of its row
+        Map<Integer, Integer> positions = new HashMap<>();
+        int[] rowOf = new int[sourceIds.length];
+        for (int i = 0; i < sourceIds.length; i++) {
+            rowOf[i] = positions.computeIfAbsent(sourceIds[i], id -> positions.size());
+        }
+        int[] distinct = new int[positions.size()];
+        positions.forEach((id, position) -> distinct[position] = id);
+
+        double[][] rows = new double[distinct.length][];
+        IntStream.range(0, distinct.length).parallel().forEach(i -> {
+            CsrDijkstra search = csr.borrowSearch();
+            try {
+                search.run(distinct[i], targetIds, modeMask, overlay);
+                double[] row = new double[targetIds.length];
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = search.distance(targetIds[j]);
+                }
+                rows[i] = row;
+            } finally {
+                csr.returnSearch(search);
+            }
         });
 
-        DijkstraShortestPath<Point, DefaultWeightedEdge> dijkstraAlg = new DijkstraShortestPath<>(roadGraph);
+        boolean[] handedOut = new boolean[distinct.length];
+        for (int i = 0; i < matrix.length; i++) {
+            double[] row = rows[rowOf[i]];
+            matrix[i] = handedOut[rowOf[i]] ? row.clone() : row;
+            handedOut[rowOf[i]] = true;
+        }
+        return matrix;
+    }
+
+    /**
+     * Get the shortest path lengths from every source to every vertex of the graph, restricted to some edge kinds,
+     * for precomputation jobs such as distance tables or landmarks. Each source runs a parallel
+     * {@link DeltaStepping} search on the common fork/join pool.
+     *
+     * @param graph    a graph from the {@link GraphRepository}, a view of it or an overlay on top of one of those
+     * @param sources  source point names
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @return distances indexed by source position and by the vertex ids of
+     * {@link GraphRepository#getRoutingGraph(Graph)}, infinity for vertices that cannot be reached
+     */
+    public static double[][] distancesFrom(Graph<Point, DefaultWeightedEdge> graph, List<String> sources, int modeMask) {
+        return GraphUtils.distancesFrom(graph, sources, modeMask, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #distancesFrom(Graph, List, int)}, with the searches running on a given pool.
+     *
+     * @param graph    a graph from the {@link GraphRepository}, a view of it or an overlay on top of one of those
+     * @param sources  source point names
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @param pool     pool running the searches
+     * @return distances indexed by source position and by the vertex ids of
+     * {@link GraphRepository#getRoutingGraph(Graph)}, infinity for vertices that cannot be reached
+     */
+    public static double[][] distancesFrom(Graph<Point, DefaultWeightedEdge> graph, List<String> sources, int modeMask, ForkJoinPool pool) {
+        CsrGraph routingGraph = GraphRepository.getRoutingGraph(graph);
+        if (routingGraph == null) {
+            throw new IllegalArgumentException("bulk distances need a graph from the graph repository");
+        }
+
+        CsrGraph csr = routingGraph.restrictedTo(modeMask);
+        int[] sourceIds = GraphUtils.indicesOf(csr, sources);
+        WeightOverlay overlay = graph instanceof WeightOverlay changes ? changes : null;
+
+        DeltaStepping search = new DeltaStepping(csr, pool, modeMask);
+        double[][] distances = new double[sourceIds.length][];
+        for (int i = 0; i < sourceIds.length; i++) {
+            distances[i] = search.run(sourceIds[i], overlay);
+        }
+        return distances;
+    }
+
+    private static int[] indicesOf(CsrGraph csr, List<String> names) {
+        int[] indices = new int[names.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = csr.indexOf(names.get(i));
+            if (indices[i] < 0) {
+                throw new IllegalArgumentException("graph must contain the source and target vertices");
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Shortest path restricted to some edge kinds. Graphs from the {@link GraphRepository} are routed over the cached
+     * mode-filtered view of their CSR snapshot with the selected {@link RoutingSettings.PathEngine}, and paths over
+     * unchanged weights are shared through the {@link RouteCache}. Any other graph may change at any time and goes
+     * through jgrapht.
+     */
+    private static GraphPath<Point, DefaultWeightedEdge> route(Graph<Point, DefaultWeightedEdge> graph, String a, String b, int modeMask) {
+        CsrGraph routingGraph = GraphRepository.getRoutingGraph(graph);
+        if (routingGraph == null) {
+            return GraphUtils.routeWithJGraphT(graph, a, b, modeMask);
+        }
+        CsrGraph csr = routingGraph.restrictedTo(modeMask);
+
+        int source = csr.indexOf(a);
+        int target = csr.indexOf(b);
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("graph must contain the source and target vertices");
+        }
+
+        WeightOverlay overlay = graph instanceof WeightOverlay changes && changes.hasChanges() ? changes : null;
+        if (overlay == null && RoutingSettings.isRouteCache()) {
+            return RouteCache.shared().get(routingGraph, source, target, modeMask, graph,
+                    () -> GraphUtils.route(graph, routingGraph, csr, source, target, modeMask, null));
+        }
+        return GraphUtils.route(graph, routingGraph, csr, source, target, modeMask, overlay);
+    }
+
+    private static GraphPath<Point, DefaultWeightedEdge> route(Graph<Point, DefaultWeightedEdge> graph, CsrGraph routingGraph, CsrGraph csr, int source, int target, int modeMask, WeightOverlay overlay) {
+        RoutingSettings.PathEngine engine = RoutingSettings.getPathEngine();
+        if (engine == RoutingSettings.PathEngine.RAPTOR) {
+            if (overlay == null && (modeMask & EdgeKind.SUBWAY.mask()) != 0) {
+                return csr.raptor().path(graph, source, target);
+            }
+            engine = RoutingSettings.PathEngine.ALT;
+        }
+        if (engine == RoutingSettings.PathEngine.BIDIRECTIONAL) {
+            CsrBidirectionalDijkstra search = csr.borrowBidirectionalSearch();
+            try {
+                search.run(source, target, modeMask, overlay);
+                return search.path(graph);
+            } finally {
+                csr.returnBidirectionalSearch(search);
+            }
+        }
+
+        Landmarks landmarks = engine == RoutingSettings.PathEngine.ALT ? Landmarks.of(routingGraph) : null;
+        CsrDijkstra search = csr.borrowSearch();
+        try {
+            search.run(source, target, modeMask, overlay, landmarks);
+            return search.path(graph, target);
+        } finally {
+            csr.returnSearch(search);
+        }
+    }
+
+    private static GraphPath<Point, DefaultWeightedEdge> routeWithJGraphT(Graph<Point, DefaultWeightedEdge> graph, String a, String b, int modeMask) {
+        Graph<Point, DefaultWeightedEdge> routingGraph = graph;
+        if (modeMask != EdgeKind.ALL) {
+            // hide the edges that are not allowed, weights are still read from the original graph
+            routingGraph = new MaskSubgraph<>(graph, vertex -> false, edge -> (EdgeKind.of(edge).mask() & modeMask) == 0);
+        }
+
+        DijkstraShortestPath<Point, DefaultWeightedEdge> dijkstraAlg = new DijkstraShortestPath<>(routingGraph, RoutingSettings.getQueueKind().heapSupplier());
         ShortestPathAlgorithm.SingleSourcePaths<Point, DefaultWeightedEdge> iPaths = dijkstraAlg.getPaths(Point.instance(a));
 
         return iPaths.getPath(Point.instance(b));
@@ -138,8 +431,8 @@ public class GraphUtils {
 
     /**
      * This method allows to import a graph with custom weight settings, for every weight property, if you assign
-     * a non-positive value (less than or equal to zero) the weight is unchanged. You can force the shortest path
-     * to not follow a certain type of edge you can assign Integer.MAX_VALUE.
+     * a non-positive value (less than or equal to zero) the weight is unchanged. To keep the shortest path from
+     * following a certain type of edge, route with a {@link WeightProfile} that forbids it instead.
      * <p>
      * We shouldn't totally remove edges since it may lead to a non-connected graph. The graph is connected on
      * street edges tho.
@@ -151,7 +444,7 @@ public class GraphUtils {
      * @return a graph with custom weights
      */
     public static Graph<Point, DefaultWeightedEdge> importGraph(String filename, double streetWeight, double roadWeight, double subwayWeight) throws FileNotFoundException {
-        Graph<Point, DefaultWeightedEdge> graph = GraphUtils.getFromDOT(new FileInputStream(new File(filename)));
+        Graph<Point, DefaultWeightedEdge> graph = DotGraphReader.read(filename);
         for (DefaultWeightedEdge edge : graph.edgeSet()) {
             if (edge instanceof StreetEdge && streetWeight > 0)
                 graph.setEdgeWeight(edge, streetWeight);
@@ -171,11 +464,23 @@ public class GraphUtils {
      * @throws FileNotFoundException when the file could not be found
      */
     public static Graph<Point, DefaultWeightedEdge> importGraph(String filename) throws FileNotFoundException {
-        return GraphUtils.getFromDOT(new FileInputStream(filename));
+        return DotGraphReader.read(filename);
     }
 
+    /**
+     * Import the default graph, from its binary snapshot if there is an up to date one next to the DOT file, in which
+     * case the graph is built on first use
+     *
+     * @return parsed graph
+     * @throws FileNotFoundException when the default graph file could not be found
+     * @see GraphSnapshot
+     */
     public static Graph<Point, DefaultWeightedEdge> importDefaultGraph() throws FileNotFoundException {
-        return GraphUtils.importGraph(GraphUtils.DEFAULT_GRAPH_FILENAME);
+        String snapshot = GraphSnapshot.findFor(GraphRepository.DEFAULT_GRAPH_FILENAME);
+        if (snapshot != null) {
+            return new SnapshotGraph(GraphSnapshot.open(snapshot));
+        }
+        return GraphUtils.importGraph(GraphRepository.DEFAULT_GRAPH_FILENAME);
     }
 
     /**
@@ -237,7 +542,8 @@ public class GraphUtils {
     }
 
     /**
-     * Calculate the actual cost for the path
+     * Calculate the actual cost for the path. Weights are read through the given graph, so when it is an agent's
+     * {@link WeightOverlay} the fares recorded there are included.
      *
      * @param graph original graph
      * @param path  resulting path
@@ -273,6 +579,14 @@ public class GraphUtils {
         return graph.containsEdge(a, b);
     }
 
+    /**
+     * Calculate the cost a human expects to pay for a path, where road edges also pay the car service fare.
+     *
+     * @param graph graph whose weights are used, either a shared graph or an agent's {@link WeightOverlay}
+     * @param path  resulting path
+     * @param agent human that travels the path
+     * @return expected path cost
+     */
     public static double calculateCostForHuman(Graph<Point, DefaultWeightedEdge> graph, GraphPath<Point, DefaultWeightedEdge> path, HumanAgent agent) {
         double cost = 0.0;
         for (DefaultWeightedEdge e : path.getEdgeList()) {
@@ -0,0 +1,99 @@
+package graph;
+
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphDelegator;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copy-on-write weight overlay on top of a shared graph.
+ * <p>
+ * Reads fall through to the base graph, and {@link #setEdgeWeight(DefaultWeightedEdge, double)} only records the
+ * difference to the base weight for that edge. The base graph is never modified, so many agents can share it, and
+ * the memory used by an overlay grows with the number of edges that were touched instead of with the city size.
+ */
+public class WeightOverlay extends GraphDelegator<Point, DefaultWeightedEdge> {
+
+    private final Graph<Point, DefaultWeightedEdge> base;
+
+    private final Map<DefaultWeightedEdge, Double> deltas = new IdentityHashMap<>();
+
+    /**
+     * How many of the recorded deltas are negative
+     */
+    private int negativeDeltas;
+
+    public WeightOverlay(Graph<Point, DefaultWeightedEdge> base) {
+        super(base);
+        this.base = base;
+    }
+
+    @Override
+    public double getEdgeWeight(DefaultWeightedEdge edge) {
+        Double delta = this.deltas.get(edge);
+        double weight = this.base.getEdgeWeight(edge);
+        return delta == null ? weight : weight + delta;
+    }
+
+    @Override
+    public void setEdgeWeight(DefaultWeightedEdge edge, double weight) {
+        double delta = weight - this.base.getEdgeWeight(edge);
+        Double previous = delta == 0 ? this.deltas.remove(edge) : this.deltas.put(edge, delta);
+        if (previous != null && previous < 0) {
+            this.negativeDeltas--;
+        }
+        if (delta < 0) {
+            this.negativeDeltas++;
+        }
+    }
+
+    /**
+     * @return the shared graph below the overlay
+     */
+    public Graph<Point, DefaultWeightedEdge> getBase() {
+        return base;
+    }
+
+    /**
+     * @param edge an edge of the base graph
+     * @return the difference between the overlay weight and the base weight, zero for untouched edges
+     */
+    public double getDelta(DefaultWeightedEdge edge) {
+        Double delta = this.deltas.get(edge);
+        return delta == null ? 0 : delta;
+    }
+
+    /**
+     * @return true if any edge weight differs from the base graph
+     */
+    public boolean hasChanges() {
+        return !this.deltas.isEmpty();
+    }
+
+    /**
+     * @return true if any edge is lighter than in the base graph, which invalidates lower bounds computed on it
+     */
+    public boolean hasNegativeChanges() {
+        return this.negativeDeltas > 0;
+    }
+
+    /**
+     * @return edges whose weight differs from the base graph
+     */
+    public Set<DefaultWeightedEdge> getTouchedEdges() {
+        return Collections.unmodifiableSet(this.deltas.keySet());
+    }
+
+    /**
+     * Drops every recorded change, going back to the base weights.
+     */
+    public void clear() {
+        this.deltas.clear();
+        this.negativeDeltas = 0;
+    }
+}
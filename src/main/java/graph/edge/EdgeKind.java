@@ -0,0 +1,48 @@
+package graph.edge;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.util.Set;
+
+/**
+ * The kinds of edges in the city graph, each one a transport mode.
+ * <p>
+ * Routing code keeps kinds as bytes and sets of kinds as bit masks, see {@link #id()} and {@link #mask()}.
+ */
+public enum EdgeKind {
+    ROAD,
+    STREET,
+    SUBWAY;
+
+    public static final int ALL = (1 << values().length) - 1;
+
+    private static final EdgeKind[] KINDS = values();
+
+    public byte id() {
+        return (byte) this.ordinal();
+    }
+
+    public int mask() {
+        return 1 << this.ordinal();
+    }
+
+    public static EdgeKind fromId(byte id) {
+        return KINDS[id];
+    }
+
+    /**
+     * @param edge an edge of the city graph
+     * @return the kind of the edge, edges that are not typed are roads as in {@link graph.GraphUtils#getFromDOT}
+     */
+    public static EdgeKind of(DefaultWeightedEdge edge) {
+        return edge instanceof Edge typed ? typed.getKind() : ROAD;
+    }
+
+    public static int maskOf(Set<EdgeKind> kinds) {
+        int mask = 0;
+        for (EdgeKind kind : kinds) {
+            mask |= kind.mask();
+        }
+        return mask;
+    }
+}
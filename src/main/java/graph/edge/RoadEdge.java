@@ -13,6 +13,11 @@ public class RoadEdge extends Edge {
         return "road";
     }
 
+    @Override
+    public EdgeKind getKind() {
+        return EdgeKind.ROAD;
+    }
+
     @Override
     public String getColor() {
         return Colorable.ROAD_COLOR;
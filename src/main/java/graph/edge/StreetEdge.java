@@ -13,6 +13,11 @@ public class StreetEdge extends Edge {
         return "street";
     }
 
+    @Override
+    public EdgeKind getKind() {
+        return EdgeKind.STREET;
+    }
+
     @Override
     public String getColor() {
         return Colorable.STREET_COLOR;
@@ -13,6 +13,11 @@ public class SubwayEdge extends Edge {
         return "subway";
     }
 
+    @Override
+    public EdgeKind getKind() {
+        return EdgeKind.SUBWAY;
+    }
+
     @Override
     public String getColor() {
         return Colorable.SUBWAY_COLOR;
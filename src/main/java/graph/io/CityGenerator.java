@@ -0,0 +1,585 @@
+package graph.io;
+
+import graph.Colorable;
+import graph.edge.EdgeKind;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic cities of any size, for scale and load testing.
+ * <p>
+ * Semaphores and stations are laid out as a grid, as rings around a center or at random positions, and neighbours
+ * in the layout are joined by a street and a road, so both layers are connected. Points are places only reachable
+ * on foot, each one joined by streets to one or two layout vertices. Stations, in layout order, are split into
+ * subway lines that join consecutive stations. Weights follow the proportions of the bundled city: a street costs
+ * about twice a road and five times a subway over the same distance.
+ * <p>
+ * Vertices and edges are handed to a {@link Sink} as they are generated, so writing a DOT file only keeps a few
+ * arrays per vertex in memory, never the graph. The same seed always gives the same city.
+ */
+public class CityGenerator {
+
+    public enum Layout {
+        /**
+         * Square grid, rows are filled alternating directions so consecutive vertices are neighbours
+         */
+        GRID,
+        /**
+         * Rings of 6r vertices around a center, each vertex joined to its ring neighbours and to the ring inside
+         */
+        RADIAL,
+        /**
+         * Uniform random positions, joined when closer than {@link #GEOMETRIC_RADIUS}, plus whatever short edges
+         * are needed to connect the components
+         */
+        RANDOM_GEOMETRIC
+    }
+
+    /**
+     * Receives a generated city: the vertex count, then every vertex, then every edge.
+     */
+    public interface Sink {
+        void begin(int vertexCount) throws IOException;
+
+        /**
+         * @param index vertex id, from 0 to the vertex count, in order
+         * @param type  {@link GraphSnapshot#POINT}, {@link GraphSnapshot#STATION} or {@link GraphSnapshot#SEMAPHORE}
+         * @param name  vertex name
+         */
+        void vertex(int index, byte type, String name) throws IOException;
+
+        void edge(int source, int target, EdgeKind kind, double weight) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    /**
+     * Distance under which random geometric vertices are joined, with one vertex per unit of area on average
+     */
+    public static final double GEOMETRIC_RADIUS = 1.2;
+
+    private static final double STREET_COST = 10;
+
+    private static final double ROAD_COST = 5;
+
+    private static final double SUBWAY_COST = 2;
+
+    private final Layout layout;
+
+    private final int semaphores;
+
+    private final int points;
+
+    private final int stations;
+
+    private final int subwayLines;
+
+    private final long seed;
+
+    /**
+     * Semaphores and stations, the vertices placed by the layout
+     */
+    private final int placed;
+
+    private Random random;
+
+    private byte[] types;
+
+    /**
+     * Number of every vertex among the ones of its type, used in its name
+     */
+    private int[] ordinals;
+
+    private double[] xs;
+
+    private double[] ys;
+
+    private int edges;
+
+    /**
+     * @param layout     how semaphores and stations are placed
+     * @param semaphores number of semaphores
+     * @param points     number of points
+     * @param stations   number of stations
+     * @param seed       random seed
+     */
+    public CityGenerator(Layout layout, int semaphores, int points, int stations, long seed) {
+        this(layout, semaphores, points, stations, Math.max(1, (int) Math.sqrt(stations) / 4), seed);
+    }
+
+    /**
+     * @param layout      how semaphores and stations are placed
+     * @param semaphores  number of semaphores
+     * @param points      number of points
+     * @param stations    number of stations
+     * @param subwayLines number of subway lines the stations are split into
+     * @param seed        random seed
+     */
+    public CityGenerator(Layout layout, int semaphores, int points, int stations, int subwayLines, long seed) {
+        if (semaphores < 0 || points < 0 || stations < 0 || subwayLines < 1) {
+            throw new IllegalArgumentException("vertex counts cannot be negative and there must be a subway line");
+        }
+        if (semaphores + stations == 0) {
+            throw new IllegalArgumentException("a city needs semaphores or stations");
+        }
+        if ((long) semaphores + points + stations > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many vertices");
+        }
+        this.layout = layout;
+        this.semaphores = semaphores;
+        this.points = points;
+        this.stations = stations;
+        this.subwayLines = subwayLines;
+        this.seed = seed;
+        this.placed = semaphores + stations;
+    }
+
+    /**
+     * Generates the city into a sink.
+     *
+     * @param sink receives the city
+     * @return number of edges generated
+     * @throws IOException when the sink fails
+     */
+    public synchronized int generate(Sink sink) throws IOException {
+        this.random = new Random(this.seed);
+        this.edges = 0;
+        this.assignTypes();
+        if (this.layout == Layout.RANDOM_GEOMETRIC) {
+            this.placeRandomly();
+        }
+
+        sink.begin(this.placed + this.points);
+        for (int vertex = 0; vertex < this.placed + this.points; vertex++) {
+            sink.vertex(vertex, this.type(vertex), this.name(vertex));
+        }
+
+        switch (this.layout) {
+            case GRID -> this.gridEdges(sink);
+            case RADIAL -> this.radialEdges(sink);
+            case RANDOM_GEOMETRIC -> this.geometricEdges(sink);
+        }
+        this.subwayEdges(sink);
+        this.pointEdges(sink);
+        sink.end();
+
+        this.xs = null;
+        this.ys = null;
+        return this.edges;
+    }
+
+    /**
+     * Writes the city as DOT, in the format of {@link graph.GraphUtils#exportToDOT}.
+     *
+     * @param outputStream where to write, not closed
+     * @return number of edges written
+     * @throws IOException when the output fails
+     */
+    public int writeDOT(OutputStream outputStream) throws IOException {
+        return this.generate(new DotSink(outputStream));
+    }
+
+    /**
+     * Writes the city as a {@link GraphSnapshot}. Edges are kept in plain arrays until the end, since the snapshot
+     * stores the adjacency of every vertex.
+     *
+     * @param filename snapshot file name
+     * @return number of edges written
+     * @throws IOException when the file could not be written
+     */
+    public int writeSnapshot(String filename) throws IOException {
+        return this.generate(new SnapshotSink(filename));
+    }
+
+    /**
+     * Shuffles semaphores and stations over the layout positions and numbers every vertex within its type.
+     */
+    private void assignTypes() {
+        this.types = new byte[this.placed];
+        Arrays.fill(this.types, 0, this.semaphores, GraphSnapshot.SEMAPHORE);
+        Arrays.fill(this.types, this.semaphores, this.placed, GraphSnapshot.STATION);
+        for (int i = this.placed - 1; i > 0; i--) {
+            int j = this.random.nextInt(i + 1);
+            byte type = this.types[i];
+            this.types[i] = this.types[j];
+            this.types[j] = type;
+        }
+
+        this.ordinals = new int[this.placed];
+        int semaphore = 0;
+        int station = 0;
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            this.ordinals[vertex] = this.types[vertex] == GraphSnapshot.SEMAPHORE ? ++semaphore : ++station;
+        }
+    }
+
+    private byte type(int vertex) {
+        return vertex < this.placed ? this.types[vertex] : GraphSnapshot.POINT;
+    }
+
+    private String name(int vertex) {
+        if (vertex >= this.placed) {
+            return "pnt" + (vertex - this.placed + 1);
+        }
+        return (this.types[vertex] == GraphSnapshot.SEMAPHORE ? "sem" : "sta") + this.ordinals[vertex];
+    }
+
+    private void gridEdges(Sink sink) throws IOException {
+        int side = this.gridSide();
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            int row = vertex / side;
+            if (vertex % side != side - 1 && vertex + 1 < this.placed) {
+                this.block(sink, vertex, vertex + 1);
+            }
+            int column = row % 2 == 0 ? vertex % side : side - 1 - vertex % side;
+            int below = (row + 1) * side + ((row + 1) % 2 == 0 ? column : side - 1 - column);
+            if (below < this.placed) {
+                this.block(sink, vertex, below);
+            }
+        }
+    }
+
+    private void radialEdges(Sink sink) throws IOException {
+        for (int vertex = 1; vertex < this.placed; vertex++) {
+            int ring = ring(vertex);
+            int first = firstOfRing(ring);
+            int size = 6 * ring;
+            int position = vertex - first;
+
+            if (position + 1 < size && vertex + 1 < this.placed) {
+                this.block(sink, vertex, vertex + 1);
+            } else if (position + 1 == size) {
+                this.block(sink, vertex, first);
+            }
+
+            int inner = ring == 1 ? 0 : firstOfRing(ring - 1) + (int) Math.round(position * (ring - 1) / (double) ring) % (6 * (ring - 1));
+            this.block(sink, vertex, inner);
+        }
+    }
+
+    /**
+     * Random positions sorted by cell, cells in alternating row order, so consecutive vertices are close
+     */
+    private void placeRandomly() {
+        double side = Math.sqrt(this.placed);
+        int cells = Math.max(1, (int) Math.ceil(side / GEOMETRIC_RADIUS));
+        double[] x = new double[this.placed];
+        double[] y = new double[this.placed];
+        int[] cellOf = new int[this.placed];
+        int[] cellStarts = new int[cells * cells + 1];
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            x[vertex] = this.random.nextDouble() * side;
+            y[vertex] = this.random.nextDouble() * side;
+            cellOf[vertex] = this.cellOrder(x[vertex], y[vertex], cells);
+            cellStarts[cellOf[vertex] + 1]++;
+        }
+        for (int cell = 0; cell < cells * cells; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+
+        this.xs = new double[this.placed];
+        this.ys = new double[this.placed];
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            int slot = cellStarts[cellOf[vertex]]++;
+            this.xs[slot] = x[vertex];
+            this.ys[slot] = y[vertex];
+        }
+    }
+
+    private void geometricEdges(Sink sink) throws IOException {
+        double side = Math.sqrt(this.placed);
+        int cells = Math.max(1, (int) Math.ceil(side / GEOMETRIC_RADIUS));
+
+        // vertices are sorted by cell, so every cell is a range
+        int[] cellStarts = new int[cells * cells + 1];
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            cellStarts[this.cellOrder(this.xs[vertex], this.ys[vertex], cells) + 1]++;
+        }
+        for (int cell = 0; cell < cells * cells; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+
+        int[] components = new int[this.placed];
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            components[vertex] = vertex;
+        }
+
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            int row = Math.min(cells - 1, (int) (this.ys[vertex] / GEOMETRIC_RADIUS));
+            int column = Math.min(cells - 1, (int) (this.xs[vertex] / GEOMETRIC_RADIUS));
+            for (int r = Math.max(0, row - 1); r <= Math.min(cells - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(cells - 1, column + 1); c++) {
+                    int cell = r % 2 == 0 ? r * cells + c : r * cells + cells - 1 - c;
+                    for (int other = Math.max(vertex + 1, cellStarts[cell]); other < cellStarts[cell + 1]; other++) {
+                        if (this.distance(vertex, other) <= GEOMETRIC_RADIUS) {
+                            this.block(sink, vertex, other);
+                            union(components, vertex, other);
+                        }
+                    }
+                }
+            }
+        }
+
+        // consecutive vertices are in the same or in neighbouring cells, joining them connects the city
+        for (int vertex = 0; vertex + 1 < this.placed; vertex++) {
+            if (find(components, vertex) != find(components, vertex + 1)) {
+                this.block(sink, vertex, vertex + 1);
+                union(components, vertex, vertex + 1);
+            }
+        }
+    }
+
+    private void subwayEdges(Sink sink) throws IOException {
+        int perLine = (this.stations + this.subwayLines - 1) / this.subwayLines;
+        int inLine = 0;
+        int previous = -1;
+        for (int vertex = 0; vertex < this.placed; vertex++) {
+            if (this.types[vertex] != GraphSnapshot.STATION) {
+                continue;
+            }
+            if (inLine == perLine) {
+                inLine = 0;
+                previous = -1;
+            }
+            if (previous >= 0) {
+                this.emit(sink, previous, vertex, EdgeKind.SUBWAY, SUBWAY_COST * this.distance(previous, vertex));
+            }
+            previous = vertex;
+            inLine++;
+        }
+    }
+
+    private void pointEdges(Sink sink) throws IOException {
+        for (int point = this.placed; point < this.placed + this.points; point++) {
+            int vertex = this.random.nextInt(this.placed);
+            this.emit(sink, point, vertex, EdgeKind.STREET, STREET_COST * (0.2 + 0.8 * this.random.nextDouble()));
+            if (this.placed > 1) {
+                this.emit(sink, point, (vertex + 1) % this.placed, EdgeKind.STREET, STREET_COST * (0.2 + 0.8 * this.random.nextDouble()));
+            }
+        }
+    }
+
+    /**
+     * Joins two layout neighbours with a street and a road.
+     */
+    private void block(Sink sink, int a, int b) throws IOException {
+        double length = this.distance(a, b);
+        this.emit(sink, a, b, EdgeKind.ROAD, ROAD_COST * length * (0.8 + 0.8 * this.random.nextDouble()));
+        this.emit(sink, a, b, EdgeKind.STREET, STREET_COST * length * (0.8 + 0.4 * this.random.nextDouble()));
+    }
+
+    private void emit(Sink sink, int a, int b, EdgeKind kind, double weight) throws IOException {
+        sink.edge(a, b, kind, Math.max(1, Math.round(weight)));
+        this.edges++;
+    }
+
+    private double distance(int a, int b) {
+        return Math.hypot(this.x(a) - this.x(b), this.y(a) - this.y(b));
+    }
+
+    private double x(int vertex) {
+        return switch (this.layout) {
+            case GRID -> {
+                int side = this.gridSide();
+                int row = vertex / side;
+                yield row % 2 == 0 ? vertex % side : side - 1 - vertex % side;
+            }
+            case RADIAL -> vertex == 0 ? 0 : ring(vertex) * Math.cos(this.angle(vertex));
+            case RANDOM_GEOMETRIC -> this.xs[vertex];
+        };
+    }
+
+    private double y(int vertex) {
+        return switch (this.layout) {
+            case GRID -> vertex / this.gridSide();
+            case RADIAL -> vertex == 0 ? 0 : ring(vertex) * Math.sin(this.angle(vertex));
+            case RANDOM_GEOMETRIC -> this.ys[vertex];
+        };
+    }
+
+    private double angle(int vertex) {
+        int ring = ring(vertex);
+        return 2 * Math.PI * (vertex - firstOfRing(ring)) / (6 * ring);
+    }
+
+    private int gridSide() {
+        return (int) Math.ceil(Math.sqrt(this.placed));
+    }
+
+    private int cellOrder(double x, double y, int cells) {
+        int row = Math.min(cells - 1, (int) (y / GEOMETRIC_RADIUS));
+        int column = Math.min(cells - 1, (int) (x / GEOMETRIC_RADIUS));
+        return row % 2 == 0 ? row * cells + column : row * cells + cells - 1 - column;
+    }
+
+    /**
+     * @return the ring of a radial vertex, ring r holds 6r vertices and the center is ring 0
+     */
+    private static int ring(int vertex) {
+        if (vertex == 0) {
+            return 0;
+        }
+        int ring = (int) Math.ceil((3 + Math.sqrt(9 + 12.0 * (vertex - 1))) / 6) - 1;
+        while (firstOfRing(ring + 1) <= vertex) {
+            ring++;
+        }
+        while (firstOfRing(ring) > vertex) {
+            ring--;
+        }
+        return ring;
+    }
+
+    private static int firstOfRing(int ring) {
+        return ring == 0 ? 0 : (int) (1 + 3L * ring * (ring - 1));
+    }
+
+    private static int find(int[] components, int vertex) {
+        while (components[vertex] != vertex) {
+            components[vertex] = components[components[vertex]];
+            vertex = components[vertex];
+        }
+        return vertex;
+    }
+
+    private static void union(int[] components, int a, int b) {
+        components[find(components, a)] = find(components, b);
+    }
+
+    /**
+     * Writes DOT statements as they come, with the attributes {@link graph.GraphUtils#exportToDOT} writes.
+     */
+    private static final class DotSink implements Sink {
+        private final OutputStream outputStream;
+        private Writer writer;
+        private String[] names;
+
+        private DotSink(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void begin(int vertexCount) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(this.outputStream, StandardCharsets.UTF_8), 1 << 16);
+            this.names = new String[vertexCount];
+            this.writer.write("graph G {\n");
+        }
+
+        @Override
+        public void vertex(int index, byte type, String name) throws IOException {
+            this.names[index] = name;
+            switch (type) {
+                case GraphSnapshot.SEMAPHORE -> this.writer.write("  " + name + " [ type=\"semaphore\" color=\"" + Colorable.ROAD_COLOR + "\" ];\n");
+                case GraphSnapshot.STATION -> this.writer.write("  " + name + " [ type=\"station\" color=\"" + Colorable.SUBWAY_COLOR + "\" ];\n");
+                default -> this.writer.write("  " + name + " [ type=\"point\" color=\"" + Colorable.STREET_COLOR + "\" ];\n");
+            }
+        }
+
+        @Override
+        public void edge(int source, int target, EdgeKind kind, double weight) throws IOException {
+            String color = switch (kind) {
+                case ROAD -> Colorable.ROAD_COLOR;
+                case STREET -> Colorable.STREET_COLOR;
+                case SUBWAY -> Colorable.SUBWAY_COLOR;
+            };
+            this.writer.write("  " + this.names[source] + " -- " + this.names[target] + " [ weight=\"" + weight
+                    + "\" label=\"" + String.format("%s(%.02f)", kind, weight) + "\" type=\"" + kind.name().toLowerCase(Locale.ROOT)
+                    + "\" color=\"" + color + "\" ];\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            this.writer.write("}\n");
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Keeps edges in plain arrays and writes the snapshot at the end.
+     */
+    private final class SnapshotSink implements Sink {
+        private final String filename;
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private byte[] kinds = new byte[1024];
+        private double[] weights = new double[1024];
+        private int count;
+
+        private SnapshotSink(String filename) {
+            this.filename = filename;
+        }
+
+        @Override
+        public void begin(int vertexCount) {
+        }
+
+        @Override
+        public void vertex(int index, byte type, String name) {
+        }
+
+        @Override
+        public void edge(int source, int target, EdgeKind kind, double weight) {
+            if (this.count == this.sources.length) {
+                int capacity = this.count + (this.count >> 1);
+                this.sources = Arrays.copyOf(this.sources, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.kinds = Arrays.copyOf(this.kinds, capacity);
+                this.weights = Arrays.copyOf(this.weights, capacity);
+            }
+            this.sources[this.count] = source;
+            this.targets[this.count] = target;
+            this.kinds[this.count] = kind.id();
+            this.weights[this.count] = weight;
+            this.count++;
+        }
+
+        @Override
+        public void end() throws IOException {
+            byte[] vertexTypes = new byte[CityGenerator.this.placed + CityGenerator.this.points];
+            for (int vertex = 0; vertex < vertexTypes.length; vertex++) {
+                vertexTypes[vertex] = CityGenerator.this.type(vertex);
+            }
+            GraphSnapshot.write(this.filename, vertexTypes, CityGenerator.this::name, this.sources, this.targets, this.kinds, this.weights, this.count);
+        }
+    }
+
+    /**
+     * Usage: CityGenerator [grid | radial | geometric] [semaphores] [points] [stations] [output file] [seed]
+     * <p>
+     * Output files ending in {@link GraphSnapshot#EXTENSION} are written as snapshots, any other as DOT.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: CityGenerator [grid | radial | geometric] [semaphores] [points] [stations] [output file] [seed]");
+            return;
+        }
+        Layout layout = switch (args[0].toLowerCase(Locale.ROOT)) {
+            case "grid" -> Layout.GRID;
+            case "radial" -> Layout.RADIAL;
+            case "geometric", "random_geometric" -> Layout.RANDOM_GEOMETRIC;
+            default -> throw new IllegalArgumentException("unknown layout " + args[0]);
+        };
+        CityGenerator generator = new CityGenerator(layout, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), args.length > 5 ? Long.parseLong(args[5]) : 42);
+
+        long start = System.nanoTime();
+        int edges;
+        if (args[4].endsWith(GraphSnapshot.EXTENSION)) {
+            edges = generator.writeSnapshot(args[4]);
+        } else {
+            try (OutputStream output = new FileOutputStream(args[4])) {
+                edges = generator.writeDOT(output);
+            }
+        }
+        System.out.printf("%s: %s city, %d vertices, %d edges written in %.02f ms%n", args[4], layout,
+                generator.placed + generator.points, edges, (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,459 @@
+package graph.io;
+
+import graph.edge.RoadEdge;
+import graph.edge.StreetEdge;
+import graph.edge.SubwayEdge;
+import graph.vertex.Point;
+import graph.vertex.Semaphore;
+import graph.vertex.Station;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.WeightedMultigraph;
+import org.jgrapht.nio.ImportException;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming reader for the DOT files of the city graph.
+ * <p>
+ * Only the dialect written by {@link graph.GraphUtils#exportToDOT} is understood: an undirected graph of vertex
+ * statements and {@code a -- b} edge statements, each with an optional attribute list. The {@code type} and
+ * {@code weight} attributes are read, every other attribute is skipped, and comments are allowed. The input is read
+ * in chunks through a channel and tokenized as bytes, so no attribute map or string is built for what is skipped,
+ * and the graph is filled as statements are read. It builds the same graph as
+ * {@link graph.GraphUtils#getFromDOTWithImporter}.
+ * <p>
+ * Malformed input throws an {@link ImportException}, like the jgrapht importer.
+ */
+public class DotGraphReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] STRICT = bytes("strict");
+
+    private static final byte[] GRAPH = bytes("graph");
+
+    private static final byte[] NODE = bytes("node");
+
+    private static final byte[] EDGE = bytes("edge");
+
+    private static final byte[] TYPE = bytes("type");
+
+    private static final byte[] WEIGHT = bytes("weight");
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final Graph<Point, DefaultWeightedEdge> graph = new WeightedMultigraph<>(DefaultWeightedEdge.class);
+
+    private final Map<String, Point> points = new HashMap<>();
+
+    /**
+     * Last identifier read, its bytes are only valid until the next one
+     */
+    private byte[] token = new byte[64];
+
+    private int tokenLength;
+
+    /**
+     * Value of the type attribute of the current statement, null if it has none
+     */
+    private String type;
+
+    private double weight;
+
+    private boolean hasWeight;
+
+    private int line = 1;
+
+    private DotGraphReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads a graph from a file.
+     *
+     * @param filename DOT file name
+     * @return parsed graph
+     * @throws FileNotFoundException when the file could not be found
+     */
+    public static Graph<Point, DefaultWeightedEdge> read(String filename) throws FileNotFoundException {
+        try (FileChannel channel = new FileInputStream(filename).getChannel()) {
+            return DotGraphReader.read(channel);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a graph from a stream, which is left open.
+     *
+     * @param inputStream DOT input
+     * @return parsed graph
+     */
+    public static Graph<Point, DefaultWeightedEdge> read(InputStream inputStream) {
+        return DotGraphReader.read(Channels.newChannel(inputStream));
+    }
+
+    /**
+     * Reads a graph from a channel, which is left open.
+     *
+     * @param channel DOT input
+     * @return parsed graph
+     */
+    public static Graph<Point, DefaultWeightedEdge> read(ReadableByteChannel channel) {
+        DotGraphReader reader = new DotGraphReader(channel);
+        try {
+            reader.parseGraph();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return reader.graph;
+    }
+
+    private void parseGraph() throws IOException {
+        this.skipSpace();
+        this.readId();
+        if (this.tokenIs(STRICT)) {
+            this.skipSpace();
+            this.readId();
+        }
+        if (!this.tokenIs(GRAPH)) {
+            throw this.error("expected an undirected graph");
+        }
+
+        this.skipSpace();
+        if (this.peek() != '{') {
+            this.readId();
+            this.skipSpace();
+        }
+        this.expect('{');
+
+        while (true) {
+            this.skipSpace();
+            int c = this.peek();
+            if (c == '}') {
+                return;
+            }
+            if (c == ';' || c == ',') {
+                this.next();
+                continue;
+            }
+            if (c < 0) {
+                throw this.error("unexpected end of input");
+            }
+            this.parseStatement();
+        }
+    }
+
+    private void parseStatement() throws IOException {
+        this.readId();
+        this.skipSpace();
+        int c = this.peek();
+
+        if (c == '=') {
+            // graph attribute
+            this.next();
+            this.skipSpace();
+            this.readId();
+            return;
+        }
+
+        if (c == '-') {
+            String source = this.tokenString();
+            this.next();
+            this.expect('-');
+            this.skipSpace();
+            this.readId();
+            String target = this.tokenString();
+            this.skipSpace();
+            this.parseAttributes();
+            this.addEdge(source, target);
+            return;
+        }
+
+        if (this.tokenIs(NODE) || this.tokenIs(EDGE) || this.tokenIs(GRAPH)) {
+            // default attributes, not used by our graphs
+            String id = this.tokenString();
+            this.parseAttributes();
+            if (this.type != null || this.hasWeight) {
+                throw this.error("default " + id + " attributes are not supported");
+            }
+            return;
+        }
+
+        String id = this.tokenString();
+        this.parseAttributes();
+        this.addVertex(id);
+    }
+
+    /**
+     * Reads an optional attribute list, keeping the type and weight.
+     */
+    private void parseAttributes() throws IOException {
+        this.type = null;
+        this.hasWeight = false;
+        if (this.peek() != '[') {
+            return;
+        }
+        this.next();
+
+        while (true) {
+            this.skipSpace();
+            int c = this.peek();
+            if (c == ']') {
+                this.next();
+                return;
+            }
+            if (c == ',' || c == ';') {
+                this.next();
+                continue;
+            }
+
+            this.readId();
+            boolean isType = this.tokenIs(TYPE);
+            boolean isWeight = !isType && this.tokenIs(WEIGHT);
+            this.skipSpace();
+            this.expect('=');
+            this.skipSpace();
+            this.readId();
+
+            if (isType) {
+                this.type = this.tokenString();
+            } else if (isWeight) {
+                this.weight = this.tokenDouble();
+                this.hasWeight = true;
+            }
+        }
+    }
+
+    private void addVertex(String id) {
+        Point point = this.points.get(id);
+        if (point == null) {
+            point = this.createPoint(id, this.type);
+            this.points.put(id, point);
+            this.graph.addVertex(point);
+        }
+    }
+
+    private void addEdge(String source, String target) {
+        DefaultWeightedEdge edge;
+        if ("subway".equals(this.type)) {
+            edge = new SubwayEdge();
+        } else if ("street".equals(this.type)) {
+            edge = new StreetEdge();
+        } else {
+            edge = new RoadEdge();
+        }
+
+        if (!this.graph.addEdge(this.vertex(source), this.vertex(target), edge)) {
+            throw this.error("edge " + source + " -- " + target + " could not be added");
+        }
+        if (this.hasWeight) {
+            this.graph.setEdgeWeight(edge, this.weight);
+        }
+    }
+
+    /**
+     * @return the vertex with an id, adding it without attributes if it was not declared
+     */
+    private Point vertex(String id) {
+        Point point = this.points.get(id);
+        if (point == null) {
+            point = this.createPoint(id, null);
+            this.points.put(id, point);
+            this.graph.addVertex(point);
+        }
+        return point;
+    }
+
+    /**
+     * Same vertex factory as the jgrapht importer, points without a known type are named "s"
+     */
+    private Point createPoint(String id, String type) {
+        Point point = new Point("s");
+        if (type != null) {
+            switch (type) {
+                case "point" -> point = new Point(id);
+                case "station" -> point = new Station(id);
+                case "semaphore" -> point = new Semaphore(id);
+                default -> {
+                }
+            }
+        }
+        return Point.intern(point);
+    }
+
+    /**
+     * Reads an identifier: a quoted string or a run of letters, digits, underscores and dots.
+     */
+    private void readId() throws IOException {
+        this.tokenLength = 0;
+        int c = this.peek();
+
+        if (c == '"') {
+            this.next();
+            while (true) {
+                c = this.next();
+                if (c < 0) {
+                    throw this.error("unterminated string");
+                }
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\' && this.peek() == '"') {
+                    c = this.next();
+                }
+                if (c == '\n') {
+                    this.line++;
+                }
+                this.append(c);
+            }
+        }
+
+        while (c == '_' || c == '.' || c == '-' && this.tokenLength == 0 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c >= 0x80) {
+            this.append(this.next());
+            c = this.peek();
+        }
+        if (this.tokenLength == 0) {
+            throw this.error("expected an identifier");
+        }
+    }
+
+    private void append(int c) {
+        if (this.tokenLength == this.token.length) {
+            byte[] larger = new byte[this.token.length * 2];
+            System.arraycopy(this.token, 0, larger, 0, this.tokenLength);
+            this.token = larger;
+        }
+        this.token[this.tokenLength++] = (byte) c;
+    }
+
+    private boolean tokenIs(byte[] keyword) {
+        if (keyword.length != this.tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++) {
+            if (keyword[i] != this.token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String tokenString() {
+        return new String(this.token, 0, this.tokenLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the token as a number, accepting a comma as the decimal separator as the exporter may write one.
+     */
+    private double tokenDouble() {
+        for (int i = 0; i < this.tokenLength; i++) {
+            if (this.token[i] == ',') {
+                this.token[i] = '.';
+            }
+        }
+        try {
+            return Double.parseDouble(new String(this.token, 0, this.tokenLength, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            throw this.error("invalid weight " + this.tokenString());
+        }
+    }
+
+    /**
+     * Skips whitespace and comments.
+     */
+    private void skipSpace() throws IOException {
+        while (true) {
+            int c = this.peek();
+            if (c == '\n') {
+                this.line++;
+                this.next();
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                this.next();
+            } else if (c == '#') {
+                this.skipLine();
+            } else if (c == '/') {
+                this.next();
+                c = this.next();
+                if (c == '/') {
+                    this.skipLine();
+                } else if (c == '*') {
+                    int previous = 0;
+                    while ((c = this.next()) >= 0 && !(previous == '*' && c == '/')) {
+                        if (c == '\n') {
+                            this.line++;
+                        }
+                        previous = c;
+                    }
+                } else {
+                    throw this.error("unexpected '/'");
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = this.next()) >= 0 && c != '\n') {
+            // skip
+        }
+        this.line++;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (this.next() != expected) {
+            throw this.error("expected '" + expected + "'");
+        }
+    }
+
+    private int peek() throws IOException {
+        if (!this.buffer.hasRemaining() && !this.fill()) {
+            return -1;
+        }
+        return this.buffer.get(this.buffer.position()) & 0xff;
+    }
+
+    private int next() throws IOException {
+        if (!this.buffer.hasRemaining() && !this.fill()) {
+            return -1;
+        }
+        return this.buffer.get() & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        this.buffer.clear();
+        int read;
+        do {
+            read = this.channel.read(this.buffer);
+        } while (read == 0);
+        this.buffer.flip();
+        return read > 0;
+    }
+
+    private ImportException error(String message) {
+        return new ImportException(String.format("line %d: %s", this.line, message));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,462 @@
+package graph.io;
+
+import graph.edge.EdgeKind;
+import graph.edge.RoadEdge;
+import graph.edge.StreetEdge;
+import graph.edge.SubwayEdge;
+import graph.vertex.Point;
+import graph.vertex.Semaphore;
+import graph.vertex.Station;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.WeightedMultigraph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Binary snapshot of a city graph, read through a memory-mapped file.
+ * <p>
+ * Layout, little endian, every section aligned to 8 bytes:
+ * <pre>
+ * header        magic "CITYGRPH", int version, int vertices (n), int edges (m)
+ * vertex types  byte[n]       0 point, 1 station, 2 semaphore
+ * name offsets  int[n + 1]    into the name bytes
+ * names         byte[]        UTF-8
+ * offsets       int[n + 1]    CSR, the arcs of vertex v are offsets[v] to offsets[v + 1] - 1
+ * arc targets   int[2m]
+ * arc edges     int[2m]       edge of every arc
+ * edge sources  int[m]
+ * edge targets  int[m]
+ * edge kinds    byte[m]       see {@link EdgeKind#id()}
+ * edge weights  double[m]
+ * </pre>
+ * Opening a snapshot only maps the file and reads the header, the pages are loaded by the OS on first access and
+ * shared by every JVM that maps the same file. The accessors read the mapped data directly, so routing snapshots can
+ * be built from them without any graph, while {@link #toGraph()} materializes a jgrapht graph, which still costs time
+ * proportional to the size of the graph but skips all parsing. {@link SnapshotGraph} only does so on first use.
+ */
+public class GraphSnapshot {
+
+    public static final String EXTENSION = ".bin";
+
+    private static final byte[] MAGIC = "CITYGRPH".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 24;
+
+    public static final byte POINT = 0;
+
+    public static final byte STATION = 1;
+
+    public static final byte SEMAPHORE = 2;
+
+    private final ByteBuffer data;
+
+    private final int vertexCount;
+
+    private final int edgeCount;
+
+    private final int typesAt;
+
+    private final int nameOffsetsAt;
+
+    private final int namesAt;
+
+    private final int offsetsAt;
+
+    private final int arcTargetsAt;
+
+    private final int arcEdgesAt;
+
+    private final int edgeSourcesAt;
+
+    private final int edgeTargetsAt;
+
+    private final int edgeKindsAt;
+
+    private final int edgeWeightsAt;
+
+    private GraphSnapshot(ByteBuffer data) {
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+
+        byte[] magic = new byte[MAGIC.length];
+        data.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC) || data.getInt(8) != VERSION) {
+            throw new IllegalArgumentException("not a city graph snapshot");
+        }
+        this.vertexCount = data.getInt(12);
+        this.edgeCount = data.getInt(16);
+
+        int n = this.vertexCount;
+        int m = this.edgeCount;
+        this.typesAt = HEADER_BYTES;
+        this.nameOffsetsAt = align(this.typesAt + n);
+        this.namesAt = align(this.nameOffsetsAt + 4 * (n + 1));
+        this.offsetsAt = align(this.namesAt + data.getInt(this.nameOffsetsAt + 4 * n));
+        this.arcTargetsAt = align(this.offsetsAt + 4 * (n + 1));
+        this.arcEdgesAt = align(this.arcTargetsAt + 4 * 2 * m);
+        this.edgeSourcesAt = align(this.arcEdgesAt + 4 * 2 * m);
+        this.edgeTargetsAt = align(this.edgeSourcesAt + 4 * m);
+        this.edgeKindsAt = align(this.edgeTargetsAt + 4 * m);
+        this.edgeWeightsAt = align(this.edgeKindsAt + m);
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param filename snapshot file name
+     * @return the snapshot
+     * @throws FileNotFoundException when the file could not be found
+     */
+    public static GraphSnapshot open(String filename) throws FileNotFoundException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r"); FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("snapshots are limited to 2 GB");
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GraphSnapshot(mapped);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the snapshot file of a DOT file: the same name with the {@link #EXTENSION} extension, if it exists and is
+     * not older than the DOT file.
+     *
+     * @param dotFilename DOT file name
+     * @return the snapshot file name, or null if there is no up to date snapshot
+     */
+    public static String findFor(String dotFilename) {
+        int dot = dotFilename.lastIndexOf('.');
+        String snapshot = (dot > dotFilename.lastIndexOf(File.separatorChar) ? dotFilename.substring(0, dot) : dotFilename) + EXTENSION;
+
+        File snapshotFile = new File(snapshot);
+        File dotFile = new File(dotFilename);
+        if (!snapshotFile.isFile() || (dotFile.isFile() && dotFile.lastModified() > snapshotFile.lastModified())) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes a snapshot of a graph.
+     *
+     * @param graph    graph to write
+     * @param filename snapshot file name
+     * @throws IOException when the file could not be written
+     */
+    public static void write(Graph<Point, DefaultWeightedEdge> graph, String filename) throws IOException {
+        Point[] vertices = graph.vertexSet().toArray(new Point[0]);
+        DefaultWeightedEdge[] edges = graph.edgeSet().toArray(new DefaultWeightedEdge[0]);
+
+        Map<Point, Integer> indices = new HashMap<>(vertices.length * 2);
+        byte[] types = new byte[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            indices.put(vertices[i], i);
+            types[i] = vertices[i] instanceof Semaphore ? SEMAPHORE : vertices[i] instanceof Station ? STATION : POINT;
+        }
+
+        int[] sources = new int[edges.length];
+        int[] targets = new int[edges.length];
+        byte[] kinds = new byte[edges.length];
+        double[] weights = new double[edges.length];
+        for (int e = 0; e < edges.length; e++) {
+            sources[e] = indices.get(graph.getEdgeSource(edges[e]));
+            targets[e] = indices.get(graph.getEdgeTarget(edges[e]));
+            kinds[e] = EdgeKind.of(edges[e]).id();
+            weights[e] = graph.getEdgeWeight(edges[e]);
+        }
+
+        GraphSnapshot.write(filename, types, vertex -> vertices[vertex].getName(), sources, targets, kinds, weights, edges.length);
+    }
+
+    /**
+     * Writes a snapshot from plain arrays, without building a graph. The file is written through a small buffer, so
+     * only the arrays and the CSR adjacency are held in memory.
+     *
+     * @param filename  snapshot file name
+     * @param types     type of every vertex, {@link #POINT}, {@link #STATION} or {@link #SEMAPHORE}
+     * @param names     name of every vertex, called twice per vertex
+     * @param sources   source vertex of every edge
+     * @param targets   target vertex of every edge
+     * @param kinds     kind of every edge, see {@link EdgeKind#id()}
+     * @param weights   weight of every edge
+     * @param edgeCount how many edges there are, the edge arrays may be longer
+     * @throws IOException when the file could not be written
+     */
+    public static void write(String filename, byte[] types, IntFunction<String> names, int[] sources, int[] targets, byte[] kinds, double[] weights, int edgeCount) throws IOException {
+        int n = types.length;
+        int m = edgeCount;
+
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            offsets[sources[e] + 1]++;
+            offsets[targets[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] arcTargets = new int[2 * m];
+        int[] arcEdges = new int[2 * m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < m; e++) {
+            int arc = next[sources[e]]++;
+            arcTargets[arc] = targets[e];
+            arcEdges[arc] = e;
+            arc = next[targets[e]]++;
+            arcTargets[arc] = sources[e];
+            arcEdges[arc] = e;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            Output output = new Output(channel);
+            output.put(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(0);
+
+            output.put(types).pad();
+            long nameOffset = 0;
+            for (int v = 0; v < n; v++) {
+                output.putInt((int) nameOffset);
+                nameOffset += names.apply(v).getBytes(StandardCharsets.UTF_8).length;
+                if (nameOffset > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("snapshots are limited to 2 GB");
+                }
+            }
+            output.putInt((int) nameOffset).pad();
+            for (int v = 0; v < n; v++) {
+                output.put(names.apply(v).getBytes(StandardCharsets.UTF_8));
+            }
+            output.pad();
+            output.putInts(offsets, n + 1).putInts(arcTargets, 2 * m).putInts(arcEdges, 2 * m).putInts(sources, m).putInts(targets, m);
+            output.put(Arrays.copyOf(kinds, m)).pad();
+            for (int e = 0; e < m; e++) {
+                output.putDouble(weights[e]);
+            }
+            output.flush();
+            if (output.written > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("snapshots are limited to 2 GB");
+            }
+        }
+    }
+
+    /**
+     * Builds the jgrapht graph of the snapshot, with interned points as {@link DotGraphReader} does.
+     *
+     * @return a new graph
+     */
+    public Graph<Point, DefaultWeightedEdge> toGraph() {
+        return this.toGraph(this.points(), this.newEdges());
+    }
+
+    /**
+     * Builds the jgrapht graph of the snapshot over given vertex and edge objects.
+     *
+     * @param points the vertices, see {@link #points()}
+     * @param edges  edges not in any graph yet, see {@link #newEdges()}
+     * @return a new graph
+     */
+    Graph<Point, DefaultWeightedEdge> toGraph(Point[] points, DefaultWeightedEdge[] edges) {
+        Graph<Point, DefaultWeightedEdge> graph = new WeightedMultigraph<>(DefaultWeightedEdge.class);
+        for (Point point : points) {
+            graph.addVertex(point);
+        }
+        for (int e = 0; e < this.edgeCount; e++) {
+            if (!graph.addEdge(points[this.edgeSource(e)], points[this.edgeTarget(e)], edges[e])) {
+                throw new IllegalStateException("edge " + e + " could not be added");
+            }
+            graph.setEdgeWeight(edges[e], this.edgeWeight(e));
+        }
+        return graph;
+    }
+
+    /**
+     * @return the interned point of every vertex, by vertex index
+     */
+    public Point[] points() {
+        Point[] points = new Point[this.vertexCount];
+        for (int v = 0; v < this.vertexCount; v++) {
+            String name = this.name(v);
+            points[v] = Point.intern(switch (this.data.get(this.typesAt + v)) {
+                case STATION -> new Station(name);
+                case SEMAPHORE -> new Semaphore(name);
+                default -> new Point(name);
+            });
+        }
+        return points;
+    }
+
+    /**
+     * @return a new edge of the kind of every edge, by edge index, not in any graph yet
+     */
+    public DefaultWeightedEdge[] newEdges() {
+        DefaultWeightedEdge[] edges = new DefaultWeightedEdge[this.edgeCount];
+        for (int e = 0; e < this.edgeCount; e++) {
+            edges[e] = switch (EdgeKind.fromId(this.edgeKind(e))) {
+                case STREET -> new StreetEdge();
+                case SUBWAY -> new SubwayEdge();
+                case ROAD -> new RoadEdge();
+            };
+        }
+        return edges;
+    }
+
+    public int vertexCount() {
+        return this.vertexCount;
+    }
+
+    public int edgeCount() {
+        return this.edgeCount;
+    }
+
+    public String name(int vertex) {
+        int start = this.data.getInt(this.nameOffsetsAt + 4 * vertex);
+        int end = this.data.getInt(this.nameOffsetsAt + 4 * (vertex + 1));
+        byte[] name = new byte[end - start];
+        this.data.get(this.namesAt + start, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    public int firstArc(int vertex) {
+        return this.data.getInt(this.offsetsAt + 4 * vertex);
+    }
+
+    public int endArc(int vertex) {
+        return this.data.getInt(this.offsetsAt + 4 * (vertex + 1));
+    }
+
+    public int arcTarget(int arc) {
+        return this.data.getInt(this.arcTargetsAt + 4 * arc);
+    }
+
+    public int arcEdge(int arc) {
+        return this.data.getInt(this.arcEdgesAt + 4 * arc);
+    }
+
+    public int edgeSource(int edge) {
+        return this.data.getInt(this.edgeSourcesAt + 4 * edge);
+    }
+
+    public int edgeTarget(int edge) {
+        return this.data.getInt(this.edgeTargetsAt + 4 * edge);
+    }
+
+    public byte edgeKind(int edge) {
+        return this.data.get(this.edgeKindsAt + edge);
+    }
+
+    public double edgeWeight(int edge) {
+        return this.data.getDouble(this.edgeWeightsAt + 8 * edge);
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    /**
+     * Buffered writes to a channel, keeping track of the position to align sections.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private Output put(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length; ) {
+                int length = Math.min(bytes.length - i, this.room(1));
+                this.buffer.put(bytes, i, length);
+                i += length;
+            }
+            this.written += bytes.length;
+            return this;
+        }
+
+        private Output putInt(int value) throws IOException {
+            this.room(4);
+            this.buffer.putInt(value);
+            this.written += 4;
+            return this;
+        }
+
+        private Output putInts(int[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                this.putInt(values[i]);
+            }
+            return this.pad();
+        }
+
+        private Output putDouble(double value) throws IOException {
+            this.room(8);
+            this.buffer.putDouble(value);
+            this.written += 8;
+            return this;
+        }
+
+        private Output pad() throws IOException {
+            while ((this.written & 7) != 0) {
+                this.room(1);
+                this.buffer.put((byte) 0);
+                this.written++;
+            }
+            return this;
+        }
+
+        /**
+         * Flushes the buffer if it has less than the given room left.
+         *
+         * @return the room left
+         */
+        private int room(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes) {
+                this.flush();
+            }
+            return this.buffer.remaining();
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * Converts a DOT file to a snapshot.
+     * <p>
+     * Usage: GraphSnapshot [DOT file] [snapshot file]
+     *
+     * @param args DOT file name, citygraph.dot by default, and snapshot file name, the DOT file name with the
+     *             snapshot extension by default
+     */
+    public static void main(String[] args) throws IOException {
+        String dotFilename = args.length > 0 ? args[0] : "citygraph.dot";
+        String snapshot = args.length > 1 ? args[1] : dotFilename.replaceFirst("\\.dot$", "") + EXTENSION;
+
+        Graph<Point, DefaultWeightedEdge> graph = DotGraphReader.read(dotFilename);
+        GraphSnapshot.write(graph, snapshot);
+        System.out.printf("%s: %d vertices, %d edges written to %s (%d KB)%n", dotFilename, graph.vertexSet().size(), graph.edgeSet().size(), snapshot, new File(snapshot).length() / 1024);
+    }
+}
@@ -0,0 +1,232 @@
+package graph.io;
+
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.WeightedMultigraph;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Graph of a {@link GraphSnapshot} that is only built on first use.
+ * <p>
+ * The vertices and edges are created up front, so that a routing snapshot can be built from the mapped file over the
+ * same objects, see {@link #points()} and {@link #edges()}. The jgrapht graph itself is materialized from the snapshot
+ * the first time a method of the graph is called, except for {@link #getType()}, so agents that only route never
+ * pay for it.
+ */
+public class SnapshotGraph implements Graph<Point, DefaultWeightedEdge> {
+
+    private static final GraphType TYPE = new WeightedMultigraph<Point, DefaultWeightedEdge>(DefaultWeightedEdge.class).getType();
+
+    private final GraphSnapshot snapshot;
+
+    private final Point[] points;
+
+    private final DefaultWeightedEdge[] edges;
+
+    private volatile Graph<Point, DefaultWeightedEdge> graph;
+
+    public SnapshotGraph(GraphSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.points = snapshot.points();
+        this.edges = snapshot.newEdges();
+    }
+
+    public GraphSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * @return the vertices, by vertex index of the snapshot
+     */
+    public Point[] points() {
+        return this.points;
+    }
+
+    /**
+     * @return the edges of the graph, by edge index of the snapshot
+     */
+    public DefaultWeightedEdge[] edges() {
+        return this.edges;
+    }
+
+    /**
+     * @return if the jgrapht graph was built
+     */
+    public boolean isMaterialized() {
+        return this.graph != null;
+    }
+
+    private Graph<Point, DefaultWeightedEdge> graph() {
+        Graph<Point, DefaultWeightedEdge> result = this.graph;
+        if (result == null) {
+            synchronized (this) {
+                result = this.graph;
+                if (result == null) {
+                    result = this.snapshot.toGraph(this.points, this.edges);
+                    this.graph = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<DefaultWeightedEdge> getAllEdges(Point sourceVertex, Point targetVertex) {
+        return this.graph().getAllEdges(sourceVertex, targetVertex);
+    }
+
+    @Override
+    public DefaultWeightedEdge getEdge(Point sourceVertex, Point targetVertex) {
+        return this.graph().getEdge(sourceVertex, targetVertex);
+    }
+
+    @Override
+    public Supplier<Point> getVertexSupplier() {
+        return this.graph().getVertexSupplier();
+    }
+
+    @Override
+    public Supplier<DefaultWeightedEdge> getEdgeSupplier() {
+        return this.graph().getEdgeSupplier();
+    }
+
+    @Override
+    public DefaultWeightedEdge addEdge(Point sourceVertex, Point targetVertex) {
+        return this.graph().addEdge(sourceVertex, targetVertex);
+    }
+
+    @Override
+    public boolean addEdge(Point sourceVertex, Point targetVertex, DefaultWeightedEdge edge) {
+        return this.graph().addEdge(sourceVertex, targetVertex, edge);
+    }
+
+    @Override
+    public Point addVertex() {
+        return this.graph().addVertex();
+    }
+
+    @Override
+    public boolean addVertex(Point vertex) {
+        return this.graph().addVertex(vertex);
+    }
+
+    @Override
+    public boolean containsEdge(Point sourceVertex, Point targetVertex) {
+        return this.graph().containsEdge(sourceVertex, targetVertex);
+    }
+
+    @Override
+    public boolean containsEdge(DefaultWeightedEdge edge) {
+        return this.graph().containsEdge(edge);
+    }
+
+    @Override
+    public boolean containsVertex(Point vertex) {
+        return this.graph().containsVertex(vertex);
+    }
+
+    @Override
+    public Set<DefaultWeightedEdge> edgeSet() {
+        return this.graph().edgeSet();
+    }
+
+    @Override
+    public int degreeOf(Point vertex) {
+        return this.graph().degreeOf(vertex);
+    }
+
+    @Override
+    public Set<DefaultWeightedEdge> edgesOf(Point vertex) {
+        return this.graph().edgesOf(vertex);
+    }
+
+    @Override
+    public int inDegreeOf(Point vertex) {
+        return this.graph().inDegreeOf(vertex);
+    }
+
+    @Override
+    public Set<DefaultWeightedEdge> incomingEdgesOf(Point vertex) {
+        return this.graph().incomingEdgesOf(vertex);
+    }
+
+    @Override
+    public int outDegreeOf(Point vertex) {
+        return this.graph().outDegreeOf(vertex);
+    }
+
+    @Override
+    public Set<DefaultWeightedEdge> outgoingEdgesOf(Point vertex) {
+        return this.graph().outgoingEdgesOf(vertex);
+    }
+
+    @Override
+    public boolean removeAllEdges(Collection<? extends DefaultWeightedEdge> edges) {
+        return this.graph().removeAllEdges(edges);
+    }
+
+    @Override
+    public Set<DefaultWeightedEdge> removeAllEdges(Point sourceVertex, Point targetVertex) {
+        return this.graph().removeAllEdges(sourceVertex, targetVertex);
+    }
+
+    @Override
+    public boolean removeAllVertices(Collection<? extends Point> vertices) {
+        return this.graph().removeAllVertices(vertices);
+    }
+
+    @Override
+    public DefaultWeightedEdge removeEdge(Point sourceVertex, Point targetVertex) {
+        return this.graph().removeEdge(sourceVertex, targetVertex);
+    }
+
+    @Override
+    public boolean removeEdge(DefaultWeightedEdge edge) {
+        return this.graph().removeEdge(edge);
+    }
+
+    @Override
+    public boolean removeVertex(Point vertex) {
+        return this.graph().removeVertex(vertex);
+    }
+
+    @Override
+    public Set<Point> vertexSet() {
+        return this.graph().vertexSet();
+    }
+
+    @Override
+    public Point getEdgeSource(DefaultWeightedEdge edge) {
+        return this.graph().getEdgeSource(edge);
+    }
+
+    @Override
+    public Point getEdgeTarget(DefaultWeightedEdge edge) {
+        return this.graph().getEdgeTarget(edge);
+    }
+
+    @Override
+    public GraphType getType() {
+        return TYPE;
+    }
+
+    @Override
+    public double getEdgeWeight(DefaultWeightedEdge edge) {
+        return this.graph().getEdgeWeight(edge);
+    }
+
+    @Override
+    public void setEdgeWeight(DefaultWeightedEdge edge, double weight) {
+        this.graph().setEdgeWeight(edge, weight);
+    }
+
+    @Override
+    public String toString() {
+        return this.graph().toString();
+    }
+}
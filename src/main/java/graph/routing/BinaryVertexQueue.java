@@ -0,0 +1,99 @@
+package graph.routing;
+
+/**
+ * Binary heap over arrays indexed by vertex id, the default {@link VertexQueue}. Nothing is allocated after
+ * construction.
+ */
+class BinaryVertexQueue implements VertexQueue {
+
+    private final double[] keys;
+
+    /**
+     * Position of each vertex in the heap
+     */
+    private final int[] positions;
+
+    private final int[] heap;
+
+    private int size;
+
+    BinaryVertexQueue(int vertexCount) {
+        this.keys = new double[vertexCount];
+        this.positions = new int[vertexCount];
+        this.heap = new int[vertexCount];
+    }
+
+    @Override
+    public void insert(int vertex, double key) {
+        this.keys[vertex] = key;
+        this.heap[this.size] = vertex;
+        this.positions[vertex] = this.size;
+        this.siftUp(this.size++);
+    }
+
+    @Override
+    public void decreaseKey(int vertex, double key) {
+        this.keys[vertex] = key;
+        this.siftUp(this.positions[vertex]);
+    }
+
+    @Override
+    public int deleteMin() {
+        int top = this.heap[0];
+        int last = this.heap[--this.size];
+        if (this.size > 0) {
+            this.heap[0] = last;
+            this.positions[last] = 0;
+            this.siftDown(0);
+        }
+        return top;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public void clear() {
+        this.size = 0;
+    }
+
+    private void siftUp(int position) {
+        int vertex = this.heap[position];
+        double key = this.keys[vertex];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentVertex = this.heap[parent];
+            if (this.keys[parentVertex] <= key) {
+                break;
+            }
+            this.heap[position] = parentVertex;
+            this.positions[parentVertex] = position;
+            position = parent;
+        }
+        this.heap[position] = vertex;
+        this.positions[vertex] = position;
+    }
+
+    private void siftDown(int position) {
+        int vertex = this.heap[position];
+        double key = this.keys[vertex];
+        int half = this.size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < this.size && this.keys[this.heap[right]] < this.keys[this.heap[child]]) {
+                child = right;
+            }
+            if (key <= this.keys[this.heap[child]]) {
+                break;
+            }
+            this.heap[position] = this.heap[child];
+            this.positions[this.heap[position]] = position;
+            position = child;
+        }
+        this.heap[position] = vertex;
+        this.positions[vertex] = position;
+    }
+}
@@ -0,0 +1,487 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+import graph.io.GraphSnapshot;
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.floats.FloatArrays;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntIntSortedPair;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.sux4j.mph.GOVMinimalPerfectHashFunction;
+import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
+import it.unimi.dsi.util.FrontCodedStringList;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.ImmutableSequentialGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.NodeIterator;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.AsWeightedGraph;
+import org.jgrapht.webgraph.ImmutableUndirectedGraphAdapter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Road network of a very large city, with the topology compressed as a WebGraph {@link BVGraph}.
+ * <p>
+ * Vertex names map to ids through a signed minimal perfect hash, and ids map back to names through a front-coded
+ * list, so no name or vertex object is kept per vertex. Parallel roads are merged, keeping the lightest one. The
+ * weight of every arc is a float in a memory-mapped file, in the order of the successor lists, and an Elias-Fano
+ * list gives the first arc of every vertex. The graph file itself is memory-mapped too, so the heap holds little more
+ * than the offsets, the hash and the names.
+ * <p>
+ * Routing code uses it as a jgrapht graph, see {@link #asGraph()}. Random access to a BVGraph is not thread safe:
+ * threads should route on their own {@link #copy()}.
+ * <p>
+ * A network is built once from a {@link GraphSnapshot} into a set of files sharing a base name, then loaded with
+ * {@link #load(String)}.
+ */
+public class CompressedRoadNetwork {
+
+    private static final String HASH_EXTENSION = ".mph";
+
+    private static final String NAMES_EXTENSION = ".names";
+
+    private static final String ARCS_EXTENSION = ".arcs";
+
+    private static final String WEIGHTS_EXTENSION = ".weights";
+
+    private final ImmutableGraph graph;
+
+    private final GOVMinimalPerfectHashFunction<CharSequence> ids;
+
+    private final FrontCodedStringList names;
+
+    /**
+     * Index of the first arc of every vertex in the weights, plus the arc count at the end
+     */
+    private final EliasFanoMonotoneLongBigList arcs;
+
+    private final FloatBuffer weights;
+
+    private CompressedRoadNetwork(ImmutableGraph graph, GOVMinimalPerfectHashFunction<CharSequence> ids, FrontCodedStringList names, EliasFanoMonotoneLongBigList arcs, FloatBuffer weights) {
+        this.graph = graph;
+        this.ids = ids;
+        this.names = names;
+        this.arcs = arcs;
+        this.weights = weights;
+    }
+
+    /**
+     * Builds the files of the road network of a snapshot.
+     *
+     * @param snapshot city snapshot
+     * @param basename base name of the files to write
+     * @throws IOException when the files could not be written
+     */
+    public static void build(GraphSnapshot snapshot, String basename) throws IOException {
+        int n = snapshot.vertexCount();
+
+        Iterable<CharSequence> keys = () -> new Iterator<>() {
+            private int vertex;
+
+            @Override
+            public boolean hasNext() {
+                return this.vertex < n;
+            }
+
+            @Override
+            public CharSequence next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot.name(this.vertex++);
+            }
+        };
+        GOVMinimalPerfectHashFunction<CharSequence> ids = new GOVMinimalPerfectHashFunction.Builder<CharSequence>()
+                .keys(keys).transform(TransformationStrategies.utf16()).signed(64).build();
+        BinIO.storeObject(ids, basename + HASH_EXTENSION);
+
+        // vertices are numbered by the hash, so no table from names to ids is needed
+        int[] idOf = new int[n];
+        int[] vertexOf = new int[n];
+        for (int vertex = 0; vertex < n; vertex++) {
+            idOf[vertex] = (int) ids.getLong(snapshot.name(vertex));
+            vertexOf[idOf[vertex]] = vertex;
+        }
+
+        Iterator<CharSequence> namesById = new Iterator<>() {
+            private int id;
+
+            @Override
+            public boolean hasNext() {
+                return this.id < n;
+            }
+
+            @Override
+            public CharSequence next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot.name(vertexOf[this.id++]);
+            }
+        };
+        BinIO.storeObject(new FrontCodedStringList(namesById, 8, true), basename + NAMES_EXTENSION);
+
+        RoadArcs roads = new RoadArcs(snapshot, idOf, vertexOf);
+        long arcCount = 0;
+        int[] degrees = new int[n];
+        try (RandomAccessFile file = new RandomAccessFile(basename + WEIGHTS_EXTENSION, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int id = 0; id < n; id++) {
+                degrees[id] = roads.load(id);
+                arcCount += degrees[id];
+                for (int arc = 0; arc < degrees[id]; arc++) {
+                    if (buffer.remaining() < Float.BYTES) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    buffer.putFloat(roads.weights[arc]);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        if (arcCount > Integer.MAX_VALUE / Float.BYTES) {
+            throw new IllegalArgumentException("too many road arcs to map the weights");
+        }
+
+        LongIterator firstArcs = new LongIterator() {
+            private int id;
+            private long first;
+
+            @Override
+            public boolean hasNext() {
+                return this.id <= n;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long value = this.first;
+                if (this.id < n) {
+                    this.first += degrees[this.id];
+                }
+                this.id++;
+                return value;
+            }
+        };
+        BinIO.storeObject(new EliasFanoMonotoneLongBigList(n + 1, arcCount, firstArcs), basename + ARCS_EXTENSION);
+
+        long arcTotal = arcCount;
+        BVGraph.store(new ImmutableSequentialGraph() {
+            @Override
+            public int numNodes() {
+                return n;
+            }
+
+            @Override
+            public long numArcs() {
+                return arcTotal;
+            }
+
+            @Override
+            public NodeIterator nodeIterator() {
+                RoadArcs arcs = new RoadArcs(snapshot, idOf, vertexOf);
+                return new NodeIterator() {
+                    private int id = -1;
+                    private int degree;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.id + 1 < n;
+                    }
+
+                    @Override
+                    public int nextInt() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        this.degree = arcs.load(++this.id);
+                        return this.id;
+                    }
+
+                    @Override
+                    public int outdegree() {
+                        return this.degree;
+                    }
+
+                    @Override
+                    public int[] successorArray() {
+                        return arcs.targets;
+                    }
+                };
+            }
+        }, basename);
+    }
+
+    /**
+     * Loads a road network, memory-mapping the graph and the weights.
+     *
+     * @param basename base name of the files
+     * @return the road network
+     * @throws IOException when the files could not be read
+     */
+    @SuppressWarnings("unchecked")
+    public static CompressedRoadNetwork load(String basename) throws IOException {
+        try {
+            ImmutableGraph graph = BVGraph.loadMapped(basename);
+            GOVMinimalPerfectHashFunction<CharSequence> ids = (GOVMinimalPerfectHashFunction<CharSequence>) BinIO.loadObject(basename + HASH_EXTENSION);
+            FrontCodedStringList names = (FrontCodedStringList) BinIO.loadObject(basename + NAMES_EXTENSION);
+            EliasFanoMonotoneLongBigList arcs = (EliasFanoMonotoneLongBigList) BinIO.loadObject(basename + ARCS_EXTENSION);
+
+            FloatBuffer weights;
+            try (RandomAccessFile file = new RandomAccessFile(basename + WEIGHTS_EXTENSION, "r"); FileChannel channel = file.getChannel()) {
+                weights = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+            return new CompressedRoadNetwork(graph, ids, names, arcs, weights);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("not a road network: " + basename, e);
+        }
+    }
+
+    /**
+     * @return a copy that shares every structure and can be used by another thread
+     */
+    public CompressedRoadNetwork copy() {
+        return new CompressedRoadNetwork(this.graph.copy(), this.ids, this.names, this.arcs, this.weights);
+    }
+
+    /**
+     * Gets the road network as a jgrapht graph, through the WebGraph adapter. Vertices are ids and edges are sorted
+     * pairs of ids, weights are read from the mapped weights.
+     *
+     * @return a read-only weighted graph
+     */
+    public Graph<Integer, IntIntSortedPair> asGraph() {
+        return new AsWeightedGraph<>(new ImmutableUndirectedGraphAdapter(this.graph), edge -> this.weight(edge.leftInt(), edge.rightInt()), false, false);
+    }
+
+    /**
+     * @param a source point name
+     * @param b destination point name
+     * @return names of the points in the road path from A to B, or null if there is no such path
+     */
+    public List<String> getPath(String a, String b) {
+        Search search = this.search(a, b);
+        if (!search.reached) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        for (int vertex = search.target; vertex >= 0; vertex = search.parents.get(vertex)) {
+            result.add(this.name(vertex));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @param a source point name
+     * @param b destination point name
+     * @return road distance from A to B, infinity if B cannot be reached by road
+     */
+    public double distance(String a, String b) {
+        Search search = this.search(a, b);
+        return search.reached ? search.distances.get(search.target) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Dijkstra straight on the successor lists, reading the weights in arc order. The search state is kept in hash
+     * maps, so it takes memory for the vertices it reaches only, not for the whole city.
+     */
+    private Search search(String a, String b) {
+        int source = this.indexOf(a);
+        int target = this.indexOf(b);
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("graph must contain the source and target vertices");
+        }
+
+        Search search = new Search(target);
+        search.reach(source, 0, -1);
+        while (!search.queue.isEmpty()) {
+            long entry = search.queue.dequeueLong();
+            int u = (int) entry;
+            if (!search.settled.add(u)) {
+                continue;
+            }
+            if (u == target) {
+                search.reached = true;
+                break;
+            }
+
+            double base = search.distances.get(u);
+            LazyIntIterator successors = this.graph.successors(u);
+            int arc = (int) this.arcs.getLong(u);
+            for (int v; (v = successors.nextInt()) != -1; arc++) {
+                double candidate = base + this.weights.get(arc);
+                if (!search.settled.contains(v) && candidate < search.distances.get(v)) {
+                    search.reach(v, candidate, u);
+                }
+            }
+        }
+        return search;
+    }
+
+    /**
+     * @param name vertex name
+     * @return the vertex id, or -1 if there is no such vertex
+     */
+    public int indexOf(String name) {
+        return (int) this.ids.getLong(name);
+    }
+
+    public String name(int id) {
+        return this.names.get(id).toString();
+    }
+
+    /**
+     * @param a a vertex id
+     * @param b a road neighbour of A
+     * @return the weight of the road between A and B
+     */
+    public double weight(int a, int b) {
+        LazyIntIterator successors = this.graph.successors(a);
+        long arc = this.arcs.getLong(a);
+        for (int successor; (successor = successors.nextInt()) != -1; arc++) {
+            if (successor == b) {
+                return this.weights.get((int) arc);
+            }
+        }
+        throw new IllegalArgumentException("no road between " + this.name(a) + " and " + this.name(b));
+    }
+
+    public int vertexCount() {
+        return this.graph.numNodes();
+    }
+
+    public long arcCount() {
+        return this.graph.numArcs();
+    }
+
+    /**
+     * State of one search. Queue entries pack the distance, as float bits, above the vertex, so that a plain long
+     * heap orders them by distance; stale entries are skipped when they come out. Ordering by float distances is as
+     * precise as the stored weights.
+     */
+    private static final class Search {
+        private final int target;
+        private final Int2DoubleOpenHashMap distances = new Int2DoubleOpenHashMap();
+        private final Int2IntOpenHashMap parents = new Int2IntOpenHashMap();
+        private final IntOpenHashSet settled = new IntOpenHashSet();
+        private final LongHeapPriorityQueue queue = new LongHeapPriorityQueue();
+        private boolean reached;
+
+        private Search(int target) {
+            this.target = target;
+            this.distances.defaultReturnValue(Double.POSITIVE_INFINITY);
+        }
+
+        private void reach(int vertex, double distance, int parent) {
+            this.distances.put(vertex, distance);
+            this.parents.put(vertex, parent);
+            this.queue.enqueue((long) Float.floatToIntBits((float) distance) << 32 | vertex);
+        }
+    }
+
+    /**
+     * The road arcs of one vertex, sorted by target and without parallel roads or loops
+     */
+    private static final class RoadArcs {
+        private final GraphSnapshot snapshot;
+        private final int[] idOf;
+        private final int[] vertexOf;
+        private int[] targets = new int[16];
+        private float[] weights = new float[16];
+
+        private RoadArcs(GraphSnapshot snapshot, int[] idOf, int[] vertexOf) {
+            this.snapshot = snapshot;
+            this.idOf = idOf;
+            this.vertexOf = vertexOf;
+        }
+
+        /**
+         * @return the number of arcs of the vertex, now in the first slots of the arrays
+         */
+        private int load(int id) {
+            int vertex = this.vertexOf[id];
+            int count = 0;
+            for (int arc = this.snapshot.firstArc(vertex), end = this.snapshot.endArc(vertex); arc < end; arc++) {
+                int edge = this.snapshot.arcEdge(arc);
+                int target = this.idOf[this.snapshot.arcTarget(arc)];
+                if (this.snapshot.edgeKind(edge) != EdgeKind.ROAD.id() || target == id) {
+                    continue;
+                }
+                if (count == this.targets.length) {
+                    this.targets = IntArrays.grow(this.targets, count + 1);
+                    this.weights = FloatArrays.grow(this.weights, count + 1);
+                }
+                this.targets[count] = target;
+                this.weights[count] = (float) this.snapshot.edgeWeight(edge);
+                count++;
+            }
+
+            int[] targetArray = this.targets;
+            float[] weightArray = this.weights;
+            Arrays.quickSort(0, count, (i, j) -> Integer.compare(targetArray[i], targetArray[j]), (i, j) -> {
+                int target = targetArray[i];
+                targetArray[i] = targetArray[j];
+                targetArray[j] = target;
+                float weight = weightArray[i];
+                weightArray[i] = weightArray[j];
+                weightArray[j] = weight;
+            });
+
+            int kept = 0;
+            for (int arc = 0; arc < count; arc++) {
+                if (kept > 0 && targetArray[kept - 1] == targetArray[arc]) {
+                    weightArray[kept - 1] = Math.min(weightArray[kept - 1], weightArray[arc]);
+                } else {
+                    targetArray[kept] = targetArray[arc];
+                    weightArray[kept] = weightArray[arc];
+                    kept++;
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * Builds the road network files of a snapshot.
+     * <p>
+     * Usage: CompressedRoadNetwork [snapshot file] [base name]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CompressedRoadNetwork [snapshot file] [base name]");
+            return;
+        }
+        long start = System.nanoTime();
+        CompressedRoadNetwork.build(GraphSnapshot.open(args[0]), args[1]);
+        CompressedRoadNetwork network = CompressedRoadNetwork.load(args[1]);
+        System.out.printf("%s: %d vertices, %d road arcs, built in %.02f ms%n", args[1], network.vertexCount(), network.arcCount(), (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,255 @@
+package graph.routing;
+
+import graph.WeightOverlay;
+import graph.edge.EdgeKind;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-to-point bidirectional Dijkstra over a {@link CsrGraph}.
+ * <p>
+ * One search grows from the source and one from the target, always advancing the smaller frontier, and the query
+ * stops as soon as the two smallest keys add up to at least the best meeting distance found so far. Since the
+ * graph is undirected both searches scan the same arcs. State is reused across queries in the same way as
+ * {@link CsrDijkstra}.
+ * <p>
+ * Instances are not thread safe, borrow one for each query through {@link CsrGraph#borrowBidirectionalSearch()}.
+ */
+public class CsrBidirectionalDijkstra {
+
+    private final CsrGraph graph;
+
+    private final Frontier forward;
+
+    private final Frontier backward;
+
+    private int epoch;
+
+    private int meeting;
+
+    private double best;
+
+    CsrBidirectionalDijkstra(CsrGraph graph) {
+        this.graph = graph;
+        this.forward = new Frontier(graph.vertexCount());
+        this.backward = new Frontier(graph.vertexCount());
+    }
+
+    /**
+     * Runs a query from the source to the target.
+     *
+     * @param source   source vertex id
+     * @param target   target vertex id
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @param overlay  weight changes to apply on top of the graph weights, may be null
+     * @return the distance to the target, infinity if it cannot be reached
+     */
+    public double run(int source, int target, int modeMask, WeightOverlay overlay) {
+        this.newEpoch();
+        WeightOverlay changes = overlay != null && overlay.hasChanges() ? overlay : null;
+
+        this.forward.reach(source, 0, -1, -1, this.epoch);
+        this.backward.reach(target, 0, -1, -1, this.epoch);
+        this.best = source == target ? 0 : Double.POSITIVE_INFINITY;
+        this.meeting = source == target ? source : -1;
+
+        while (this.forward.heapSize > 0 && this.backward.heapSize > 0) {
+            if (this.forward.topKey() + this.backward.topKey() >= this.best) {
+                break;
+            }
+            if (this.forward.heapSize <= this.backward.heapSize) {
+                this.step(this.forward, this.backward, modeMask, changes);
+            } else {
+                this.step(this.backward, this.forward, modeMask, changes);
+            }
+        }
+        return this.best;
+    }
+
+    /**
+     * Settles the closest vertex of one frontier and relaxes its arcs, recording meetings with the other one.
+     */
+    private void step(Frontier frontier, Frontier other, int modeMask, WeightOverlay changes) {
+        int u = frontier.pop();
+        double base = frontier.distances[u];
+
+        for (int arc = this.graph.firstArc(u), end = this.graph.endArc(u); arc < end; arc++) {
+            if ((modeMask & (1 << this.graph.kind(arc))) == 0) {
+                continue;
+            }
+
+            double weight = this.graph.weight(arc);
+            if (changes != null) {
+                weight += changes.getDelta(this.graph.edge(arc));
+            }
+
+            int v = this.graph.target(arc);
+            double candidate = base + weight;
+            if (frontier.stamps[v] != this.epoch) {
+                frontier.reach(v, candidate, arc, u, this.epoch);
+            } else if (frontier.heapPositions[v] >= 0 && candidate < frontier.distances[v]) {
+                frontier.distances[v] = candidate;
+                frontier.parentArcs[v] = arc;
+                frontier.parents[v] = u;
+                frontier.siftUp(frontier.heapPositions[v]);
+            } else {
+                continue;
+            }
+
+            if (other.stamps[v] == this.epoch && candidate + other.distances[v] < this.best) {
+                this.best = candidate + other.distances[v];
+                this.meeting = v;
+            }
+        }
+    }
+
+    /**
+     * @return how many vertices the last query settled, in both directions
+     */
+    public int getSettled() {
+        return this.forward.settled + this.backward.settled;
+    }
+
+    /**
+     * Builds the path found by the last query.
+     *
+     * @param owner graph the path belongs to, used by callers to read weights
+     * @return the path, or null if the target was not reached
+     */
+    public GraphPath<Point, DefaultWeightedEdge> path(Graph<Point, DefaultWeightedEdge> owner) {
+        if (this.meeting < 0) {
+            return null;
+        }
+
+        List<Point> vertexList = new ArrayList<>();
+        List<DefaultWeightedEdge> edgeList = new ArrayList<>();
+        int vertex = this.meeting;
+        vertexList.add(this.graph.vertex(vertex));
+        while (this.forward.parentArcs[vertex] >= 0) {
+            edgeList.add(this.graph.edge(this.forward.parentArcs[vertex]));
+            vertex = this.forward.parents[vertex];
+            vertexList.add(this.graph.vertex(vertex));
+        }
+        Collections.reverse(vertexList);
+        Collections.reverse(edgeList);
+
+        vertex = this.meeting;
+        while (this.backward.parentArcs[vertex] >= 0) {
+            edgeList.add(this.graph.edge(this.backward.parentArcs[vertex]));
+            vertex = this.backward.parents[vertex];
+            vertexList.add(this.graph.vertex(vertex));
+        }
+
+        return new GraphWalk<>(owner, vertexList.get(0), vertexList.get(vertexList.size() - 1), vertexList, edgeList, this.best);
+    }
+
+    private void newEpoch() {
+        this.epoch++;
+        if (this.epoch == 0) {
+            // wrapped around, old stamps could collide with the new epoch
+            Arrays.fill(this.forward.stamps, 0);
+            Arrays.fill(this.backward.stamps, 0);
+            this.epoch = 1;
+        }
+        this.forward.heapSize = 0;
+        this.forward.settled = 0;
+        this.backward.heapSize = 0;
+        this.backward.settled = 0;
+    }
+
+    /**
+     * Search state of one direction, an indexed binary heap keyed by distance
+     */
+    private static final class Frontier {
+        private final double[] distances;
+        private final int[] parentArcs;
+        private final int[] parents;
+        private final int[] stamps;
+        private final int[] heapPositions;
+        private final int[] heap;
+        private int heapSize;
+        private int settled;
+
+        private Frontier(int n) {
+            this.distances = new double[n];
+            this.parentArcs = new int[n];
+            this.parents = new int[n];
+            this.stamps = new int[n];
+            this.heapPositions = new int[n];
+            this.heap = new int[n];
+        }
+
+        private double topKey() {
+            return this.distances[this.heap[0]];
+        }
+
+        private void reach(int vertex, double distance, int arc, int parent, int epoch) {
+            this.stamps[vertex] = epoch;
+            this.distances[vertex] = distance;
+            this.parentArcs[vertex] = arc;
+            this.parents[vertex] = parent;
+            this.heap[this.heapSize] = vertex;
+            this.heapPositions[vertex] = this.heapSize;
+            this.siftUp(this.heapSize++);
+        }
+
+        private int pop() {
+            int top = this.heap[0];
+            this.heapPositions[top] = -1;
+            this.settled++;
+            int last = this.heap[--this.heapSize];
+            if (this.heapSize > 0) {
+                this.heap[0] = last;
+                this.heapPositions[last] = 0;
+                this.siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int position) {
+            int vertex = this.heap[position];
+            double key = this.distances[vertex];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                int parentVertex = this.heap[parent];
+                if (this.distances[parentVertex] <= key) {
+                    break;
+                }
+                this.heap[position] = parentVertex;
+                this.heapPositions[parentVertex] = position;
+                position = parent;
+            }
+            this.heap[position] = vertex;
+            this.heapPositions[vertex] = position;
+        }
+
+        private void siftDown(int position) {
+            int vertex = this.heap[position];
+            double key = this.distances[vertex];
+            int half = this.heapSize >>> 1;
+            while (position < half) {
+                int child = 2 * position + 1;
+                int right = child + 1;
+                if (right < this.heapSize && this.distances[this.heap[right]] < this.distances[this.heap[child]]) {
+                    child = right;
+                }
+                if (key <= this.distances[this.heap[child]]) {
+                    break;
+                }
+                this.heap[position] = this.heap[child];
+                this.heapPositions[this.heap[position]] = position;
+                position = child;
+            }
+            this.heap[position] = vertex;
+            this.heapPositions[vertex] = position;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package graph.routing;
+
+import graph.WeightOverlay;
+import graph.edge.EdgeKind;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-to-point Dijkstra over a {@link CsrGraph}, optionally goal-directed with {@link Landmarks} (ALT).
+ * <p>
+ * Search state lives in arrays that are sized once and reused: a vertex only holds a valid distance when its stamp
+ * matches the current epoch, so starting a new query is just incrementing the epoch. The priority queue is
+ * pluggable, see {@link RoutingSettings.QueueKind}; with the default binary heap queries allocate nothing until a
+ * path is built from the result.
+ * <p>
+ * Instances are not thread safe, borrow one for each query through {@link CsrGraph#borrowSearch()}.
+ */
+public class CsrDijkstra {
+
+    private final CsrGraph graph;
+
+    private final double[] distances;
+
+    /**
+     * Heap keys: the distance plus the estimate of what is left to the target, just the distance without landmarks
+     */
+    private final double[] keys;
+
+    private final int[] parentArcs;
+
+    private final int[] parents;
+
+    private final int[] stamps;
+
+    /**
+     * Vertices settled by the current query have the current epoch
+     */
+    private final int[] settledStamps;
+
+    private final RoutingSettings.QueueKind queueKind;
+
+    private final VertexQueue queue;
+
+    private int epoch;
+
+    /**
+     * Stamps of the vertices a one-to-many query waits for, allocated by the first such query
+     */
+    private int[] targetStamps;
+
+    /**
+     * Targets of the current one-to-many query that are not settled yet
+     */
+    private int remainingTargets;
+
+    /**
+     * Vertices settled by the last query
+     */
+    private int settled;
+
+    /**
+     * Barrier vertices settled by the last barrier query, in settling order
+     */
+    private int[] settledBarriers = new int[16];
+
+    private int barrierCount;
+
+    CsrDijkstra(CsrGraph graph, RoutingSettings.QueueKind queueKind) {
+        this.graph = graph;
+        this.queueKind = queueKind;
+
+        int n = graph.vertexCount();
+        this.distances = new double[n];
+        this.keys = new double[n];
+        this.parentArcs = new int[n];
+        this.parents = new int[n];
+        this.stamps = new int[n];
+        this.settledStamps = new int[n];
+        this.queue = VertexQueue.of(queueKind, n);
+        this.epoch = 0;
+    }
+
+    /**
+     * Runs a query that stops as soon as the target is settled.
+     *
+     * @param source   source vertex id
+     * @param target   target vertex id, or -1 to build the whole shortest path tree
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @param overlay  weight changes to apply on top of the graph weights, may be null
+     * @return the distance to the target, infinity if it cannot be reached, or zero when building the whole tree
+     */
+    public double run(int source, int target, int modeMask, WeightOverlay overlay) {
+        return this.run(source, target, modeMask, overlay, null);
+    }
+
+    /**
+     * Runs a query that stops as soon as the target is settled, using landmark distances as lower bounds of the
+     * distance left to the target (A*). The bounds only hold when weights are not lower than the ones the landmarks
+     * were computed with, so landmarks are ignored when building the whole tree or when the overlay lowers a weight.
+     *
+     * @param source    source vertex id
+     * @param target    target vertex id, or -1 to build the whole shortest path tree
+     * @param modeMask  edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @param overlay   weight changes to apply on top of the graph weights, may be null
+     * @param landmarks landmarks of the unrestricted graph these arcs come from, may be null
+     * @return the distance to the target, infinity if it cannot be reached, or zero when building the whole tree
+     */
+    public double run(int source, int target, int modeMask, WeightOverlay overlay, Landmarks landmarks) {
+        this.newEpoch();
+        WeightOverlay changes = overlay != null && overlay.hasChanges() ? overlay : null;
+        Landmarks bounds = target < 0 || (changes != null && changes.hasNegativeChanges()) ? null : landmarks;
+
+        this.reach(source, 0, bounds == null ? 0 : bounds.estimate(source, target), -1, -1);
+        return this.expand(target, modeMask, changes, bounds, null, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Runs a query that settles barrier vertices without scanning their arcs, except for the source, so that the
+     * search does not grow past them. It stops as soon as the target is settled or once the next vertex is farther
+     * than a radius. The barriers it settled are listed by {@link #getBarrierCount()} and {@link #barrier(int)}.
+     *
+     * @param source   source vertex id
+     * @param target   target vertex id, or -1 to only stop at the radius
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @param barriers barrier flags indexed by vertex id
+     * @param radius   largest distance to settle
+     * @return the distance to the target, infinity if it was not reached, or zero without a target
+     */
+    public double run(int source, int target, int modeMask, boolean[] barriers, double radius) {
+        this.newEpoch();
+        this.reach(source, 0, 0, -1, -1);
+        return this.expand(target, modeMask, null, null, barriers, radius);
+    }
+
+    /**
+     * Runs a query that stops as soon as every target is settled, sharing one search between all of them. Read the
+     * distances with {@link #distance(int)} afterwards.
+     *
+     * @param source   source vertex id
+     * @param targets  target vertex ids, repeated ids are fine
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @param overlay  weight changes to apply on top of the graph weights, may be null
+     */
+    public void run(int source, int[] targets, int modeMask, WeightOverlay overlay) {
+        this.newEpoch();
+        WeightOverlay changes = overlay != null && overlay.hasChanges() ? overlay : null;
+
+        if (this.targetStamps == null) {
+            this.targetStamps = new int[this.graph.vertexCount()];
+        }
+        for (int target : targets) {
+            if (this.targetStamps[target] != this.epoch) {
+                this.targetStamps[target] = this.epoch;
+                this.remainingTargets++;
+            }
+        }
+        if (this.remainingTargets == 0) {
+            return;
+        }
+
+        this.reach(source, 0, 0, -1, -1);
+        this.expand(-1, modeMask, changes, null, null, Double.POSITIVE_INFINITY);
+    }
+
+    private double expand(int target, int modeMask, WeightOverlay changes, Landmarks bounds, boolean[] barriers, double radius) {
+        while (!this.queue.isEmpty()) {
+            int u = this.queue.deleteMin();
+            if (this.distances[u] > radius) {
+                break;
+            }
+            this.settledStamps[u] = this.epoch;
+            this.settled++;
+            if (u == target) {
+                return this.distances[u];
+            }
+            if (this.remainingTargets > 0 && this.targetStamps[u] == this.epoch && --this.remainingTargets == 0) {
+                return 0;
+            }
+            if (barriers != null && barriers[u]) {
+                if (this.barrierCount == this.settledBarriers.length) {
+                    this.settledBarriers = Arrays.copyOf(this.settledBarriers, this.barrierCount * 2);
+                }
+                this.settledBarriers[this.barrierCount++] = u;
+                if (this.parentArcs[u] >= 0) {
+                    continue;
+                }
+            }
+
+            double base = this.distances[u];
+            for (int arc = this.graph.firstArc(u), end = this.graph.endArc(u); arc < end; arc++) {
+                if ((modeMask & (1 << this.graph.kind(arc))) == 0) {
+                    continue;
+                }
+
+                double weight = this.graph.weight(arc);
+                if (changes != null) {
+                    weight += changes.getDelta(this.graph.edge(arc));
+                }
+
+                int v = this.graph.target(arc);
+                double candidate = base + weight;
+                if (this.stamps[v] != this.epoch) {
+                    this.reach(v, candidate, bounds == null ? candidate : candidate + bounds.estimate(v, target), arc, u);
+                } else if (this.settledStamps[v] != this.epoch && candidate < this.distances[v]) {
+                    this.keys[v] += candidate - this.distances[v];
+                    this.distances[v] = candidate;
+                    this.parentArcs[v] = arc;
+                    this.parents[v] = u;
+                    this.queue.decreaseKey(v, this.keys[v]);
+                }
+            }
+        }
+
+        return target < 0 ? 0 : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param vertex vertex id
+     * @return the distance found by the last query, infinity if it was not reached. It is only final for vertices
+     * the query settled
+     */
+    public double distance(int vertex) {
+        return this.stamps[vertex] == this.epoch ? this.distances[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param vertex vertex id
+     * @return the arc used to reach the vertex in the last query, -1 for the source or unreached vertices
+     */
+    public int parentArc(int vertex) {
+        return this.stamps[vertex] == this.epoch ? this.parentArcs[vertex] : -1;
+    }
+
+    /**
+     * @param vertex vertex id
+     * @return the vertex the last query reached this one from, -1 for the source or unreached vertices
+     */
+    public int parent(int vertex) {
+        return this.stamps[vertex] == this.epoch ? this.parents[vertex] : -1;
+    }
+
+    /**
+     * @return how many barrier vertices the last barrier query settled
+     */
+    public int getBarrierCount() {
+        return this.barrierCount;
+    }
+
+    /**
+     * @param index position in settling order, below {@link #getBarrierCount()}
+     * @return a barrier vertex settled by the last barrier query
+     */
+    public int barrier(int index) {
+        return this.settledBarriers[index];
+    }
+
+    /**
+     * @return the kind of priority queue of this search
+     */
+    public RoutingSettings.QueueKind getQueueKind() {
+        return this.queueKind;
+    }
+
+    /**
+     * @return how many vertices the last query settled
+     */
+    public int getSettled() {
+        return this.settled;
+    }
+
+    /**
+     * Builds the path to a vertex reached by the last query.
+     *
+     * @param owner  graph the path belongs to, used by callers to read weights
+     * @param target target vertex id
+     * @return the path, or null if the target was not reached
+     */
+    public GraphPath<Point, DefaultWeightedEdge> path(Graph<Point, DefaultWeightedEdge> owner, int target) {
+        if (this.stamps[target] != this.epoch) {
+            return null;
+        }
+
+        List<Point> vertexList = new ArrayList<>();
+        List<DefaultWeightedEdge> edgeList = new ArrayList<>();
+        int vertex = target;
+        vertexList.add(this.graph.vertex(vertex));
+        while (this.parentArcs[vertex] >= 0) {
+            edgeList.add(this.graph.edge(this.parentArcs[vertex]));
+            vertex = this.parents[vertex];
+            vertexList.add(this.graph.vertex(vertex));
+        }
+        Collections.reverse(vertexList);
+        Collections.reverse(edgeList);
+
+        return new GraphWalk<>(owner, vertexList.get(0), vertexList.get(vertexList.size() - 1), vertexList, edgeList, this.distances[target]);
+    }
+
+    private void newEpoch() {
+        this.epoch++;
+        if (this.epoch == 0) {
+            // wrapped around, old stamps could collide with the new epoch
+            Arrays.fill(this.stamps, 0);
+            Arrays.fill(this.settledStamps, 0);
+            if (this.targetStamps != null) {
+                Arrays.fill(this.targetStamps, 0);
+            }
+            this.epoch = 1;
+        }
+        this.queue.clear();
+        this.settled = 0;
+        this.remainingTargets = 0;
+        this.barrierCount = 0;
+    }
+
+    private void reach(int vertex, double distance, double key, int arc, int parent) {
+        this.stamps[vertex] = this.epoch;
+        this.distances[vertex] = distance;
+        this.keys[vertex] = key;
+        this.parentArcs[vertex] = arc;
+        this.parents[vertex] = parent;
+        this.queue.insert(vertex, key);
+    }
+}
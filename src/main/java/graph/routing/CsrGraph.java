@@ -0,0 +1,459 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+import graph.io.GraphSnapshot;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compressed sparse row snapshot of an undirected city graph, used by the routing code.
+ * <p>
+ * Vertices are interned to ints. The arcs leaving vertex {@code v} are {@code offsets[v]} to
+ * {@code offsets[v + 1] - 1}, and every arc has a target, a weight, an edge kind and the original edge in parallel
+ * arrays. Every undirected edge becomes two arcs.
+ * <p>
+ * The snapshot is immutable, weights are the ones the graph had when it was built.
+ */
+public class CsrGraph {
+
+    /**
+     * Multiplier of the weights of the kinds a route cannot avoid, see {@link #penalizedOutside}. One more penalized
+     * edge outweighs any detour over the allowed kinds that costs less than a million times the lightest penalized
+     * edge.
+     */
+    public static final double FORBIDDEN_PENALTY = 1e6;
+
+    private final Point[] vertices;
+
+    private final Map<String, Integer> indexByName;
+
+    /**
+     * Vertex index of every point id, -1 for points that are not in the graph
+     */
+    private final int[] indexById;
+
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    private final double[] weights;
+
+    private final byte[] kinds;
+
+    private final DefaultWeightedEdge[] edges;
+
+    private final SearchPool<CsrDijkstra> searches = new SearchPool<>(() -> new CsrDijkstra(this, RoutingSettings.getQueueKind()));
+
+    private final SearchPool<CsrBidirectionalDijkstra> bidirectionalSearches = new SearchPool<>(() -> new CsrBidirectionalDijkstra(this));
+
+    /**
+     * Mode-filtered views of this graph, indexed by mode mask
+     */
+    private final CsrGraph[] restrictions = new CsrGraph[EdgeKind.ALL + 1];
+
+    /**
+     * Views penalizing the kinds outside a mode mask, built on first use, see {@link #penalizedOutside}
+     */
+    private final CsrGraph[] penalized = new CsrGraph[EdgeKind.ALL + 1];
+
+    private volatile Landmarks landmarks;
+
+    private volatile SubwayRaptor raptor;
+
+    private volatile RoadDistanceOracle roadDistanceOracle;
+
+    CsrGraph(Point[] vertices, Map<String, Integer> indexByName, int[] indexById, int[] offsets, int[] targets, double[] weights, byte[] kinds, DefaultWeightedEdge[] edges) {
+        this.vertices = vertices;
+        this.indexByName = indexByName;
+        this.indexById = indexById;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.kinds = kinds;
+        this.edges = edges;
+    }
+
+    /**
+     * Builds a snapshot of a graph with its current weights.
+     *
+     * @param graph graph to snapshot
+     * @return CSR snapshot
+     */
+    public static CsrGraph of(Graph<Point, DefaultWeightedEdge> graph) {
+        int n = graph.vertexSet().size();
+        Point[] vertices = graph.vertexSet().toArray(new Point[0]);
+        Map<String, Integer> indexByName = new HashMap<>(n * 2);
+        int idBound = 0;
+        for (int i = 0; i < n; i++) {
+            indexByName.put(vertices[i].getName(), i);
+            idBound = Math.max(idBound, vertices[i].getId() + 1);
+        }
+        int[] indexById = new int[idBound];
+        Arrays.fill(indexById, -1);
+        for (int i = 0; i < n; i++) {
+            indexById[vertices[i].getId()] = i;
+        }
+
+        // count degrees first, then fill every vertex slot
+        int[] offsets = new int[n + 1];
+        for (DefaultWeightedEdge edge : graph.edgeSet()) {
+            offsets[indexById[graph.getEdgeSource(edge).getId()] + 1]++;
+            offsets[indexById[graph.getEdgeTarget(edge).getId()] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int arcs = offsets[n];
+        int[] targets = new int[arcs];
+        double[] weights = new double[arcs];
+        byte[] kinds = new byte[arcs];
+        DefaultWeightedEdge[] edges = new DefaultWeightedEdge[arcs];
+        int[] next = new int[n];
+        System.arraycopy(offsets, 0, next, 0, n);
+
+        for (DefaultWeightedEdge edge : graph.edgeSet()) {
+            int u = indexById[graph.getEdgeSource(edge).getId()];
+            int v = indexById[graph.getEdgeTarget(edge).getId()];
+            double weight = graph.getEdgeWeight(edge);
+            byte kind = EdgeKind.of(edge).id();
+
+            int arc = next[u]++;
+            targets[arc] = v;
+            weights[arc] = weight;
+            kinds[arc] = kind;
+            edges[arc] = edge;
+
+            arc = next[v]++;
+            targets[arc] = u;
+            weights[arc] = weight;
+            kinds[arc] = kind;
+            edges[arc] = edge;
+        }
+
+        return new CsrGraph(vertices, indexByName, indexById, offsets, targets, weights, kinds, edges);
+    }
+
+    /**
+     * Builds a snapshot straight from the arrays of a mapped {@link GraphSnapshot}, without any jgrapht graph.
+     *
+     * @param snapshot mapped graph file
+     * @param vertices the point of every vertex of the file, see {@link GraphSnapshot#points()}
+     * @param edges    the edge object of every edge of the file, see {@link graph.io.SnapshotGraph#edges()}
+     * @return CSR snapshot, with the vertex and arc order of the file
+     */
+    public static CsrGraph of(GraphSnapshot snapshot, Point[] vertices, DefaultWeightedEdge[] edges) {
+        int n = snapshot.vertexCount();
+        Map<String, Integer> indexByName = new HashMap<>(n * 2);
+        int idBound = 0;
+        for (int i = 0; i < n; i++) {
+            indexByName.put(vertices[i].getName(), i);
+            idBound = Math.max(idBound, vertices[i].getId() + 1);
+        }
+        int[] indexById = new int[idBound];
+        Arrays.fill(indexById, -1);
+        for (int i = 0; i < n; i++) {
+            indexById[vertices[i].getId()] = i;
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v <= n; v++) {
+            // the file keeps the n + 1 offsets too
+            offsets[v] = snapshot.firstArc(v);
+        }
+
+        int arcs = offsets[n];
+        int[] targets = new int[arcs];
+        double[] weights = new double[arcs];
+        byte[] kinds = new byte[arcs];
+        DefaultWeightedEdge[] arcEdges = new DefaultWeightedEdge[arcs];
+        for (int arc = 0; arc < arcs; arc++) {
+            int edge = snapshot.arcEdge(arc);
+            targets[arc] = snapshot.arcTarget(arc);
+            weights[arc] = snapshot.edgeWeight(edge);
+            kinds[arc] = snapshot.edgeKind(edge);
+            arcEdges[arc] = edges[edge];
+        }
+
+        return new CsrGraph(vertices, indexByName, indexById, offsets, targets, weights, kinds, arcEdges);
+    }
+
+    /**
+     * Builds a snapshot with the same topology and the weights of another graph over the same edges, sharing every
+     * array except the weights.
+     *
+     * @param graph graph over the same edges, for instance a weighted view
+     * @return CSR snapshot with the weights of the given graph
+     */
+    public CsrGraph withWeights(Graph<Point, DefaultWeightedEdge> graph) {
+        double[] newWeights = new double[this.weights.length];
+        for (int arc = 0; arc < newWeights.length; arc++) {
+            newWeights[arc] = graph.getEdgeWeight(this.edges[arc]);
+        }
+        return new CsrGraph(this.vertices, this.indexByName, this.indexById, this.offsets, this.targets, newWeights, this.kinds, this.edges);
+    }
+
+    /**
+     * Builds a snapshot with the same topology and the weights of a profile applied to the weights of this one,
+     * sharing every array except the weights.
+     *
+     * @param profile weight profile, only its weights are used
+     * @return CSR snapshot with the profile weights
+     */
+    public CsrGraph withWeights(WeightProfile profile) {
+        double[] newWeights = new double[this.weights.length];
+        for (int arc = 0; arc < newWeights.length; arc++) {
+            newWeights[arc] = profile.weight(EdgeKind.fromId(this.kinds[arc]), this.weights[arc]);
+        }
+        return new CsrGraph(this.vertices, this.indexByName, this.indexById, this.offsets, this.targets, newWeights, this.kinds, this.edges);
+    }
+
+    /**
+     * Gets the view of this graph with only some edge kinds, for instance the road network. Views are built once and
+     * cached, they keep the same vertex ids and only drop arcs, so searches on them scan no unusable arcs.
+     *
+     * @param modeMask edge kinds to keep, see {@link EdgeKind#mask()}
+     * @return immutable mode-filtered view, this graph itself if every kind is kept
+     */
+    public CsrGraph restrictedTo(int modeMask) {
+        if (modeMask == EdgeKind.ALL) {
+            return this;
+        }
+
+        // every field of a view is final, so a view seen without locking is fully built
+        CsrGraph view = this.restrictions[modeMask];
+        return view != null ? view : this.buildRestriction(modeMask);
+    }
+
+    private synchronized CsrGraph buildRestriction(int modeMask) {
+        CsrGraph view = this.restrictions[modeMask];
+        if (view == null) {
+            int n = this.vertexCount();
+            int[] newOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                int kept = 0;
+                for (int arc = this.offsets[v]; arc < this.offsets[v + 1]; arc++) {
+                    if ((modeMask & (1 << this.kinds[arc])) != 0) kept++;
+                }
+                newOffsets[v + 1] = newOffsets[v] + kept;
+            }
+
+            int arcs = newOffsets[n];
+            int[] newTargets = new int[arcs];
+            double[] newWeights = new double[arcs];
+            byte[] newKinds = new byte[arcs];
+            DefaultWeightedEdge[] newEdges = new DefaultWeightedEdge[arcs];
+            int next = 0;
+            for (int arc = 0; arc < this.targets.length; arc++) {
+                if ((modeMask & (1 << this.kinds[arc])) != 0) {
+                    newTargets[next] = this.targets[arc];
+                    newWeights[next] = this.weights[arc];
+                    newKinds[next] = this.kinds[arc];
+                    newEdges[next] = this.edges[arc];
+                    next++;
+                }
+            }
+
+            view = new CsrGraph(this.vertices, this.indexByName, this.indexById, newOffsets, newTargets, newWeights, newKinds, newEdges);
+            this.restrictions[modeMask] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Gets the view of this graph where the edge kinds outside a mode mask cost {@link #FORBIDDEN_PENALTY} times their
+     * weight, for routing when a target cannot be reached with the kinds of the mask alone. Shortest paths on it use
+     * as few edges of the other kinds as they can, and only then the cheapest ones. Views are built once and cached.
+     *
+     * @param modeMask edge kinds that keep their weights, see {@link EdgeKind#mask()}
+     * @return immutable penalized view, this graph itself if every kind is kept
+     */
+    public CsrGraph penalizedOutside(int modeMask) {
+        if (modeMask == EdgeKind.ALL) {
+            return this;
+        }
+
+        CsrGraph view = this.penalized[modeMask];
+        return view != null ? view : this.buildPenalized(modeMask);
+    }
+
+    private synchronized CsrGraph buildPenalized(int modeMask) {
+        CsrGraph view = this.penalized[modeMask];
+        if (view == null) {
+            WeightProfile penalty = WeightProfile.DEFAULT;
+            for (EdgeKind kind : EdgeKind.values()) {
+                if ((modeMask & kind.mask()) == 0) {
+                    penalty = penalty.withMultiplier(kind, FORBIDDEN_PENALTY);
+                }
+            }
+            view = this.withWeights(penalty);
+            this.penalized[modeMask] = view;
+        }
+        return view;
+    }
+
+    /**
+     * @return the landmarks of this graph, computed on first use
+     */
+    Landmarks landmarks() {
+        Landmarks result = this.landmarks;
+        if (result == null) {
+            synchronized (this) {
+                result = this.landmarks;
+                if (result == null) {
+                    result = new Landmarks(this, Landmarks.DEFAULT_COUNT);
+                    this.landmarks = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the road distance oracle of this graph, built on first use
+     */
+    RoadDistanceOracle roadDistanceOracle() {
+        RoadDistanceOracle result = this.roadDistanceOracle;
+        if (result == null) {
+            synchronized (this) {
+                result = this.roadDistanceOracle;
+                if (result == null) {
+                    result = new RoadDistanceOracle(this, this.vertexCount() <= RoadDistanceOracle.ALL_PAIRS_LIMIT, RoadDistanceOracle.DEFAULT_CACHE_BYTES);
+                    this.roadDistanceOracle = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the RAPTOR engine of this graph, built on first use. Build it on the mode-filtered view a query uses,
+     * since its lines and transfers depend on the kinds it may use
+     */
+    public SubwayRaptor raptor() {
+        SubwayRaptor result = this.raptor;
+        if (result == null) {
+            synchronized (this) {
+                result = this.raptor;
+                if (result == null) {
+                    result = new SubwayRaptor(this);
+                    this.raptor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Borrows a Dijkstra search bound to this graph from a small pool, with the queue selected in
+     * {@link RoutingSettings}. Give it back with {@link #returnSearch(CsrDijkstra)} once its results were read.
+     *
+     * @return a search no other thread uses until it is given back
+     */
+    public CsrDijkstra borrowSearch() {
+        CsrDijkstra search = this.searches.borrow();
+        RoutingSettings.QueueKind kind = RoutingSettings.getQueueKind();
+        // a search with another queue is dropped, the pool fills up with the new kind
+        return search.getQueueKind() == kind ? search : new CsrDijkstra(this, kind);
+    }
+
+    /**
+     * @param search a search from {@link #borrowSearch()} of this graph
+     */
+    public void returnSearch(CsrDijkstra search) {
+        this.searches.giveBack(search);
+    }
+
+    /**
+     * @param kind priority queue of the search
+     * @return a new Dijkstra search bound to this graph, not shared with anyone
+     */
+    public CsrDijkstra newSearch(RoutingSettings.QueueKind kind) {
+        return new CsrDijkstra(this, kind);
+    }
+
+    /**
+     * Borrows a bidirectional search bound to this graph from a small pool. Give it back with
+     * {@link #returnBidirectionalSearch(CsrBidirectionalDijkstra)} once its results were read.
+     *
+     * @return a search no other thread uses until it is given back
+     */
+    public CsrBidirectionalDijkstra borrowBidirectionalSearch() {
+        return this.bidirectionalSearches.borrow();
+    }
+
+    /**
+     * @param search a search from {@link #borrowBidirectionalSearch()} of this graph
+     */
+    public void returnBidirectionalSearch(CsrBidirectionalDijkstra search) {
+        this.bidirectionalSearches.giveBack(search);
+    }
+
+    public int vertexCount() {
+        return this.vertices.length;
+    }
+
+    public int arcCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * @param name vertex name
+     * @return the vertex id, or -1 if there is no such vertex
+     */
+    public int indexOf(String name) {
+        Integer index = this.indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param point a point
+     * @return the vertex id of the point, or -1 if it is not in the graph
+     */
+    public int indexOf(Point point) {
+        int id = point.getId();
+        return id < this.indexById.length ? this.indexById[id] : -1;
+    }
+
+    public Point vertex(int index) {
+        return this.vertices[index];
+    }
+
+    public int firstArc(int vertex) {
+        return this.offsets[vertex];
+    }
+
+    public int endArc(int vertex) {
+        return this.offsets[vertex + 1];
+    }
+
+    public int target(int arc) {
+        return this.targets[arc];
+    }
+
+    public double weight(int arc) {
+        return this.weights[arc];
+    }
+
+    public byte kind(int arc) {
+        return this.kinds[arc];
+    }
+
+    public DefaultWeightedEdge edge(int arc) {
+        return this.edges[arc];
+    }
+
+    /**
+     * @return every vertex, in id order
+     */
+    public List<Point> vertices() {
+        return new ArrayList<>(List.of(this.vertices));
+    }
+}
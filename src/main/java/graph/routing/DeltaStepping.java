@@ -0,0 +1,335 @@
+package graph.routing;
+
+import graph.WeightOverlay;
+import graph.edge.EdgeKind;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel single-source shortest paths over a {@link CsrGraph} with delta-stepping, for precomputation jobs that
+ * need the distance to every vertex.
+ * <p>
+ * Tentative distances are kept in buckets of width {@code delta}. The lowest bucket is emptied by relaxing the light
+ * arcs (weight up to {@code delta}) of all its vertices at once, again and again while that puts vertices back in the
+ * bucket, and then the heavy arcs of every vertex that left it, which can only reach later buckets. The vertices of
+ * one round are split among the workers of a fork/join pool, and distances are lowered with a compare-and-set, so
+ * workers never lock. Bucket bookkeeping between rounds is done by the calling thread.
+ * <p>
+ * A small delta does little wasted work but runs many short rounds, a large one runs few rounds that may relax a
+ * vertex more than once. The default is the mean weight of the usable arcs.
+ * <p>
+ * Instances are not thread safe, a search is meant to be run by one precomputation job at a time.
+ */
+public class DeltaStepping {
+
+    /**
+     * Rounds with fewer vertices than this are run by the calling thread, and tasks stop splitting at this size
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final CsrGraph graph;
+
+    private final ForkJoinPool pool;
+
+    private final int modeMask;
+
+    private final double delta;
+
+    /**
+     * Distances as the raw bits of non-negative doubles, which compare in the same order as the doubles themselves
+     */
+    private AtomicLongArray distances;
+
+    /**
+     * Stamps of the vertices already in the current round
+     */
+    private final int[] roundStamps;
+
+    /**
+     * Stamps of the vertices that left the current bucket, whose heavy arcs are still to be relaxed
+     */
+    private final int[] bucketStamps;
+
+    private int round;
+
+    private int bucketRound;
+
+    /**
+     * @param graph    routing graph, possibly a mode-filtered view
+     * @param pool     pool running the relaxations, its parallelism bounds the speedup
+     * @param modeMask edge kinds the searches can use, see {@link EdgeKind#mask()}
+     * @param delta    bucket width, positive
+     */
+    public DeltaStepping(CsrGraph graph, ForkJoinPool pool, int modeMask, double delta) {
+        if (!(delta > 0)) {
+            throw new IllegalArgumentException("delta must be positive");
+        }
+        this.graph = graph;
+        this.pool = pool;
+        this.modeMask = modeMask;
+        this.delta = delta;
+
+        int n = graph.vertexCount();
+        this.roundStamps = new int[n];
+        this.bucketStamps = new int[n];
+    }
+
+    /**
+     * @param graph    routing graph, possibly a mode-filtered view
+     * @param pool     pool running the relaxations, its parallelism bounds the speedup
+     * @param modeMask edge kinds the searches can use, see {@link EdgeKind#mask()}, also picking the default delta
+     */
+    public DeltaStepping(CsrGraph graph, ForkJoinPool pool, int modeMask) {
+        this(graph, pool, modeMask, DeltaStepping.defaultDelta(graph, modeMask));
+    }
+
+    /**
+     * @param graph    routing graph
+     * @param modeMask edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @return the mean weight of the usable arcs, 1 if there are none
+     */
+    public static double defaultDelta(CsrGraph graph, int modeMask) {
+        double total = 0;
+        int count = 0;
+        for (int arc = 0; arc < graph.arcCount(); arc++) {
+            if ((modeMask & (1 << graph.kind(arc))) != 0 && graph.weight(arc) > 0) {
+                total += graph.weight(arc);
+                count++;
+            }
+        }
+        return count == 0 ? 1 : total / count;
+    }
+
+    /**
+     * Computes the distance from a source to every vertex, over the edge kinds of the search.
+     *
+     * @param source  source vertex id
+     * @param overlay weight changes to apply on top of the graph weights, may be null
+     * @return distances indexed by vertex id, infinity for vertices that cannot be reached
+     */
+    public double[] run(int source, WeightOverlay overlay) {
+        WeightOverlay changes = overlay != null && overlay.hasChanges() ? overlay : null;
+        int n = this.graph.vertexCount();
+
+        long unreached = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        long[] initial = new long[n];
+        Arrays.fill(initial, unreached);
+        initial[source] = Double.doubleToRawLongBits(0);
+        this.distances = new AtomicLongArray(initial);
+
+        TreeMap<Long, VertexList> buckets = new TreeMap<>();
+        buckets.put(0L, VertexList.of(source));
+        while (!buckets.isEmpty()) {
+            Map.Entry<Long, VertexList> first = buckets.pollFirstEntry();
+            long bucket = first.getKey();
+            this.newBucketRound();
+
+            VertexList settled = new VertexList();
+            VertexList frontier = this.current(first.getValue(), bucket);
+            while (frontier.size > 0) {
+                for (int i = 0; i < frontier.size; i++) {
+                    int v = frontier.vertices[i];
+                    if (this.bucketStamps[v] != this.bucketRound) {
+                        this.bucketStamps[v] = this.bucketRound;
+                        settled.add(v);
+                    }
+                }
+
+                VertexList reached = this.relax(frontier, changes, true);
+                frontier = this.distribute(reached, bucket, buckets);
+            }
+
+            this.distribute(this.relax(settled, changes, false), bucket, buckets);
+        }
+
+        double[] result = new double[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = Double.longBitsToDouble(this.distances.get(v));
+        }
+        this.distances = null;
+        return result;
+    }
+
+    /**
+     * @return the vertices of a bucket that still belong to it, each once
+     */
+    private VertexList current(VertexList candidates, long bucket) {
+        this.newRound();
+        VertexList frontier = new VertexList();
+        for (int i = 0; i < candidates.size; i++) {
+            int v = candidates.vertices[i];
+            if (this.roundStamps[v] != this.round && this.bucketOf(v) == bucket) {
+                this.roundStamps[v] = this.round;
+                frontier.add(v);
+            }
+        }
+        return frontier;
+    }
+
+    /**
+     * Files the vertices whose distance was lowered into their buckets. The ones that fell in the current bucket are
+     * returned instead, as the next round.
+     */
+    private VertexList distribute(VertexList reached, long bucket, TreeMap<Long, VertexList> buckets) {
+        this.newRound();
+        VertexList next = new VertexList();
+        for (int i = 0; i < reached.size; i++) {
+            int v = reached.vertices[i];
+            if (this.roundStamps[v] == this.round) {
+                continue;
+            }
+            this.roundStamps[v] = this.round;
+
+            long target = this.bucketOf(v);
+            if (target == bucket) {
+                next.add(v);
+            } else {
+                // a vertex may be filed more than once, copies whose distance moved to another bucket are skipped
+                buckets.computeIfAbsent(target, key -> new VertexList()).add(v);
+            }
+        }
+        return next;
+    }
+
+    private VertexList relax(VertexList vertices, WeightOverlay changes, boolean light) {
+        Relaxation task = new Relaxation(vertices.vertices, 0, vertices.size, this.modeMask, changes, light);
+        return vertices.size < SEQUENTIAL_THRESHOLD ? task.compute() : this.pool.invoke(task);
+    }
+
+    private long bucketOf(int vertex) {
+        return (long) (Double.longBitsToDouble(this.distances.get(vertex)) / this.delta);
+    }
+
+    private void newRound() {
+        if (++this.round == 0) {
+            Arrays.fill(this.roundStamps, 0);
+            this.round = 1;
+        }
+    }
+
+    private void newBucketRound() {
+        if (++this.bucketRound == 0) {
+            Arrays.fill(this.bucketStamps, 0);
+            this.bucketRound = 1;
+        }
+    }
+
+    public int getModeMask() {
+        return this.modeMask;
+    }
+
+    public double getDelta() {
+        return this.delta;
+    }
+
+    /**
+     * Relaxes the light or the heavy arcs of a range of vertices, splitting it among the pool workers, and returns
+     * the vertices whose distance it lowered.
+     */
+    private class Relaxation extends RecursiveTask<VertexList> {
+
+        private final int[] vertices;
+
+        private final int from;
+
+        private final int to;
+
+        private final int modeMask;
+
+        private final WeightOverlay changes;
+
+        private final boolean light;
+
+        private Relaxation(int[] vertices, int from, int to, int modeMask, WeightOverlay changes, boolean light) {
+            this.vertices = vertices;
+            this.from = from;
+            this.to = to;
+            this.modeMask = modeMask;
+            this.changes = changes;
+            this.light = light;
+        }
+
+        @Override
+        protected VertexList compute() {
+            if (this.to - this.from > SEQUENTIAL_THRESHOLD) {
+                int middle = (this.from + this.to) >>> 1;
+                Relaxation left = new Relaxation(this.vertices, this.from, middle, this.modeMask, this.changes, this.light);
+                Relaxation right = new Relaxation(this.vertices, middle, this.to, this.modeMask, this.changes, this.light);
+                left.fork();
+                VertexList reached = right.compute();
+                return left.join().addAll(reached);
+            }
+
+            CsrGraph graph = DeltaStepping.this.graph;
+            AtomicLongArray distances = DeltaStepping.this.distances;
+            double delta = DeltaStepping.this.delta;
+            VertexList reached = new VertexList();
+            for (int i = this.from; i < this.to; i++) {
+                int u = this.vertices[i];
+                double base = Double.longBitsToDouble(distances.get(u));
+                for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                    if ((this.modeMask & (1 << graph.kind(arc))) == 0) {
+                        continue;
+                    }
+
+                    double weight = graph.weight(arc);
+                    if (this.changes != null) {
+                        weight += this.changes.getDelta(graph.edge(arc));
+                    }
+                    if ((weight <= delta) != this.light) {
+                        continue;
+                    }
+
+                    int v = graph.target(arc);
+                    long candidate = Double.doubleToRawLongBits(base + weight);
+                    long current = distances.get(v);
+                    while (candidate < current) {
+                        if (distances.compareAndSet(v, current, candidate)) {
+                            reached.add(v);
+                            break;
+                        }
+                        current = distances.get(v);
+                    }
+                }
+            }
+            return reached;
+        }
+    }
+
+    /**
+     * Growable list of vertex ids
+     */
+    private static final class VertexList {
+
+        private int[] vertices = new int[16];
+
+        private int size;
+
+        private static VertexList of(int vertex) {
+            VertexList list = new VertexList();
+            list.add(vertex);
+            return list;
+        }
+
+        private void add(int vertex) {
+            if (this.size == this.vertices.length) {
+                this.vertices = Arrays.copyOf(this.vertices, this.size * 2);
+            }
+            this.vertices[this.size++] = vertex;
+        }
+
+        private VertexList addAll(VertexList other) {
+            if (this.size + other.size > this.vertices.length) {
+                this.vertices = Arrays.copyOf(this.vertices, Math.max(this.size + other.size, this.size * 2));
+            }
+            System.arraycopy(other.vertices, 0, this.vertices, this.size, other.size);
+            this.size += other.size;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package graph.routing;
+
+import graph.GraphRepository;
+import graph.WeightOverlay;
+import graph.edge.EdgeKind;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Shortest path tree towards a destination that is repaired in place when edge weights change.
+ * <p>
+ * The tree holds, for every vertex, the distance to the destination and the next hop towards it, so the best
+ * route from any point of a trip is read from it directly. When some weights change, only the part of the tree
+ * that depends on them is recomputed: subtrees hanging from a changed tree edge are dropped and reattached to
+ * their valid neighbours, lighter edges outside the tree are relaxed, and a Dijkstra pass spreads the changes as
+ * far as they improve something. The tree is only built on the first repair, and it keeps the children of every
+ * vertex, so a repair never scans the whole graph.
+ * <p>
+ * Weights are read live from the agent graph, so a tree must be repaired after every change to it. Instances
+ * belong to one agent and are not thread safe.
+ */
+public class DynamicRoute {
+
+    private static final RepairStats totalStats = new RepairStats();
+
+    private final Graph<Point, DefaultWeightedEdge> graph;
+
+    private final WeightOverlay overlay;
+
+    private final CsrGraph csr;
+
+    private final int modeMask;
+
+    private final int destination;
+
+    private final RepairStats stats = new RepairStats();
+
+    /**
+     * The arrays below are only allocated when the tree is first needed, most trips are never repaired
+     */
+    private double[] distances;
+
+    /**
+     * Next vertex towards the destination, -1 for the destination and unreachable vertices
+     */
+    private int[] parents;
+
+    /**
+     * Arc between each vertex and its parent, its edge is the one to follow
+     */
+    private int[] parentArcs;
+
+    /**
+     * Children of every vertex in the tree, as a doubly linked list of siblings, -1 ends the lists
+     */
+    private int[] firstChildren;
+
+    private int[] nextSiblings;
+
+    private int[] previousSiblings;
+
+    /**
+     * Vertices dropped by the current repair have the current epoch, so no repair has to clear the whole array
+     */
+    private int[] stamps;
+
+    private int epoch;
+
+    /**
+     * Scratch list of the vertices dropped by a repair
+     */
+    private int[] invalid;
+
+    private DynamicRoute(Graph<Point, DefaultWeightedEdge> graph, CsrGraph csr, int modeMask, int destination) {
+        this.graph = graph;
+        this.overlay = graph instanceof WeightOverlay changes ? changes : null;
+        this.csr = csr;
+        this.modeMask = modeMask;
+        this.destination = destination;
+    }
+
+    /**
+     * Gets the tree towards a destination. The tree is built on first use, so this costs nothing for trips that are
+     * never repaired.
+     *
+     * @param graph       agent graph, a graph from the {@link GraphRepository} or an overlay on one
+     * @param destination destination point name
+     * @param modeMask    edge kinds that can be used, see {@link EdgeKind#mask()}
+     * @return the tree, or null if the graph is not routed by the repository
+     */
+    public static DynamicRoute of(Graph<Point, DefaultWeightedEdge> graph, String destination, int modeMask) {
+        CsrGraph routingGraph = GraphRepository.getRoutingGraph(graph);
+        if (routingGraph == null) {
+            return null;
+        }
+
+        CsrGraph csr = routingGraph.restrictedTo(modeMask);
+        int root = csr.indexOf(destination);
+        if (root < 0) {
+            throw new IllegalArgumentException("graph must contain the destination vertex");
+        }
+        return new DynamicRoute(graph, csr, modeMask, root);
+    }
+
+    /**
+     * Builds the tree with the current weights, if it was not built yet.
+     */
+    private void build() {
+        if (this.distances != null) {
+            return;
+        }
+
+        int n = this.csr.vertexCount();
+        this.distances = new double[n];
+        this.parents = new int[n];
+        this.parentArcs = new int[n];
+        this.firstChildren = new int[n];
+        this.nextSiblings = new int[n];
+        this.previousSiblings = new int[n];
+        this.stamps = new int[n];
+        this.invalid = new int[n];
+        Arrays.fill(this.firstChildren, -1);
+
+        // roads are undirected, so the tree from the destination is also the tree towards it
+        CsrDijkstra search = this.csr.borrowSearch();
+        try {
+            search.run(this.destination, -1, this.modeMask, this.overlay);
+            for (int v = 0; v < n; v++) {
+                this.distances[v] = search.distance(v);
+                this.parents[v] = -1;
+                this.setParent(v, search.parent(v), search.parentArc(v));
+            }
+        } finally {
+            this.csr.returnSearch(search);
+        }
+    }
+
+    /**
+     * @param point point name
+     * @return true if the destination can be reached from the point
+     */
+    public boolean reaches(String point) {
+        this.build();
+        int vertex = this.csr.indexOf(point);
+        return vertex >= 0 && this.distances[vertex] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Repairs the tree after some edge weights changed, then replaces the part of a route after a given index if a
+     * cheaper way to the destination appeared. The part before the index is kept as it is, for instance because it
+     * was already travelled or promised to a car.
+     *
+     * @param path         current route to the destination
+     * @param fromIndex    index of the first vertex of the route that may be rerouted
+     * @param changedEdges edges whose weight changed since the last repair
+     * @return the repaired route, the same path if it is still the best one
+     */
+    public GraphPath<Point, DefaultWeightedEdge> repair(GraphPath<Point, DefaultWeightedEdge> path, int fromIndex, Collection<DefaultWeightedEdge> changedEdges) {
+        long start = System.nanoTime();
+        int settled;
+        if (this.distances == null) {
+            // the first search already sees the changed weights
+            this.build();
+            settled = this.csr.vertexCount();
+        } else {
+            settled = this.repairTree(changedEdges);
+        }
+
+        GraphPath<Point, DefaultWeightedEdge> result = path;
+        int from = this.csr.indexOf(path.getVertexList().get(fromIndex));
+        List<DefaultWeightedEdge> edges = path.getEdgeList();
+
+        double current = 0;
+        for (int i = fromIndex; i < edges.size(); i++) {
+            current += this.graph.getEdgeWeight(edges.get(i));
+        }
+
+        // ties keep the current route, it may already be promised to someone
+        if (from >= 0 && this.distances[from] < current - 1e-9) {
+            List<Point> vertexList = new ArrayList<>(path.getVertexList().subList(0, fromIndex + 1));
+            List<DefaultWeightedEdge> edgeList = new ArrayList<>(edges.subList(0, fromIndex));
+            for (int v = from; this.parents[v] >= 0; v = this.parents[v]) {
+                edgeList.add(this.csr.edge(this.parentArcs[v]));
+                vertexList.add(this.csr.vertex(this.parents[v]));
+            }
+
+            double weight = 0;
+            for (DefaultWeightedEdge edge : edgeList) {
+                weight += this.graph.getEdgeWeight(edge);
+            }
+            result = new GraphWalk<>(this.graph, vertexList.get(0), vertexList.get(vertexList.size() - 1), vertexList, edgeList, weight);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        this.stats.record(result != path, settled, elapsed);
+        totalStats.record(result != path, settled, elapsed);
+        return result;
+    }
+
+    /**
+     * Only touches the subtrees below the changed tree edges and the vertices the changes improve, never the whole
+     * graph.
+     *
+     * @return how many vertices were settled again
+     */
+    private int repairTree(Collection<DefaultWeightedEdge> changedEdges) {
+        this.nextEpoch();
+        PriorityQueue<Entry> queue = new PriorityQueue<>();
+        List<int[]> lighter = new ArrayList<>();
+
+        int count = 0;
+        for (DefaultWeightedEdge edge : changedEdges) {
+            if ((this.modeMask & EdgeKind.of(edge).mask()) == 0) {
+                continue;
+            }
+            int a = this.csr.indexOf(this.graph.getEdgeSource(edge));
+            int b = this.csr.indexOf(this.graph.getEdgeTarget(edge));
+
+            if (this.parents[a] == b && this.csr.edge(this.parentArcs[a]) == edge) {
+                count = this.dropSubtree(a, count);
+            } else if (this.parents[b] == a && this.csr.edge(this.parentArcs[b]) == edge) {
+                count = this.dropSubtree(b, count);
+            } else {
+                lighter.add(new int[]{a, b});
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int v = this.invalid[i];
+            this.distances[v] = Double.POSITIVE_INFINITY;
+            this.setParent(v, -1, -1);
+        }
+
+        // reattach dropped vertices to their valid neighbours
+        for (int i = 0; i < count; i++) {
+            int v = this.invalid[i];
+            for (int arc = this.csr.firstArc(v), end = this.csr.endArc(v); arc < end; arc++) {
+                int x = this.csr.target(arc);
+                if (this.stamps[x] != this.epoch) {
+                    this.relax(x, v, arc, queue);
+                }
+            }
+        }
+
+        // edges outside the tree only matter if they got lighter
+        for (int[] endpoints : lighter) {
+            int a = endpoints[0];
+            int b = endpoints[1];
+            for (int arc = this.csr.firstArc(a), end = this.csr.endArc(a); arc < end; arc++) {
+                if (this.csr.target(arc) == b) {
+                    this.relax(a, b, arc, queue);
+                    this.relax(b, a, arc, queue);
+                }
+            }
+        }
+
+        int settled = 0;
+        while (!queue.isEmpty()) {
+            Entry entry = queue.poll();
+            if (entry.distance > this.distances[entry.vertex]) {
+                continue;
+            }
+            settled++;
+            for (int arc = this.csr.firstArc(entry.vertex), end = this.csr.endArc(entry.vertex); arc < end; arc++) {
+                this.relax(entry.vertex, this.csr.target(arc), arc, queue);
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Marks a vertex and every vertex whose way to the destination goes through it as dropped by this repair, and
+     * adds them to {@link #invalid}.
+     *
+     * @param root  vertex whose tree edge changed
+     * @param count vertices already in the list
+     * @return vertices in the list
+     */
+    private int dropSubtree(int root, int count) {
+        if (this.stamps[root] == this.epoch) {
+            return count;
+        }
+        this.stamps[root] = this.epoch;
+        int first = count;
+        this.invalid[count++] = root;
+
+        // the list grows while it is walked, vertices after the cursor are the ones still to expand
+        for (int i = first; i < count; i++) {
+            for (int child = this.firstChildren[this.invalid[i]]; child >= 0; child = this.nextSiblings[child]) {
+                if (this.stamps[child] != this.epoch) {
+                    this.stamps[child] = this.epoch;
+                    this.invalid[count++] = child;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void nextEpoch() {
+        this.epoch++;
+        if (this.epoch == 0) {
+            // wrapped around, old stamps could collide with the new epoch
+            Arrays.fill(this.stamps, 0);
+            this.epoch = 1;
+        }
+    }
+
+    /**
+     * Moves a vertex under another parent in the tree, keeping the child lists in sync.
+     */
+    private void setParent(int vertex, int parent, int arc) {
+        int old = this.parents[vertex];
+        if (old >= 0) {
+            int previous = this.previousSiblings[vertex];
+            int next = this.nextSiblings[vertex];
+            if (previous >= 0) {
+                this.nextSiblings[previous] = next;
+            } else {
+                this.firstChildren[old] = next;
+            }
+            if (next >= 0) {
+                this.previousSiblings[next] = previous;
+            }
+        }
+
+        this.parents[vertex] = parent;
+        this.parentArcs[vertex] = arc;
+        if (parent >= 0) {
+            int first = this.firstChildren[parent];
+            this.previousSiblings[vertex] = -1;
+            this.nextSiblings[vertex] = first;
+            if (first >= 0) {
+                this.previousSiblings[first] = vertex;
+            }
+            this.firstChildren[parent] = vertex;
+        }
+    }
+
+    /**
+     * Tries to improve a vertex through a neighbour closer to the destination.
+     */
+    private void relax(int from, int to, int arc, PriorityQueue<Entry> queue) {
+        double candidate = this.distances[from] + this.weight(arc);
+        if (candidate < this.distances[to]) {
+            this.distances[to] = candidate;
+            this.setParent(to, from, arc);
+            queue.add(new Entry(to, candidate));
+        }
+    }
+
+    private double weight(int arc) {
+        double weight = this.csr.weight(arc);
+        return this.overlay == null ? weight : weight + this.overlay.getDelta(this.csr.edge(arc));
+    }
+
+    /**
+     * @return repairs done by this route
+     */
+    public RepairStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * @return repairs done by every route in this JVM
+     */
+    public static RepairStats getTotalStats() {
+        return totalStats;
+    }
+
+    private record Entry(int vertex, double distance) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            return Double.compare(this.distance, other.distance);
+        }
+    }
+}
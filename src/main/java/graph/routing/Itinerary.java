@@ -0,0 +1,186 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+import graph.exceptions.NoRoadsException;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path of a human split once into legs, the runs of consecutive edges of the same {@link EdgeKind}: walks over
+ * streets, subway rides and road segments that need a car.
+ * <p>
+ * Costs are summed once into prefix sums, so the leg of any index, the cost between two indices and the sub path of a
+ * leg are read in constant time instead of scanning the path or searching the road segment again. Costs are the
+ * weights of the graph when the itinerary was built: when weights change, a new itinerary has to be built, as
+ * {@code FSMHumanBehaviour} does whenever it repairs its path.
+ * <p>
+ * Indices are vertex indices of the path, edge {@code i} goes from vertex {@code i} to vertex {@code i + 1}.
+ */
+public final class Itinerary {
+
+    private final Graph<Point, DefaultWeightedEdge> graph;
+
+    private final GraphPath<Point, DefaultWeightedEdge> path;
+
+    private final List<Point> vertices;
+
+    private final List<DefaultWeightedEdge> edges;
+
+    /**
+     * Cost from the start to each vertex, {@code costs[i]} is the cost of the first {@code i} edges
+     */
+    private final double[] costs;
+
+    private final List<Leg> legs;
+
+    /**
+     * Leg of each edge
+     */
+    private final int[] legOfEdge;
+
+    private Itinerary(Graph<Point, DefaultWeightedEdge> graph, GraphPath<Point, DefaultWeightedEdge> path) {
+        this.graph = graph;
+        this.path = path;
+        this.vertices = List.copyOf(path.getVertexList());
+        this.edges = List.copyOf(path.getEdgeList());
+
+        int length = this.edges.size();
+        this.costs = new double[length + 1];
+        for (int i = 0; i < length; i++) {
+            this.costs[i + 1] = this.costs[i] + graph.getEdgeWeight(this.edges.get(i));
+        }
+
+        List<Leg> legs = new ArrayList<>();
+        this.legOfEdge = new int[length];
+        for (int start = 0; start < length; ) {
+            EdgeKind kind = EdgeKind.of(this.edges.get(start));
+            int end = start + 1;
+            while (end < length && EdgeKind.of(this.edges.get(end)) == kind) {
+                end++;
+            }
+            for (int i = start; i < end; i++) {
+                this.legOfEdge[i] = legs.size();
+            }
+            legs.add(this.leg(kind, start, end));
+            start = end;
+        }
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * @param graph graph the path belongs to, whose weights are the costs of the itinerary
+     * @param path  path to split into legs
+     * @return the itinerary of the path
+     */
+    public static Itinerary of(Graph<Point, DefaultWeightedEdge> graph, GraphPath<Point, DefaultWeightedEdge> path) {
+        return new Itinerary(graph, path);
+    }
+
+    public GraphPath<Point, DefaultWeightedEdge> getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return the number of edges
+     */
+    public int getLength() {
+        return this.edges.size();
+    }
+
+    public Point vertex(int index) {
+        return this.vertices.get(index);
+    }
+
+    public DefaultWeightedEdge edge(int index) {
+        return this.edges.get(index);
+    }
+
+    public List<Leg> getLegs() {
+        return this.legs;
+    }
+
+    /**
+     * @param index index of a vertex that is not the last one
+     * @return the leg of the edge leaving that vertex
+     */
+    public Leg legAt(int index) {
+        return this.legs.get(this.legOfEdge[index]);
+    }
+
+    /**
+     * The rest of the road leg at an index, from the index to the next vertex where the human has to leave the car,
+     * the segment a car is asked or shared for.
+     *
+     * @param index index of the current vertex
+     * @return the road leg at the index, starting at the index
+     * @throws NoRoadsException if the edge leaving the index is not a road, or there is none
+     */
+    public Leg roadLegFrom(int index) throws NoRoadsException {
+        if (index >= this.edges.size()) {
+            throw new NoRoadsException();
+        }
+
+        Leg leg = this.legAt(index);
+        if (leg.kind() != EdgeKind.ROAD) {
+            throw new NoRoadsException();
+        }
+        return leg.startIndex() == index ? leg : this.leg(EdgeKind.ROAD, index, leg.endIndex());
+    }
+
+    /**
+     * @param from index of the first vertex
+     * @param to   index of the last vertex, not before the first one
+     * @return the cost of the edges between the two vertices
+     */
+    public double cost(int from, int to) {
+        return this.costs[to] - this.costs[from];
+    }
+
+    /**
+     * @return the cost of the whole path
+     */
+    public double getCost() {
+        return this.costs[this.edges.size()];
+    }
+
+    /**
+     * @param from index of the first vertex
+     * @param to   index of the last vertex, after the first one
+     * @return the part of the path between the two vertices, backed by the itinerary
+     */
+    public GraphPath<Point, DefaultWeightedEdge> subPath(int from, int to) {
+        return new GraphWalk<>(this.graph, this.vertices.get(from), this.vertices.get(to),
+                this.vertices.subList(from, to + 1), this.edges.subList(from, to), this.cost(from, to));
+    }
+
+    private Leg leg(EdgeKind kind, int start, int end) {
+        return new Leg(kind, start, end, this.vertices.get(start), this.vertices.get(end), this.cost(start, end), this.subPath(start, end));
+    }
+
+    /**
+     * Consecutive edges of the same kind.
+     *
+     * @param kind       transport mode of the edges
+     * @param startIndex index of the first vertex
+     * @param endIndex   index of the last vertex
+     * @param start      first vertex
+     * @param end        last vertex
+     * @param cost       cost of the edges when the itinerary was built
+     * @param path       the edges as a path
+     */
+    public record Leg(EdgeKind kind, int startIndex, int endIndex, Point start, Point end, double cost,
+                      GraphPath<Point, DefaultWeightedEdge> path) {
+
+        @Override
+        public String toString() {
+            return String.format("%s LEG FROM [%s] TO [%s] (Cost: %.02f)", this.kind, this.start, this.end, this.cost);
+        }
+    }
+}
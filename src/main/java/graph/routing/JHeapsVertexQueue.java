@@ -0,0 +1,69 @@
+package graph.routing;
+
+import org.jheaps.AddressableHeap;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link VertexQueue} over an addressable heap from jheaps, keeping the handle of every queued vertex.
+ * <p>
+ * Monotone heaps such as radix heaps reject keys below the last deleted one. Dijkstra never produces them, even with
+ * consistent landmark bounds, except for rounding errors, so keys are raised to the last deleted key.
+ */
+class JHeapsVertexQueue implements VertexQueue {
+
+    private final Supplier<AddressableHeap<Double, Integer>> heaps;
+
+    private final AddressableHeap.Handle<Double, Integer>[] handles;
+
+    private AddressableHeap<Double, Integer> heap;
+
+    private double lastMin;
+
+    /**
+     * Whether anything was inserted since the heap was created
+     */
+    private boolean used;
+
+    @SuppressWarnings("unchecked")
+    JHeapsVertexQueue(RoutingSettings.QueueKind kind, int vertexCount) {
+        this.heaps = kind.heapSupplier();
+        this.handles = new AddressableHeap.Handle[vertexCount];
+        this.heap = this.heaps.get();
+    }
+
+    @Override
+    public void insert(int vertex, double key) {
+        this.handles[vertex] = this.heap.insert(Math.max(key, this.lastMin), vertex);
+        this.used = true;
+    }
+
+    @Override
+    public void decreaseKey(int vertex, double key) {
+        this.handles[vertex].decreaseKey(Math.max(key, this.lastMin));
+    }
+
+    @Override
+    public int deleteMin() {
+        AddressableHeap.Handle<Double, Integer> min = this.heap.deleteMin();
+        this.lastMin = min.getKey();
+        int vertex = min.getValue();
+        this.handles[vertex] = null;
+        return vertex;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.heap.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        // a fresh heap forgets the vertices of an interrupted query and the minimum of a monotone heap
+        if (this.used) {
+            this.heap = this.heaps.get();
+            this.used = false;
+        }
+        this.lastMin = 0;
+    }
+}
@@ -0,0 +1,121 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+
+import java.util.Arrays;
+
+/**
+ * Landmark distances used as A* lower bounds (ALT).
+ * <p>
+ * The city graph has no coordinates, so the distance left to a target is bounded with the triangle inequality
+ * instead: for any landmark {@code L}, {@code d(v, t) >= |d(L, t) - d(L, v)|} on an undirected graph. Landmarks are
+ * picked far from each other and from the rest of the graph, which makes the bounds tighter, and their distances
+ * are computed once over every edge kind, so they stay valid on mode-restricted views of the same graph.
+ */
+public class Landmarks {
+
+    public static final int DEFAULT_COUNT = 8;
+
+    private final int[] vertices;
+
+    /**
+     * Distance from every landmark to every vertex, vertex major: {@code distances[v * count + i]}
+     */
+    private final double[] distances;
+
+    private final long preprocessingNanos;
+
+    /**
+     * @param graph unrestricted routing graph
+     * @param count how many landmarks to pick, at most the number of vertices
+     */
+    public Landmarks(CsrGraph graph, int count) {
+        long start = System.nanoTime();
+        int n = graph.vertexCount();
+        count = Math.min(count, n);
+
+        this.vertices = new int[count];
+        this.distances = new double[n * count];
+
+        // farthest selection: the first landmark is the vertex farthest from vertex 0, every next one is the vertex
+        // farthest from the landmarks already picked
+        double[] closest = new double[n];
+        // a one-off search, not kept in the pool of the graph
+        CsrDijkstra search = graph.newSearch(RoutingSettings.getQueueKind());
+        if (n > 0) {
+            search.run(0, -1, EdgeKind.ALL, null);
+            int next = Landmarks.farthest(search, n, null);
+            Arrays.fill(closest, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < count; i++) {
+                this.vertices[i] = next;
+                search.run(next, -1, EdgeKind.ALL, null);
+                for (int v = 0; v < n; v++) {
+                    double distance = search.distance(v);
+                    this.distances[v * count + i] = distance;
+                    closest[v] = Math.min(closest[v], distance);
+                }
+                next = Landmarks.farthest(search, n, closest);
+            }
+        }
+
+        this.preprocessingNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Gets the shared landmarks of a routing graph, computing them the first time.
+     *
+     * @param graph unrestricted routing graph
+     * @return shared landmarks
+     */
+    public static Landmarks of(CsrGraph graph) {
+        return graph.landmarks();
+    }
+
+    /**
+     * @return the vertex with the largest finite value, either the last search distance or the given one
+     */
+    private static int farthest(CsrDijkstra search, int n, double[] values) {
+        int best = 0;
+        double bestValue = -1;
+        for (int v = 0; v < n; v++) {
+            double value = values == null ? search.distance(v) : values[v];
+            if (value != Double.POSITIVE_INFINITY && value > bestValue) {
+                best = v;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param vertex vertex id
+     * @param target target vertex id
+     * @return a lower bound of the distance from the vertex to the target
+     */
+    public double estimate(int vertex, int target) {
+        int count = this.vertices.length;
+        int v = vertex * count;
+        int t = target * count;
+        double bound = 0;
+        for (int i = 0; i < count; i++) {
+            double fromVertex = this.distances[v + i];
+            double fromTarget = this.distances[t + i];
+            // a landmark in another component says nothing
+            if (fromVertex != Double.POSITIVE_INFINITY && fromTarget != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, Math.abs(fromTarget - fromVertex));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * @return landmark vertex ids
+     */
+    public int[] getVertices() {
+        return this.vertices.clone();
+    }
+
+    public long getPreprocessingNanos() {
+        return this.preprocessingNanos;
+    }
+}
@@ -0,0 +1,56 @@
+package graph.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numbers about route repairs: how many there were, how many changed the route, and what they cost.
+ * <p>
+ * Counters are updated from agent threads, so they are atomic.
+ */
+public final class RepairStats {
+
+    private final AtomicLong repairs = new AtomicLong();
+
+    private final AtomicLong changedRoutes = new AtomicLong();
+
+    private final AtomicLong settledVertices = new AtomicLong();
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * @param changedRoute whether the repair changed the route
+     * @param settled      vertices settled by the repair
+     * @param elapsedNanos time the repair took
+     */
+    void record(boolean changedRoute, int settled, long elapsedNanos) {
+        this.repairs.incrementAndGet();
+        if (changedRoute) {
+            this.changedRoutes.incrementAndGet();
+        }
+        this.settledVertices.addAndGet(settled);
+        this.nanos.addAndGet(elapsedNanos);
+    }
+
+    public long getRepairs() {
+        return repairs.get();
+    }
+
+    public long getChangedRoutes() {
+        return changedRoutes.get();
+    }
+
+    public long getSettledVertices() {
+        return settledVertices.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    @Override
+    public String toString() {
+        long count = Math.max(1, getRepairs());
+        return String.format("%d repairs, %d changed the route, %.01f vertices settled and %.02f us per repair",
+                getRepairs(), getChangedRoutes(), getSettledVertices() / (double) count, getNanos() / 1e3 / count);
+    }
+}
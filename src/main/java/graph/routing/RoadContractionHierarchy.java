@@ -0,0 +1,72 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.shortestpath.ContractionHierarchyBidirectionalDijkstra;
+import org.jgrapht.alg.shortestpath.ContractionHierarchyPrecomputation;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.MaskSubgraph;
+import org.jgrapht.util.ConcurrencyUtil;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Contraction hierarchy of the road layer of a city graph.
+ * <p>
+ * Preprocessing contracts every vertex of the road network once, adding shortcut edges, which is done in parallel
+ * by jgrapht. Point-to-point queries then run a bidirectional Dijkstra that only goes up the hierarchy, and the
+ * returned paths are unpacked to the original road edges. The hierarchy is only valid for the weights it was built
+ * with, so it is only used for graphs whose weights never change.
+ */
+public class RoadContractionHierarchy {
+
+    private final Graph<Point, DefaultWeightedEdge> roads;
+
+    private final ContractionHierarchyBidirectionalDijkstra<Point, DefaultWeightedEdge> search;
+
+    private final long preprocessingNanos;
+
+    private RoadContractionHierarchy(Graph<Point, DefaultWeightedEdge> roads, ContractionHierarchyBidirectionalDijkstra<Point, DefaultWeightedEdge> search, long preprocessingNanos) {
+        this.roads = roads;
+        this.search = search;
+        this.preprocessingNanos = preprocessingNanos;
+    }
+
+    /**
+     * Contracts the road network of a graph.
+     *
+     * @param graph immutable city graph
+     * @return the contraction hierarchy of its road edges
+     */
+    public static RoadContractionHierarchy build(Graph<Point, DefaultWeightedEdge> graph) {
+        Graph<Point, DefaultWeightedEdge> roads = new MaskSubgraph<>(graph, vertex -> false, edge -> EdgeKind.of(edge) != EdgeKind.ROAD);
+
+        long start = System.nanoTime();
+        ThreadPoolExecutor executor = ConcurrencyUtil.createThreadPoolExecutor(Runtime.getRuntime().availableProcessors());
+        try {
+            var hierarchy = new ContractionHierarchyPrecomputation<>(roads, executor).computeContractionHierarchy();
+            return new RoadContractionHierarchy(roads, new ContractionHierarchyBidirectionalDijkstra<>(hierarchy), System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @param a source point
+     * @param b destination point
+     * @return the shortest road path from A to B, or null if there is none
+     */
+    public GraphPath<Point, DefaultWeightedEdge> getPath(String a, String b) {
+        return this.search.getPath(Point.instance(a), Point.instance(b));
+    }
+
+    public Graph<Point, DefaultWeightedEdge> getRoads() {
+        return this.roads;
+    }
+
+    public long getPreprocessingNanos() {
+        return this.preprocessingNanos;
+    }
+}
@@ -0,0 +1,181 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers road network distances between two points, remembering the work across queries.
+ * <p>
+ * Small cities get every pair precomputed when the oracle is built. Larger ones keep the shortest path trees of
+ * recent sources in an LRU cache bounded by a memory budget; since roads are undirected, a cached tree of either
+ * end answers a query. Hit and miss counters tell whether the budget fits the workload.
+ * <p>
+ * Oracles are shared by every agent that routes over the same graph, so they are thread safe.
+ */
+public class RoadDistanceOracle {
+
+    /**
+     * Cities up to this many vertices get all pairs precomputed (8 MB of distances at the limit)
+     */
+    public static final int ALL_PAIRS_LIMIT = 1024;
+
+    /**
+     * Default memory budget for the cache of single-source trees
+     */
+    public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private final CsrGraph roads;
+
+    private final double[][] allPairs;
+
+    private final LinkedHashMap<Integer, double[]> trees;
+
+    private final int maxTrees;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param graph      routing graph, only its road arcs are used
+     * @param allPairs   whether to precompute every pair
+     * @param cacheBytes memory budget for cached trees when not precomputing every pair
+     */
+    public RoadDistanceOracle(CsrGraph graph, boolean allPairs, long cacheBytes) {
+        this.roads = graph.restrictedTo(EdgeKind.ROAD.mask());
+
+        int n = this.roads.vertexCount();
+        this.maxTrees = (int) Math.max(1, Math.min(Integer.MAX_VALUE, cacheBytes / (8L * Math.max(1, n))));
+        this.trees = new LinkedHashMap<>(16, 0.75f, true);
+
+        if (allPairs) {
+            this.allPairs = new double[n][];
+            for (int source = 0; source < n; source++) {
+                this.allPairs[source] = this.computeTree(source);
+            }
+        } else {
+            this.allPairs = null;
+        }
+    }
+
+    /**
+     * Gets the shared oracle of a routing graph, precomputing every pair for small cities. The oracle is held by the
+     * graph, so it goes away with it.
+     *
+     * @param graph routing graph
+     * @return shared oracle
+     */
+    public static RoadDistanceOracle of(CsrGraph graph) {
+        return graph.roadDistanceOracle();
+    }
+
+    /**
+     * @param a source point name
+     * @param b destination point name
+     * @return road distance from A to B, infinity if B cannot be reached by road
+     */
+    public double distance(String a, String b) {
+        int source = this.roads.indexOf(a);
+        int target = this.roads.indexOf(b);
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("graph must contain the source and target vertices");
+        }
+        return this.distance(source, target);
+    }
+
+    public double distance(int source, int target) {
+        if (this.allPairs != null) {
+            this.hits.incrementAndGet();
+            return this.allPairs[source][target];
+        }
+
+        double[] tree;
+        synchronized (this.trees) {
+            tree = this.trees.get(source);
+            if (tree != null) {
+                this.hits.incrementAndGet();
+                return tree[target];
+            }
+            tree = this.trees.get(target);
+            if (tree != null) {
+                this.hits.incrementAndGet();
+                return tree[source];
+            }
+        }
+
+        this.misses.incrementAndGet();
+        tree = this.computeTree(source);
+
+        synchronized (this.trees) {
+            this.trees.put(source, tree);
+            if (this.trees.size() > this.maxTrees) {
+                Integer eldest = this.trees.keySet().iterator().next();
+                this.trees.remove(eldest);
+                this.evictions.incrementAndGet();
+            }
+        }
+        return tree[target];
+    }
+
+    private double[] computeTree(int source) {
+        CsrDijkstra search = this.roads.borrowSearch();
+        try {
+            search.run(source, -1, EdgeKind.ALL, null);
+
+            double[] tree = new double[this.roads.vertexCount()];
+            for (int vertex = 0; vertex < tree.length; vertex++) {
+                tree[vertex] = search.distance(vertex);
+            }
+            return tree;
+        } finally {
+            this.roads.returnSearch(search);
+        }
+    }
+
+    public boolean isAllPairs() {
+        return this.allPairs != null;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return how many single-source trees fit in the memory budget
+     */
+    public int getMaxTrees() {
+        return this.maxTrees;
+    }
+
+    public int getCachedTrees() {
+        synchronized (this.trees) {
+            return this.trees.size();
+        }
+    }
+
+    public double getHitRate() {
+        long total = this.getHits() + this.getMisses();
+        return total == 0 ? 0 : this.getHits() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        if (this.isAllPairs()) {
+            return String.format("RoadDistanceOracle[all pairs, %d vertices, %d queries]", this.roads.vertexCount(), this.getHits());
+        }
+        return String.format("RoadDistanceOracle[%d/%d trees, %d hits, %d misses (%.01f%%), %d evictions]",
+                this.getCachedTrees(), this.maxTrees, this.getHits(), this.getMisses(), this.getHitRate() * 100, this.getEvictions());
+    }
+}
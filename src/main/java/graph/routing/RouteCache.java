@@ -0,0 +1,136 @@
+package graph.routing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Shortest paths shared by every agent of the JVM, so that humans with the same origin, destination and preferences
+ * search once between them.
+ * <p>
+ * Routes are keyed by the routing graph, which stands for the weights of a profile since every profile gets its own
+ * weighted view, by the mode mask of the profile and by the two vertex ids. Only searches over unchanged weights can
+ * be cached: an agent whose {@link graph.WeightOverlay} recorded fares routes on its own.
+ * <p>
+ * The cache is bounded by a number of routes, property {@code routing.cache.size}, and evicts the least recently
+ * used ones. Concurrent requests for the same route wait for a single search. Hit and miss counters tell whether the
+ * bound fits the workload.
+ */
+public class RouteCache {
+
+    /**
+     * Default maximum number of cached routes
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static final RouteCache shared = new RouteCache(Long.getLong("routing.cache.size", DEFAULT_MAXIMUM_SIZE));
+
+    /**
+     * Stands for a missing path, since the cache cannot hold nulls
+     */
+    private static final Route NO_ROUTE = new Route(List.of(), List.of(), Double.POSITIVE_INFINITY);
+
+    private final Cache<Key, Route> routes;
+
+    private final long maximumSize;
+
+    /**
+     * @param maximumSize maximum number of cached routes
+     */
+    public RouteCache(long maximumSize) {
+        this.maximumSize = maximumSize;
+        this.routes = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the cache shared by every agent of the JVM
+     */
+    public static RouteCache shared() {
+        return shared;
+    }
+
+    /**
+     * Gets a route, searching it the first time it is requested.
+     *
+     * @param csr      routing graph the route is searched on, the unfiltered one
+     * @param source   source vertex id
+     * @param target   target vertex id
+     * @param modeMask edge kinds that can be used
+     * @param graph    graph the returned path belongs to, with the same weights as the routing graph
+     * @param search   runs the search, may return null when there is no path
+     * @return the shortest path from source to target, or null if there is none
+     */
+    public GraphPath<Point, DefaultWeightedEdge> get(CsrGraph csr, int source, int target, int modeMask, Graph<Point, DefaultWeightedEdge> graph, Supplier<GraphPath<Point, DefaultWeightedEdge>> search) {
+        Route route;
+        try {
+            route = this.routes.get(new Key(csr, source, target, modeMask), () -> {
+                GraphPath<Point, DefaultWeightedEdge> path = search.get();
+                return path == null ? NO_ROUTE : new Route(List.copyOf(path.getVertexList()), List.copyOf(path.getEdgeList()), path.getWeight());
+            });
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        if (route == NO_ROUTE) {
+            return null;
+        }
+        return new GraphWalk<>(graph, route.vertices.get(0), route.vertices.get(route.vertices.size() - 1), route.vertices, route.edges, route.weight);
+    }
+
+    /**
+     * @return hit, miss and eviction counters since the cache was created
+     */
+    public CacheStats getStats() {
+        return this.routes.stats();
+    }
+
+    public long getSize() {
+        return this.routes.size();
+    }
+
+    public long getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Drops every cached route, the counters are kept.
+     */
+    public void clear() {
+        this.routes.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = this.getStats();
+        return String.format("RouteCache[%d/%d routes, %d hits, %d misses (%.01f%%), %d evictions]",
+                this.getSize(), this.maximumSize, stats.hitCount(), stats.missCount(), stats.hitRate() * 100, stats.evictionCount());
+    }
+
+    /**
+     * Routing graphs are compared by identity, every weighted view has its own
+     */
+    private record Key(CsrGraph graph, int source, int target, int modeMask) {
+    }
+
+    private record Route(List<Point> vertices, List<DefaultWeightedEdge> edges, double weight) {
+    }
+}
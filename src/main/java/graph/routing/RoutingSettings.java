@@ -0,0 +1,139 @@
+package graph.routing;
+
+import org.jheaps.AddressableHeap;
+import org.jheaps.array.BinaryArrayAddressableHeap;
+import org.jheaps.monotone.DoubleRadixAddressableHeap;
+import org.jheaps.tree.PairingHeap;
+
+import java.util.function.Supplier;
+
+/**
+ * Switches between the routing engines, so that they can be compared on the same simulation.
+ * <p>
+ * Defaults can be given as system properties, for instance {@code -Drouting.road=CONTRACTION_HIERARCHIES}.
+ */
+public class RoutingSettings {
+
+    /**
+     * Engines for road-only queries
+     */
+    public enum RoadEngine {
+        /**
+         * Dijkstra over the cached road view
+         */
+        DIJKSTRA,
+        /**
+         * Bidirectional search over a contraction hierarchy of the road network, preprocessed at graph load
+         */
+        CONTRACTION_HIERARCHIES
+    }
+
+    /**
+     * Engines for point-to-point paths over the CSR snapshots
+     */
+    public enum PathEngine {
+        /**
+         * Dijkstra stopping at the target
+         */
+        DIJKSTRA,
+        /**
+         * A* with landmark lower bounds, see {@link Landmarks}
+         */
+        ALT,
+        /**
+         * Dijkstra from both ends, stopping when the frontiers meet, see {@link CsrBidirectionalDijkstra}
+         */
+        BIDIRECTIONAL,
+        /**
+         * Rounds over the subway lines between searches around both ends, see {@link SubwayRaptor}. Queries that
+         * cannot use the subway, or whose weights were changed by an overlay, fall back to {@link #ALT}
+         */
+        RAPTOR
+    }
+
+    /**
+     * Priority queues for the Dijkstra searches, see {@link VertexQueue}
+     */
+    public enum QueueKind {
+        /**
+         * Binary heap over arrays indexed by vertex, allocation free
+         */
+        BINARY(BinaryArrayAddressableHeap::new),
+        /**
+         * Pairing heap from jheaps, constant time decrease key
+         */
+        PAIRING(PairingHeap::new),
+        /**
+         * Monotone radix heap from jheaps, over the bits of the double keys
+         */
+        RADIX(() -> new DoubleRadixAddressableHeap<>(0.0, Double.MAX_VALUE));
+
+        private final Supplier<AddressableHeap<Double, ?>> heaps;
+
+        QueueKind(Supplier<AddressableHeap<Double, ?>> heaps) {
+            this.heaps = heaps;
+        }
+
+        /**
+         * @param <V> heap values
+         * @return a supplier of empty heaps of this kind, for instance for jgrapht's Dijkstra
+         */
+        @SuppressWarnings("unchecked")
+        public <V> Supplier<AddressableHeap<Double, V>> heapSupplier() {
+            return () -> (AddressableHeap<Double, V>) this.heaps.get();
+        }
+    }
+
+    private static volatile PathEngine pathEngine = PathEngine.valueOf(System.getProperty("routing.path", PathEngine.ALT.name()));
+
+    private static volatile RoadEngine roadEngine = RoadEngine.valueOf(System.getProperty("routing.road", RoadEngine.DIJKSTRA.name()));
+
+    private static volatile QueueKind queueKind = QueueKind.valueOf(System.getProperty("routing.queue", QueueKind.BINARY.name()));
+
+    private static volatile boolean routeCache = Boolean.parseBoolean(System.getProperty("routing.cache", "true"));
+
+    private RoutingSettings() {
+    }
+
+    public static PathEngine getPathEngine() {
+        return pathEngine;
+    }
+
+    public static void setPathEngine(PathEngine engine) {
+        pathEngine = engine;
+    }
+
+    public static RoadEngine getRoadEngine() {
+        return roadEngine;
+    }
+
+    public static void setRoadEngine(RoadEngine engine) {
+        roadEngine = engine;
+    }
+
+    public static QueueKind getQueueKind() {
+        return queueKind;
+    }
+
+    /**
+     * Selects the queue of the searches, thread-bound searches switch on their next query.
+     *
+     * @param kind queue kind
+     */
+    public static void setQueueKind(QueueKind kind) {
+        queueKind = kind;
+    }
+
+    public static boolean isRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Turns the shared {@link RouteCache} on or off, for instance to measure the engines themselves.
+     *
+     * @param enabled whether point-to-point paths go through the cache
+     */
+    public static void setRouteCache(boolean enabled) {
+        routeCache = enabled;
+    }
+}
@@ -0,0 +1,41 @@
+package graph.routing;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable searches over one graph.
+ * <p>
+ * A search is borrowed for one query and given back once its results were read. A borrow with no idle search
+ * creates one, and a search given back to a full pool is dropped, so a graph keeps at most one search per core
+ * however many agent threads routed over it.
+ *
+ * @param <T> search type
+ */
+final class SearchPool<T> {
+
+    private static final int CAPACITY = Runtime.getRuntime().availableProcessors();
+
+    private final ArrayBlockingQueue<T> idle = new ArrayBlockingQueue<>(CAPACITY);
+
+    private final Supplier<T> factory;
+
+    SearchPool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return an idle search, or a new one if there is none
+     */
+    T borrow() {
+        T search = this.idle.poll();
+        return search != null ? search : this.factory.get();
+    }
+
+    /**
+     * @param search a search borrowed from this pool, not used anymore by the caller
+     */
+    void giveBack(T search) {
+        this.idle.offer(search);
+    }
+}
@@ -0,0 +1,674 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+import graph.vertex.Point;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Round-based point-to-point routing in the spirit of RAPTOR, with the subway layer scanned as lines instead of
+ * being searched edge by edge.
+ * <p>
+ * The city graph has no line names nor timetables, so lines are the maximal chains of subway edges between
+ * stations where the network branches or ends (a closed loop is one line, unrolled twice so that rides can go past
+ * its first station), and riding costs the edge weights without any waiting. Between stations, the shortest walks
+ * over the other allowed kinds that do not go through a third station are precomputed as transfers.
+ * <p>
+ * A query reaches the stations around the source and around the target with two searches that stop at the first
+ * station of every direction, and the direct path without subway falls out of the first one. Then every round rides
+ * the lines of the stations improved by the previous round, in both directions, and follows the transfers of the
+ * stations it improved. The answer is the best station label plus its way out to the target, so paths are as short
+ * as with a plain search over the same graph, and labels that cannot beat the best answer so far are dropped.
+ * <p>
+ * Instances are built once per mode-filtered view, see {@link CsrGraph#raptor()}, and are thread safe: query state
+ * is kept per thread.
+ */
+public class SubwayRaptor {
+
+    private static final byte ACCESS = 0;
+
+    private static final byte RIDE = 1;
+
+    private static final byte TRANSFER = 2;
+
+    private final CsrGraph graph;
+
+    /**
+     * The view of {@link #graph} without subway edges, which every walk between stations uses
+     */
+    private final CsrGraph walks;
+
+    /**
+     * Whether each vertex is a station
+     */
+    private final boolean[] isStation;
+
+    /**
+     * Station index of each vertex, -1 for other vertices
+     */
+    private final int[] stationOf;
+
+    private final int[] stationVertices;
+
+    /**
+     * Stops of line {@code l} are the stations at positions {@code lineOffsets[l]} to {@code lineOffsets[l + 1] - 1}
+     */
+    private final int[] lineOffsets;
+
+    private final int[] lineStops;
+
+    /**
+     * Weight from the start of the line to each position
+     */
+    private final double[] linePrefix;
+
+    /**
+     * Edge from each position to the next one of the same line
+     */
+    private final DefaultWeightedEdge[] lineEdges;
+
+    private final int[] positionLine;
+
+    /**
+     * Positions of station {@code s} are {@code stopPositions[stopOffsets[s]]} to
+     * {@code stopPositions[stopOffsets[s + 1] - 1]}
+     */
+    private final int[] stopOffsets;
+
+    private final int[] stopPositions;
+
+    private final int[] transferOffsets;
+
+    private final int[] transferTargets;
+
+    private final double[] transferWeights;
+
+    private final long preprocessingNanos;
+
+    private final ThreadLocal<Query> queries = ThreadLocal.withInitial(Query::new);
+
+    /**
+     * @param graph mode-filtered routing graph, with subway edges when there is to be anything to ride
+     */
+    SubwayRaptor(CsrGraph graph) {
+        long start = System.nanoTime();
+        this.graph = graph;
+        this.walks = graph.restrictedTo(EdgeKind.ALL & ~EdgeKind.SUBWAY.mask());
+        CsrGraph subway = graph.restrictedTo(EdgeKind.SUBWAY.mask());
+
+        int n = graph.vertexCount();
+        this.isStation = new boolean[n];
+        this.stationOf = new int[n];
+        Arrays.fill(this.stationOf, -1);
+        int stations = 0;
+        for (int v = 0; v < n; v++) {
+            if (subway.endArc(v) > subway.firstArc(v)) {
+                this.isStation[v] = true;
+                this.stationOf[v] = stations++;
+            }
+        }
+        this.stationVertices = new int[stations];
+        for (int v = 0; v < n; v++) {
+            if (this.isStation[v]) {
+                this.stationVertices[this.stationOf[v]] = v;
+            }
+        }
+
+        LineBuilder lines = new LineBuilder(subway);
+        this.lineOffsets = lines.offsets();
+        this.lineStops = lines.stops.stream().mapToInt(vertex -> this.stationOf[vertex]).toArray();
+        this.linePrefix = lines.prefix.stream().mapToDouble(Double::doubleValue).toArray();
+        this.lineEdges = lines.edges.toArray(new DefaultWeightedEdge[0]);
+
+        this.positionLine = new int[this.lineStops.length];
+        this.stopOffsets = new int[stations + 1];
+        for (int line = 0; line + 1 < this.lineOffsets.length; line++) {
+            for (int position = this.lineOffsets[line]; position < this.lineOffsets[line + 1]; position++) {
+                this.positionLine[position] = line;
+                this.stopOffsets[this.lineStops[position] + 1]++;
+            }
+        }
+        for (int s = 0; s < stations; s++) {
+            this.stopOffsets[s + 1] += this.stopOffsets[s];
+        }
+        this.stopPositions = new int[this.lineStops.length];
+        int[] next = Arrays.copyOf(this.stopOffsets, stations);
+        for (int position = 0; position < this.lineStops.length; position++) {
+            this.stopPositions[next[this.lineStops[position]]++] = position;
+        }
+
+        // transfers: walks that end at the first station they meet, longer walks chain them
+        this.transferOffsets = new int[stations + 1];
+        List<Integer> targets = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        CsrDijkstra search = this.walks.newSearch(RoutingSettings.QueueKind.BINARY);
+        for (int s = 0; s < stations; s++) {
+            search.run(this.stationVertices[s], -1, EdgeKind.ALL, this.isStation, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < search.getBarrierCount(); i++) {
+                int vertex = search.barrier(i);
+                if (vertex != this.stationVertices[s]) {
+                    targets.add(this.stationOf[vertex]);
+                    weights.add(search.distance(vertex));
+                }
+            }
+            this.transferOffsets[s + 1] = targets.size();
+        }
+        this.transferTargets = targets.stream().mapToInt(Integer::intValue).toArray();
+        this.transferWeights = weights.stream().mapToDouble(Double::doubleValue).toArray();
+
+        this.preprocessingNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Finds the shortest path between two vertices of the graph.
+     *
+     * @param owner  graph the path belongs to, with the same weights as the routing graph
+     * @param source source vertex id
+     * @param target target vertex id
+     * @return the shortest path, or null if the target cannot be reached
+     */
+    public GraphPath<Point, DefaultWeightedEdge> path(Graph<Point, DefaultWeightedEdge> owner, int source, int target) {
+        return this.queries.get().run(owner, source, target);
+    }
+
+    /**
+     * @return how many vertices and stations the last query of the calling thread settled or labelled
+     */
+    public int getSettled() {
+        return this.queries.get().settled;
+    }
+
+    public int getStationCount() {
+        return this.stationVertices.length;
+    }
+
+    public int getLineCount() {
+        return this.lineOffsets.length - 1;
+    }
+
+    public int getTransferCount() {
+        return this.transferTargets.length;
+    }
+
+    public long getPreprocessingNanos() {
+        return this.preprocessingNanos;
+    }
+
+    /**
+     * Splits the subway edges into lines, see the class comment.
+     */
+    private static final class LineBuilder {
+
+        private final CsrGraph subway;
+
+        private final Set<DefaultWeightedEdge> used = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private final List<Integer> starts = new ArrayList<>();
+
+        private final List<Integer> stops = new ArrayList<>();
+
+        private final List<Double> prefix = new ArrayList<>();
+
+        private final List<DefaultWeightedEdge> edges = new ArrayList<>();
+
+        private LineBuilder(CsrGraph subway) {
+            this.subway = subway;
+            int n = subway.vertexCount();
+
+            // chains between the stations where the network branches or ends first, what is left are loops
+            for (int v = 0; v < n; v++) {
+                if (this.degree(v) != 2) {
+                    for (int arc = subway.firstArc(v); arc < subway.endArc(v); arc++) {
+                        if (!this.used.contains(subway.edge(arc))) {
+                            this.walk(v, arc, false);
+                        }
+                    }
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                for (int arc = subway.firstArc(v); arc < subway.endArc(v); arc++) {
+                    if (!this.used.contains(subway.edge(arc))) {
+                        this.walk(v, arc, true);
+                    }
+                }
+            }
+        }
+
+        private int degree(int vertex) {
+            return this.subway.endArc(vertex) - this.subway.firstArc(vertex);
+        }
+
+        private void walk(int first, int firstArc, boolean loop) {
+            int start = this.stops.size();
+            this.starts.add(start);
+            this.stops.add(first);
+            this.prefix.add(0.0);
+
+            int arc = firstArc;
+            while (arc >= 0) {
+                DefaultWeightedEdge edge = this.subway.edge(arc);
+                this.used.add(edge);
+                this.edges.add(edge);
+                int vertex = this.subway.target(arc);
+                this.stops.add(vertex);
+                this.prefix.add(this.prefix.get(this.prefix.size() - 1) + this.subway.weight(arc));
+
+                arc = -1;
+                if (this.degree(vertex) == 2 && vertex != first) {
+                    for (int other = this.subway.firstArc(vertex); other < this.subway.endArc(vertex); other++) {
+                        if (!this.used.contains(this.subway.edge(other))) {
+                            arc = other;
+                        }
+                    }
+                }
+            }
+
+            if (loop) {
+                // once more around, so that a ride can start anywhere and go past the first station
+                int end = this.stops.size();
+                double length = this.prefix.get(end - 1);
+                for (int position = start; position + 1 < end; position++) {
+                    this.edges.add(this.edges.get(position));
+                    this.stops.add(this.stops.get(position + 1));
+                    this.prefix.add(length + this.prefix.get(position + 1));
+                }
+            }
+            // the last stop of a line has no edge to the next one
+            this.edges.add(null);
+        }
+
+        private int[] offsets() {
+            int[] offsets = new int[this.starts.size() + 1];
+            for (int line = 0; line < this.starts.size(); line++) {
+                offsets[line] = this.starts.get(line);
+            }
+            offsets[this.starts.size()] = this.stops.size();
+            return offsets;
+        }
+    }
+
+    /**
+     * Labels of the stations improved in one round
+     */
+    private static final class Round {
+
+        private final int[] stamps;
+
+        private final double[] arrivals;
+
+        private final byte[] kinds;
+
+        /**
+         * Boarding position of a ride, or the station a transfer comes from
+         */
+        private final int[] froms;
+
+        /**
+         * Alighting position of a ride
+         */
+        private final int[] tos;
+
+        private Round(int stations) {
+            this.stamps = new int[stations];
+            this.arrivals = new double[stations];
+            this.kinds = new byte[stations];
+            this.froms = new int[stations];
+            this.tos = new int[stations];
+        }
+    }
+
+    /**
+     * State of the queries of one thread, reused across queries with epochs in the same way as {@link CsrDijkstra}
+     */
+    private final class Query {
+
+        private final CsrDijkstra access;
+
+        private final CsrDijkstra egress;
+
+        private final CsrDijkstra transfer;
+
+        private final VertexQueue queue;
+
+        private final List<Round> rounds = new ArrayList<>();
+
+        private final double[] best;
+
+        private final int[] bestStamps;
+
+        private final double[] egressDistances;
+
+        private final int[] egressStamps;
+
+        /**
+         * Stamps of the stations queued and settled by the transfer phase of the current round
+         */
+        private final int[] queuedStamps;
+
+        private final int[] settledStamps;
+
+        private final int[] lineStamps;
+
+        private final int[] lineFirst;
+
+        private final int[] lineLast;
+
+        private int[] marked;
+
+        private int markedCount;
+
+        private int[] previous;
+
+        private int previousCount;
+
+        private int[] touchedLines;
+
+        private int epoch;
+
+        /**
+         * Stamp of the transfer phases and of the line scans, they happen many times per query
+         */
+        private int phase;
+
+        private double bestTotal;
+
+        private int bestStation;
+
+        private int bestRound;
+
+        private int settled;
+
+        private Query() {
+            RoutingSettings.QueueKind kind = RoutingSettings.getQueueKind();
+            SubwayRaptor raptor = SubwayRaptor.this;
+            this.access = raptor.walks.newSearch(kind);
+            this.egress = raptor.walks.newSearch(kind);
+            this.transfer = raptor.walks.newSearch(kind);
+
+            int stations = raptor.stationVertices.length;
+            int lines = raptor.lineOffsets.length - 1;
+            this.queue = VertexQueue.of(RoutingSettings.QueueKind.BINARY, stations);
+            this.best = new double[stations];
+            this.bestStamps = new int[stations];
+            this.egressDistances = new double[stations];
+            this.egressStamps = new int[stations];
+            this.queuedStamps = new int[stations];
+            this.settledStamps = new int[stations];
+            this.lineStamps = new int[lines];
+            this.lineFirst = new int[lines];
+            this.lineLast = new int[lines];
+            this.marked = new int[stations];
+            this.previous = new int[stations];
+            this.touchedLines = new int[lines];
+        }
+
+        private GraphPath<Point, DefaultWeightedEdge> run(Graph<Point, DefaultWeightedEdge> owner, int source, int target) {
+            SubwayRaptor raptor = SubwayRaptor.this;
+            this.newEpoch();
+
+            if (source == target) {
+                Point point = raptor.graph.vertex(source);
+                return new GraphWalk<>(owner, List.of(point), 0);
+            }
+
+            // the direct path is an upper bound for everything else, and the ways out only need to go that far
+            this.bestTotal = this.access.run(source, target, EdgeKind.ALL, raptor.isStation, Double.POSITIVE_INFINITY);
+            this.egress.run(target, -1, EdgeKind.ALL, raptor.isStation, this.bestTotal);
+            this.settled = this.access.getSettled() + this.egress.getSettled();
+            for (int i = 0; i < this.egress.getBarrierCount(); i++) {
+                int station = raptor.stationOf[this.egress.barrier(i)];
+                this.egressStamps[station] = this.epoch;
+                this.egressDistances[station] = this.egress.distance(this.egress.barrier(i));
+            }
+
+            Round round = this.round(0);
+            for (int i = 0; i < this.access.getBarrierCount(); i++) {
+                int vertex = this.access.barrier(i);
+                this.label(round, 0, raptor.stationOf[vertex], this.access.distance(vertex), ACCESS, -1, -1);
+            }
+            this.transfers(round, 0);
+
+            for (int k = 1; this.markedCount > 0; k++) {
+                int[] swap = this.previous;
+                this.previous = this.marked;
+                this.previousCount = this.markedCount;
+                this.marked = swap;
+                this.markedCount = 0;
+
+                Round last = round;
+                round = this.round(k);
+                this.ride(last, round, k);
+                this.transfers(round, k);
+            }
+
+            return this.bestStation < 0 ? this.access.path(owner, target) : this.path(owner, source, target);
+        }
+
+        private Round round(int k) {
+            if (k == this.rounds.size()) {
+                this.rounds.add(new Round(SubwayRaptor.this.stationVertices.length));
+            }
+            return this.rounds.get(k);
+        }
+
+        /**
+         * Rides every line through a station improved by the last round, from the first of them forward and from
+         * the last of them backward, boarding where the label of the last round beats the current ride.
+         */
+        private void ride(Round last, Round round, int k) {
+            SubwayRaptor raptor = SubwayRaptor.this;
+            int phase = this.newPhase();
+            int lines = 0;
+            for (int i = 0; i < this.previousCount; i++) {
+                int station = this.previous[i];
+                for (int j = raptor.stopOffsets[station]; j < raptor.stopOffsets[station + 1]; j++) {
+                    int position = raptor.stopPositions[j];
+                    int line = raptor.positionLine[position];
+                    if (this.lineStamps[line] != phase) {
+                        this.lineStamps[line] = phase;
+                        this.lineFirst[line] = position;
+                        this.lineLast[line] = position;
+                        this.touchedLines[lines++] = line;
+                    } else {
+                        this.lineFirst[line] = Math.min(this.lineFirst[line], position);
+                        this.lineLast[line] = Math.max(this.lineLast[line], position);
+                    }
+                }
+            }
+
+            for (int i = 0; i < lines; i++) {
+                int line = this.touchedLines[i];
+
+                double boarded = Double.POSITIVE_INFINITY;
+                int boarding = -1;
+                for (int position = this.lineFirst[line]; position < raptor.lineOffsets[line + 1]; position++) {
+                    int station = raptor.lineStops[position];
+                    if (boarding >= 0) {
+                        this.label(round, k, station, boarded + raptor.linePrefix[position], RIDE, boarding, position);
+                    }
+                    if (last.stamps[station] == this.epoch && last.arrivals[station] - raptor.linePrefix[position] < boarded) {
+                        boarded = last.arrivals[station] - raptor.linePrefix[position];
+                        boarding = position;
+                    }
+                }
+
+                boarded = Double.POSITIVE_INFINITY;
+                boarding = -1;
+                for (int position = this.lineLast[line]; position >= raptor.lineOffsets[line]; position--) {
+                    int station = raptor.lineStops[position];
+                    if (boarding >= 0) {
+                        this.label(round, k, station, boarded - raptor.linePrefix[position], RIDE, boarding, position);
+                    }
+                    if (last.stamps[station] == this.epoch && last.arrivals[station] + raptor.linePrefix[position] < boarded) {
+                        boarded = last.arrivals[station] + raptor.linePrefix[position];
+                        boarding = position;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Follows the transfers of the stations improved in this round, chaining them with a small Dijkstra over the
+         * stations.
+         */
+        private void transfers(Round round, int k) {
+            SubwayRaptor raptor = SubwayRaptor.this;
+            int phase = this.newPhase();
+            this.queue.clear();
+            for (int i = 0; i < this.markedCount; i++) {
+                int station = this.marked[i];
+                this.queuedStamps[station] = phase;
+                this.queue.insert(station, round.arrivals[station]);
+            }
+
+            while (!this.queue.isEmpty()) {
+                int u = this.queue.deleteMin();
+                this.settledStamps[u] = phase;
+                double arrival = round.arrivals[u];
+                for (int i = raptor.transferOffsets[u]; i < raptor.transferOffsets[u + 1]; i++) {
+                    int v = raptor.transferTargets[i];
+                    if (this.settledStamps[v] == phase || !this.label(round, k, v, arrival + raptor.transferWeights[i], TRANSFER, u, -1)) {
+                        continue;
+                    }
+                    if (this.queuedStamps[v] == phase) {
+                        this.queue.decreaseKey(v, round.arrivals[v]);
+                    } else {
+                        this.queuedStamps[v] = phase;
+                        this.queue.insert(v, round.arrivals[v]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Labels a station in a round if that beats both its best label and the best answer so far.
+         *
+         * @return whether the station was labelled
+         */
+        private boolean label(Round round, int k, int station, double arrival, byte kind, int from, int to) {
+            if (arrival >= this.bestTotal || (this.bestStamps[station] == this.epoch && arrival >= this.best[station])) {
+                return false;
+            }
+
+            this.settled++;
+            this.bestStamps[station] = this.epoch;
+            this.best[station] = arrival;
+            if (round.stamps[station] != this.epoch) {
+                round.stamps[station] = this.epoch;
+                this.marked[this.markedCount++] = station;
+            }
+            round.arrivals[station] = arrival;
+            round.kinds[station] = kind;
+            round.froms[station] = from;
+            round.tos[station] = to;
+
+            if (this.egressStamps[station] == this.epoch && arrival + this.egressDistances[station] < this.bestTotal) {
+                this.bestTotal = arrival + this.egressDistances[station];
+                this.bestStation = station;
+                this.bestRound = k;
+            }
+            return true;
+        }
+
+        /**
+         * Builds the path of the best answer, walking the labels back from its last station.
+         */
+        private GraphPath<Point, DefaultWeightedEdge> path(Graph<Point, DefaultWeightedEdge> owner, int source, int target) {
+            SubwayRaptor raptor = SubwayRaptor.this;
+
+            // legs from the target back to the source, each one as vertices and edges in travel order
+            List<List<Point>> vertexLegs = new ArrayList<>();
+            List<List<DefaultWeightedEdge>> edgeLegs = new ArrayList<>();
+
+            GraphPath<Point, DefaultWeightedEdge> out = this.egress.path(owner, raptor.stationVertices[this.bestStation]);
+            List<Point> outVertices = new ArrayList<>(out.getVertexList());
+            List<DefaultWeightedEdge> outEdges = new ArrayList<>(out.getEdgeList());
+            Collections.reverse(outVertices);
+            Collections.reverse(outEdges);
+            vertexLegs.add(outVertices);
+            edgeLegs.add(outEdges);
+
+            int station = this.bestStation;
+            int k = this.bestRound;
+            while (true) {
+                Round round = this.rounds.get(k);
+                if (round.kinds[station] == ACCESS) {
+                    GraphPath<Point, DefaultWeightedEdge> in = this.access.path(owner, raptor.stationVertices[station]);
+                    vertexLegs.add(in.getVertexList());
+                    edgeLegs.add(in.getEdgeList());
+                    break;
+                }
+
+                if (round.kinds[station] == TRANSFER) {
+                    int from = round.froms[station];
+                    this.transfer.run(raptor.stationVertices[from], raptor.stationVertices[station], EdgeKind.ALL, null);
+                    GraphPath<Point, DefaultWeightedEdge> walk = this.transfer.path(owner, raptor.stationVertices[station]);
+                    vertexLegs.add(walk.getVertexList());
+                    edgeLegs.add(walk.getEdgeList());
+                    station = from;
+                    continue;
+                }
+
+                int boarding = round.froms[station];
+                int alighting = round.tos[station];
+                int step = alighting > boarding ? 1 : -1;
+                List<Point> rideVertices = new ArrayList<>();
+                List<DefaultWeightedEdge> rideEdges = new ArrayList<>();
+                rideVertices.add(raptor.graph.vertex(raptor.stationVertices[raptor.lineStops[boarding]]));
+                for (int position = boarding; position != alighting; position += step) {
+                    rideEdges.add(raptor.lineEdges[step > 0 ? position : position - 1]);
+                    rideVertices.add(raptor.graph.vertex(raptor.stationVertices[raptor.lineStops[position + step]]));
+                }
+                vertexLegs.add(rideVertices);
+                edgeLegs.add(rideEdges);
+                station = raptor.lineStops[boarding];
+                k--;
+            }
+
+            List<Point> vertices = new ArrayList<>();
+            List<DefaultWeightedEdge> edges = new ArrayList<>();
+            vertices.add(raptor.graph.vertex(source));
+            for (int leg = vertexLegs.size() - 1; leg >= 0; leg--) {
+                List<Point> legVertices = vertexLegs.get(leg);
+                vertices.addAll(legVertices.subList(1, legVertices.size()));
+                edges.addAll(edgeLegs.get(leg));
+            }
+            return new GraphWalk<>(owner, vertices.get(0), raptor.graph.vertex(target), vertices, edges, this.bestTotal);
+        }
+
+        private void newEpoch() {
+            this.epoch++;
+            if (this.epoch == 0) {
+                for (Round round : this.rounds) {
+                    Arrays.fill(round.stamps, 0);
+                }
+                Arrays.fill(this.bestStamps, 0);
+                Arrays.fill(this.egressStamps, 0);
+                this.epoch = 1;
+            }
+            this.markedCount = 0;
+            this.bestStation = -1;
+            this.bestRound = -1;
+        }
+
+        private int newPhase() {
+            this.phase++;
+            if (this.phase == 0) {
+                Arrays.fill(this.queuedStamps, 0);
+                Arrays.fill(this.settledStamps, 0);
+                Arrays.fill(this.lineStamps, 0);
+                this.phase = 1;
+            }
+            return this.phase;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package graph.routing;
+
+/**
+ * Priority queue of vertex ids by key, used by {@link CsrDijkstra}. Every vertex is inserted at most once per query,
+ * between two calls to {@link #clear()}.
+ */
+public interface VertexQueue {
+
+    /**
+     * Creates a queue of the given kind.
+     *
+     * @param kind        kind of queue
+     * @param vertexCount number of vertices of the graph
+     * @return an empty queue
+     */
+    static VertexQueue of(RoutingSettings.QueueKind kind, int vertexCount) {
+        return kind == RoutingSettings.QueueKind.BINARY ? new BinaryVertexQueue(vertexCount) : new JHeapsVertexQueue(kind, vertexCount);
+    }
+
+    void insert(int vertex, double key);
+
+    /**
+     * @param vertex a vertex in the queue
+     * @param key    new key, not higher than the current one
+     */
+    void decreaseKey(int vertex, double key);
+
+    /**
+     * @return the vertex with the lowest key, removed from the queue
+     */
+    int deleteMin();
+
+    boolean isEmpty();
+
+    /**
+     * Empties the queue for a new query.
+     */
+    void clear();
+}
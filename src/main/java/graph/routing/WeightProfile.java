@@ -0,0 +1,160 @@
+package graph.routing;
+
+import graph.edge.EdgeKind;
+
+import java.util.Arrays;
+
+/**
+ * How an agent weighs the transport modes: a weight override or a multiplier per edge kind, and a mask of the
+ * kinds it may use at all.
+ * <p>
+ * The weights are applied through a shared weighted view of the city graph, see
+ * {@link graph.GraphRepository#weightedView}, so agents whose profiles only differ in the mode mask route over the
+ * same graph. Forbidden kinds are pruned by the search instead of being given huge weights.
+ * <p>
+ * Profiles are immutable, every change returns a new profile.
+ */
+public final class WeightProfile {
+
+    public static final WeightProfile DEFAULT = new WeightProfile(new double[EdgeKind.values().length], ones(), EdgeKind.ALL);
+
+    /**
+     * Weight of every edge of each kind, non-positive values keep the graph weight
+     */
+    private final double[] overrides;
+
+    private final double[] multipliers;
+
+    private final int modeMask;
+
+    private WeightProfile(double[] overrides, double[] multipliers, int modeMask) {
+        this.overrides = overrides;
+        this.multipliers = multipliers;
+        this.modeMask = modeMask;
+    }
+
+    private static double[] ones() {
+        double[] ones = new double[EdgeKind.values().length];
+        Arrays.fill(ones, 1);
+        return ones;
+    }
+
+    /**
+     * Profile with fixed weights per kind, with the same semantics as
+     * {@link graph.GraphUtils#importGraph(String, double, double, double)}.
+     *
+     * @param streetWeight weight for street edges (walking)
+     * @param roadWeight   weight for road edges (car/uber)
+     * @param subwayWeight weight for subway edges
+     * @return profile that allows every kind
+     */
+    public static WeightProfile of(double streetWeight, double roadWeight, double subwayWeight) {
+        return DEFAULT.withOverride(EdgeKind.STREET, streetWeight).withOverride(EdgeKind.ROAD, roadWeight).withOverride(EdgeKind.SUBWAY, subwayWeight);
+    }
+
+    /**
+     * @param kind   edge kind
+     * @param weight weight of every edge of that kind, non-positive to keep the graph weights
+     * @return a profile with the override
+     */
+    public WeightProfile withOverride(EdgeKind kind, double weight) {
+        double[] newOverrides = this.overrides.clone();
+        newOverrides[kind.id()] = Math.max(0, weight);
+        return new WeightProfile(newOverrides, this.multipliers, this.modeMask);
+    }
+
+    /**
+     * @param kind       edge kind
+     * @param multiplier factor applied to the weights of that kind, after any override
+     * @return a profile with the multiplier
+     */
+    public WeightProfile withMultiplier(EdgeKind kind, double multiplier) {
+        if (multiplier < 0) {
+            throw new IllegalArgumentException("multiplier must not be negative");
+        }
+        double[] newMultipliers = this.multipliers.clone();
+        newMultipliers[kind.id()] = multiplier;
+        return new WeightProfile(this.overrides, newMultipliers, this.modeMask);
+    }
+
+    /**
+     * @param kind edge kind the agent does not want to use
+     * @return a profile that forbids that kind
+     */
+    public WeightProfile without(EdgeKind kind) {
+        return new WeightProfile(this.overrides, this.multipliers, this.modeMask & ~kind.mask());
+    }
+
+    /**
+     * @return this profile allowing every kind, which is what decides the weighted view
+     */
+    public WeightProfile weightsOnly() {
+        return this.modeMask == EdgeKind.ALL ? this : new WeightProfile(this.overrides, this.multipliers, EdgeKind.ALL);
+    }
+
+    /**
+     * @param kind   kind of the edge
+     * @param weight weight of the edge in the graph
+     * @return the weight of the edge for this profile
+     */
+    public double weight(EdgeKind kind, double weight) {
+        double override = this.overrides[kind.id()];
+        return (override > 0 ? override : weight) * this.multipliers[kind.id()];
+    }
+
+    /**
+     * @return true if any weight differs from the graph weights
+     */
+    public boolean hasCustomWeights() {
+        for (int i = 0; i < this.overrides.length; i++) {
+            if (this.overrides[i] > 0 || this.multipliers[i] != 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean allows(EdgeKind kind) {
+        return (this.modeMask & kind.mask()) != 0;
+    }
+
+    /**
+     * @return edge kinds that can be used, see {@link EdgeKind#mask()}
+     */
+    public int getModeMask() {
+        return this.modeMask;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof WeightProfile other && this.modeMask == other.modeMask
+                && Arrays.equals(this.overrides, other.overrides) && Arrays.equals(this.multipliers, other.multipliers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(this.overrides) + Arrays.hashCode(this.multipliers)) + this.modeMask;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("WeightProfile[");
+        for (EdgeKind kind : EdgeKind.values()) {
+            if (kind.ordinal() > 0) {
+                result.append(", ");
+            }
+            result.append(kind);
+            if (!this.allows(kind)) {
+                result.append(" forbidden");
+                continue;
+            }
+            if (this.overrides[kind.id()] > 0) {
+                result.append(" =").append(this.overrides[kind.id()]);
+            }
+            if (this.multipliers[kind.id()] != 1) {
+                result.append(" x").append(this.multipliers[kind.id()]);
+            }
+        }
+        return result.append(']').toString();
+    }
+}
@@ -2,27 +2,61 @@ package graph.vertex;
 
 import graph.Colorable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
 import java.io.Serializable;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * A place of the city graph.
+ * <p>
+ * Every point name gets an int id the first time it is seen by the JVM, so equality and hashing compare ints
+ * instead of strings. Points loaded from a graph file are interned with {@link #intern(Point)}, and
+ * {@link #instance(String)} as well as deserialized points resolve to those canonical instances, so most identity
+ * checks end at the reference comparison.
+ */
 public class Point implements Colorable, Serializable {
+
+    /**
+     * Id of every point name seen by this JVM
+     */
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Canonical instance of every interned point name
+     */
+    private static final Map<String, Point> canonical = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
     private final String name;
 
+    /**
+     * Ids are only valid in the JVM that gave them, so they are not serialized, see {@link #readObject}
+     */
+    private transient int id;
+
     public Point(String name) {
         this.name = name;
+        this.id = Point.idOf(name);
+    }
+
+    private static int idOf(String name) {
+        return ids.computeIfAbsent(name, key -> nextId.getAndIncrement());
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null) return false;
-        Point point = (Point) o;
-        return Objects.equals(name, point.name);
+        return o instanceof Point point && this.id == point.id;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return this.id;
     }
 
     @Override
@@ -30,29 +64,63 @@ public class Point implements Colorable, Serializable {
         return name;
     }
 
+    /**
+     * Registers a point as the canonical instance for its name, unless there is one already. Graphs that use the
+     * same name for points of another type keep their own instance, which is still equal to the canonical one.
+     *
+     * @param point point to intern
+     * @return the canonical point with that name, or the given point if the canonical one has another type
+     */
+    public static Point intern(Point point) {
+        Point existing = canonical.putIfAbsent(point.name, point);
+        return existing != null && existing.getClass() == point.getClass() ? existing : point;
+    }
+
+    /**
+     * @param name point name
+     * @return the canonical point with that name, or a new point equal to it if the name was never interned
+     */
     public static Point instance(String name) {
-        return new Point(name) {
-            @Override
-            public boolean equals(Object o) {
-                return super.equals(o);
-            }
+        Point point = canonical.get(name);
+        return point != null ? point : new Point(name);
+    }
 
-            @Override
-            public int hashCode() {
-                return super.hashCode();
-            }
+    /**
+     * @return an upper bound of every point id, to size tables indexed by id
+     */
+    public static int idBound() {
+        return nextId.get();
+    }
 
-            @Override
-            public String toString() {
-                return super.toString();
-            }
-        };
+    /**
+     * Gives a point that went through a message the local id of its name.
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.id = Point.idOf(this.name);
+    }
+
+    /**
+     * Points that went through a message come back as the canonical instance, when it has the same type.
+     */
+    @Serial
+    protected Object readResolve() {
+        Point point = canonical.get(this.name);
+        return point != null && point.getClass() == this.getClass() ? point : this;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return id of the point name, stable for the lifetime of the JVM
+     */
+    public int getId() {
+        return id;
+    }
+
     @Override
     public String getColor() {
         return Colorable.STREET_COLOR;
@@ -0,0 +1,18 @@
+package messages;
+
+import graph.vertex.Point;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * A request of a ride from human to car, for a single round of sealed bids.
+ * Each car bids once without seeing the other bids, and the lowest bid wins.
+ *
+ * @param start       the start point of the ride
+ * @param end         the end point of the ride
+ * @param bidders     the number of cars asked
+ * @param secondPrice if the winner is paid the second lowest bid rather than its own
+ */
+public record CarRideCFPSealedBidRequestMessage(@Getter Point start, @Getter Point end, @Getter int bidders,
+                                                @Getter boolean secondPrice) implements Serializable {}
@@ -44,4 +44,25 @@ public interface CarCognitive {
         // get random number between pathCost and askedPrice
         return (float) ((float) (Math.random() * (askedPrice - pathCost)) + pathCost);
     }
+
+    /**
+     * Returns the bid for a ride in a single round of sealed bids. When the winner is paid the second lowest bid, the
+     * car is best off bidding the cost of the ride itself, what it is paid does not depend on its bid. When it is paid
+     * its own bid, the car adds the random margin of {@link #getRidePrice}, shaded by the number of cars it competes
+     * with.
+     *
+     * @param pathCost    the cost of the ride
+     * @param bidders     the number of cars asked
+     * @param secondPrice if the winner is paid the second lowest bid
+     * @return the bid for the ride
+     */
+    static float getSealedBid(double pathCost, int bidders, boolean secondPrice) {
+        if (secondPrice) {
+            return (float) pathCost;
+        }
+
+        // random margin between 0 and 2, as in getRidePrice
+        float margin = (float) (Math.random() * 2);
+        return (float) (pathCost * (1 + margin / Math.max(1, bidders)));
+    }
 }
@@ -11,6 +11,7 @@ import jade.lang.acl.ACLMessage;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 public interface ServiceUtils {
@@ -90,6 +91,69 @@ public interface ServiceUtils {
         return new HashSet<>(0);
     }
 
+    /**
+     * Subscribes the agent to the registrations in a service. The DF answers right away with the agents already in the
+     * service, then every time an agent joins or leaves it, with INFORM messages of the given conversation, see
+     * {@link #joined}.
+     *
+     * @param agent          the agent that subscribes
+     * @param serviceName    the name of the service
+     * @param conversationId the conversation of the notifications
+     * @return the subscription, to cancel it with {@link #unsubscribe}
+     */
+    static ACLMessage subscribe(Agent agent, String serviceName, String conversationId) {
+        DFAgentDescription dfd = new DFAgentDescription();
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType(serviceName);
+        dfd.addServices(sd);
+
+        ACLMessage subscription = DFService.createSubscriptionMessage(agent, agent.getDefaultDF(), dfd, null);
+        subscription.setConversationId(conversationId);
+        agent.send(subscription);
+        return subscription;
+    }
+
+    static void unsubscribe(Agent agent, ACLMessage subscription) {
+        agent.send(DFService.createCancelMessage(agent, agent.getDefaultDF(), subscription));
+    }
+
+    /**
+     * @param notification a notification of a subscription
+     * @param serviceName  the name of the subscribed service
+     * @return the agents of the notification that are in the service, agents that left it are not
+     */
+    static Set<DFAgentDescription> joined(ACLMessage notification, String serviceName) {
+        return ServiceUtils.notified(notification, serviceName, true);
+    }
+
+    /**
+     * @param notification a notification of a subscription
+     * @param serviceName  the name of the subscribed service
+     * @return the agents of the notification that left the service or deregistered
+     */
+    static Set<DFAgentDescription> left(ACLMessage notification, String serviceName) {
+        return ServiceUtils.notified(notification, serviceName, false);
+    }
+
+    private static Set<DFAgentDescription> notified(ACLMessage notification, String serviceName, boolean inService) {
+        Set<DFAgentDescription> notified = new HashSet<>();
+        try {
+            for (DFAgentDescription dfd : DFService.decodeNotification(notification.getContent())) {
+                boolean found = false;
+                Iterator<?> services = dfd.getAllServices();
+                while (services.hasNext() && !found) {
+                    found = serviceName.equals(((ServiceDescription) services.next()).getType());
+                }
+                if (found == inService) {
+                    notified.add(dfd);
+                }
+            }
+        } catch (FIPAException e) {
+            e.printStackTrace();
+        }
+        return notified;
+    }
+
     static String buildRideName(String agentName) {
         return agentName + "-" + "ride";
     }
@@ -98,6 +162,18 @@ public interface ServiceUtils {
         return p1 + "-" + p2;
     }
 
+    /**
+     * The service of the humans offering to share their ride on a road segment, the humans asking for a share of the
+     * segment are in {@link #buildShareName}.
+     *
+     * @param p1 the start of the segment
+     * @param p2 the end of the segment
+     * @return the name of the service
+     */
+    static String buildShareOfferName(String p1, String p2) {
+        return ServiceUtils.buildShareName(p1, p2) + "-" + "offer";
+    }
+
     /**
      * Sends a string message to all agents in the given service.
      *
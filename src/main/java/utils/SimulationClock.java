@@ -0,0 +1,391 @@
+package utils;
+
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+
+import java.util.Date;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Virtual time of the simulation, shared by every agent of the JVM, and the queue of events scheduled on it.
+ * <p>
+ * Traversing an edge takes a virtual time proportional to its weight, {@code simulation.millis.per.weight} virtual
+ * milliseconds per unit of weight. Virtual time runs {@code simulation.speedup} times faster than the wall clock, 1 by
+ * default.
+ * <p>
+ * With {@code -Dsimulation.speedup=max} the clock jumps straight to the next event and only the order of the events is
+ * kept, which is only meant for movement: the clock does not wait for the agents to go idle, so it follows the agent
+ * that is furthest ahead. Timed waits, {@link #wakeAfter} and the reply deadlines of {@link #replyBy}, then run on the
+ * wall clock as if the speed-up was 1, since a virtual wait would take no time at all, and a traveller that does not
+ * chain its edges departs at a time set by the others.
+ * <p>
+ * Events are fired by a single dispatcher thread, in the order of their virtual time. Agents are woken by a message
+ * posted to their own queue, see {@link #wakeAt}, since messages are the only way to wake a JADE behaviour without
+ * racing with its {@code block()}. A traveller schedules its next edge from the virtual time it reached the last one,
+ * not from the current time of the clock, so its virtual timeline is exact however late its behaviour runs.
+ */
+public class SimulationClock {
+
+    /**
+     * Speed-up that runs the simulation as fast as possible
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    /**
+     * Protocol of the messages posted by the clock
+     */
+    public static final String PROTOCOL = "simulation-clock";
+
+    private static final SimulationClock shared = new SimulationClock(
+            SimulationClock.parseSpeedUp(System.getProperty("simulation.speedup", "1")),
+            Double.parseDouble(System.getProperty("simulation.millis.per.weight", "1000")),
+            Long.getLong("simulation.reply.minimum", 1000));
+
+    private final double speedUp;
+
+    private final double millisPerWeight;
+
+    private final long minimumReplyMillis;
+
+    private final long wallStart = System.nanoTime();
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = this.lock.newCondition();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Virtual time of the last fired event, the time of the clock when running as fast as possible
+     */
+    private long lastFired = 0;
+
+    /**
+     * Events scheduled before the last fired one, which fire out of order
+     */
+    private long late = 0;
+
+    private Thread dispatcher;
+
+    /**
+     * Timer of the timed waits when running as fast as possible, see {@link #wakeAfter}
+     */
+    private ScheduledExecutorService wallTimer;
+
+    /**
+     * @param speedUp            virtual milliseconds per wall millisecond, or {@link #AS_FAST_AS_POSSIBLE}
+     * @param millisPerWeight    virtual milliseconds to traverse an edge of weight one
+     * @param minimumReplyMillis wall milliseconds left at least to answer a message, see {@link #replyBy}
+     */
+    public SimulationClock(double speedUp, double millisPerWeight, long minimumReplyMillis) {
+        if (!(speedUp > 0)) {
+            throw new IllegalArgumentException("speed-up must be positive");
+        }
+        this.speedUp = speedUp;
+        this.millisPerWeight = millisPerWeight;
+        this.minimumReplyMillis = minimumReplyMillis;
+    }
+
+    /**
+     * @return the clock shared by every agent of the JVM
+     */
+    public static SimulationClock shared() {
+        return shared;
+    }
+
+    /**
+     * @param value a speed-up factor, or {@code max} to run as fast as possible
+     * @return the speed-up
+     */
+    public static double parseSpeedUp(String value) {
+        return value.equalsIgnoreCase("max") ? AS_FAST_AS_POSSIBLE : Double.parseDouble(value);
+    }
+
+    /**
+     * @return the virtual time in milliseconds since the clock was created
+     */
+    public long now() {
+        if (this.isAsFastAsPossible()) {
+            this.lock.lock();
+            try {
+                return this.lastFired;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+        return (long) ((System.nanoTime() - this.wallStart) / 1e6 * this.speedUp);
+    }
+
+    /**
+     * @param weight weight of an edge
+     * @return virtual milliseconds to traverse it
+     */
+    public long travelTime(double weight) {
+        return Math.round(weight * this.millisPerWeight);
+    }
+
+    /**
+     * Runs an action on the dispatcher thread when the virtual time is reached. Actions must be short, the next events
+     * wait for them.
+     *
+     * @param at     virtual time in milliseconds, actions scheduled in the past run right away
+     * @param action action to run
+     * @return the event, to cancel it
+     */
+    public Event schedule(long at, Runnable action) {
+        Event event = new Event(at, this.sequence.getAndIncrement(), action);
+        this.lock.lock();
+        try {
+            if (at < this.lastFired) {
+                this.late++;
+            }
+            this.events.add(event);
+            if (this.dispatcher == null) {
+                this.dispatcher = new Thread(this::dispatch, "simulation-clock");
+                this.dispatcher.setDaemon(true);
+                this.dispatcher.start();
+            }
+            this.changed.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        return event;
+    }
+
+    /**
+     * Posts a message from an agent to itself when the virtual time is reached. The message can be received with
+     * {@link #template(String)}.
+     *
+     * @param agent          agent to wake
+     * @param at             virtual time in milliseconds
+     * @param conversationId conversation of the message, to tell the waits of an agent apart
+     * @return the event, to cancel the message before it is posted
+     */
+    public Event wakeAt(Agent agent, long at, String conversationId) {
+        return this.schedule(at, SimulationClock.tick(agent, conversationId));
+    }
+
+    /**
+     * Posts a message from an agent to itself after a timed wait, such as a retry delay or a match window, as
+     * {@link #wakeAt} does. When running as fast as possible the wait is timed on the wall clock instead, as if the
+     * speed-up was 1, since virtual time then only follows movement.
+     *
+     * @param agent          agent to wake
+     * @param delay          virtual milliseconds to wait
+     * @param conversationId conversation of the message, to tell the waits of an agent apart
+     * @return the event, to cancel the message before it is posted
+     */
+    public Event wakeAfter(Agent agent, long delay, String conversationId) {
+        if (!this.isAsFastAsPossible()) {
+            return this.wakeAt(agent, this.now() + delay, conversationId);
+        }
+
+        Event event = new Event(this.now() + delay, this.sequence.getAndIncrement(), SimulationClock.tick(agent, conversationId));
+        this.lock.lock();
+        try {
+            if (this.wallTimer == null) {
+                this.wallTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "simulation-clock-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            this.wallTimer.schedule(event::fire, delay, TimeUnit.MILLISECONDS);
+        } finally {
+            this.lock.unlock();
+        }
+        return event;
+    }
+
+    private static Runnable tick(Agent agent, String conversationId) {
+        return () -> {
+            ACLMessage tick = new ACLMessage(ACLMessage.INFORM);
+            tick.setProtocol(PROTOCOL);
+            tick.setConversationId(conversationId);
+            tick.setSender(agent.getAID());
+            tick.addReceiver(agent.getAID());
+            agent.postMessage(tick);
+        };
+    }
+
+    /**
+     * @param conversationId conversation given to {@link #wakeAt}
+     * @return a template matching the messages posted by the clock for that conversation
+     */
+    public static MessageTemplate template(String conversationId) {
+        return MessageTemplate.and(MessageTemplate.MatchProtocol(PROTOCOL), MessageTemplate.MatchConversationId(conversationId));
+    }
+
+    /**
+     * Reply deadline of a message, for {@link ACLMessage#setReplyByDate}. JADE checks deadlines against the wall
+     * clock, so the virtual delay is scaled by the speed-up, but never below {@code simulation.reply.minimum} wall
+     * milliseconds so that replies still have time to be delivered when running fast. When running as fast as
+     * possible the delay is not scaled, as for {@link #wakeAfter}.
+     *
+     * @param virtualDelay virtual milliseconds left to answer
+     * @return the wall clock deadline
+     */
+    public Date replyBy(long virtualDelay) {
+        return new Date(System.currentTimeMillis() + this.wallMillis(virtualDelay));
+    }
+
+    /**
+     * @param virtualDelay virtual milliseconds
+     * @return the wall milliseconds they take, see {@link #replyBy}
+     */
+    public long wallMillis(long virtualDelay) {
+        return Math.max(this.minimumReplyMillis, this.isAsFastAsPossible() ? virtualDelay : (long) (virtualDelay / this.speedUp));
+    }
+
+    public double getSpeedUp() {
+        return this.speedUp;
+    }
+
+    public boolean isAsFastAsPossible() {
+        return this.speedUp == AS_FAST_AS_POSSIBLE;
+    }
+
+    /**
+     * @return the number of events waiting to be fired, cancelled events included until their time comes
+     */
+    public int getPending() {
+        this.lock.lock();
+        try {
+            return this.events.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Events are only out of order when they are scheduled in the past, before the last fired event: when running as
+     * fast as possible, agents that start or resume late in wall time are behind the clock.
+     *
+     * @return the number of events scheduled before the last fired one
+     */
+    public long getLate() {
+        this.lock.lock();
+        try {
+            return this.late;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        this.lock.lock();
+        try {
+            while (true) {
+                Event event = this.events.peek();
+                if (event == null) {
+                    this.changed.awaitUninterruptibly();
+                    continue;
+                }
+
+                if (!this.isAsFastAsPossible()) {
+                    long wait = (long) ((event.at - this.now()) / this.speedUp * 1e6);
+                    if (wait > 0) {
+                        this.changed.awaitNanos(wait);
+                        continue;
+                    }
+                }
+
+                this.events.poll();
+                if (event.isCancelled()) {
+                    continue;
+                }
+                this.lastFired = Math.max(this.lastFired, event.at);
+                this.lock.unlock();
+                try {
+                    event.fire();
+                } finally {
+                    this.lock.lock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SimulationClock[%s, now %d ms, %d pending, %d late]",
+                this.isAsFastAsPossible() ? "as fast as possible" : this.speedUp + "x", this.now(), this.getPending(), this.getLate());
+    }
+
+    /**
+     * Action scheduled on the clock. Events at the same time fire in the order they were scheduled.
+     */
+    public static final class Event implements Comparable<Event> {
+
+        private final long at;
+
+        private final long sequence;
+
+        private final Runnable action;
+
+        private boolean fired = false;
+
+        private boolean cancelled = false;
+
+        private Event(long at, long sequence, Runnable action) {
+            this.at = at;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        /**
+         * @return the virtual time of the event
+         */
+        public long getAt() {
+            return this.at;
+        }
+
+        /**
+         * Cancels the event if it did not fire yet. Firing and cancelling exclude each other, so when the event cannot
+         * be cancelled its action already ran to the end, and a message it posted is already in the queue of the agent.
+         *
+         * @return true if the action will not run, false if it already ran
+         */
+        public synchronized boolean cancel() {
+            if (this.fired) {
+                return false;
+            }
+            this.cancelled = true;
+            return true;
+        }
+
+        private synchronized boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        private synchronized void fire() {
+            if (this.fired || this.cancelled) {
+                return;
+            }
+            this.fired = true;
+            try {
+                this.action.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int compare = Long.compare(this.at, other.at);
+            return compare != 0 ? compare : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package utils;
+
+import jade.core.Agent;
+import jade.lang.acl.MessageTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times the edges traversed by a movement behaviour on the {@link SimulationClock}.
+ * <p>
+ * The behaviour departs on an edge, then keeps calling {@link #arrived()} and blocking until it returns true:
+ * <pre>
+ * if (!timer.isTravelling()) {
+ *     timer.depart(weight);
+ * }
+ * if (!timer.arrived()) {
+ *     block();
+ *     return;
+ * }
+ * // move to the next vertex
+ * </pre>
+ * Consecutive edges are chained, each one departing at the virtual time the last one was reached, until
+ * {@link #reset()}.
+ */
+public class TravelTimer {
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final Agent agent;
+
+    private final SimulationClock clock;
+
+    /**
+     * Clock message of the current edge, each departure has a conversation of its own
+     */
+    private MessageTemplate template;
+
+    private SimulationClock.Event pending;
+
+    private boolean travelling = false;
+
+    private boolean chained = false;
+
+    /**
+     * Virtual time the current edge is reached, or the last one was
+     */
+    private long arrival;
+
+    public TravelTimer(Agent agent) {
+        this(agent, SimulationClock.shared());
+    }
+
+    public TravelTimer(Agent agent, SimulationClock clock) {
+        this.agent = agent;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts traversing an edge.
+     *
+     * @param weight weight of the edge
+     */
+    public void depart(double weight) {
+        long from = this.chained ? this.arrival : this.clock.now();
+        this.arrival = from + this.clock.travelTime(weight);
+        this.travelling = true;
+        String conversationId = String.format("travel-%s-%d", this.agent.getLocalName(), ids.incrementAndGet());
+        this.template = SimulationClock.template(conversationId);
+        this.pending = this.clock.wakeAt(this.agent, this.arrival, conversationId);
+    }
+
+    /**
+     * @return true if the edge was reached, or if not travelling
+     */
+    public boolean arrived() {
+        if (!this.travelling) {
+            return true;
+        }
+        if (this.agent.receive(this.template) == null) {
+            return false;
+        }
+
+        this.travelling = false;
+        this.chained = true;
+        this.pending = null;
+        return true;
+    }
+
+    public boolean isTravelling() {
+        return this.travelling;
+    }
+
+    /**
+     * @return the virtual time the current edge is reached, or the last one was
+     */
+    public long getArrival() {
+        return this.arrival;
+    }
+
+    /**
+     * Stops chaining the edges, the next one departs at the current time of the clock. A pending arrival is cancelled,
+     * or taken from the queue if it was already posted. Must be called by the agent, like the other methods.
+     */
+    public void reset() {
+        if (this.travelling && !this.pending.cancel()) {
+            this.agent.receive(this.template);
+        }
+        this.pending = null;
+        this.travelling = false;
+        this.chained = false;
+    }
+}